@@ -0,0 +1,242 @@
+#import "Common/ShaderLib/Parallax.glsllib"
+#ifndef VERTEX_LIGHTING
+    #import "Common/ShaderLib/BlinnPhongLighting.glsllib"
+    #import "Common/ShaderLib/Lighting.glsllib"
+#endif
+
+varying vec2 texCoord;
+#ifdef SEPARATE_TEXCOORD
+  varying vec2 texCoord2;
+#endif
+
+varying vec3 AmbientSum;
+varying vec4 DiffuseSum;
+varying vec3 SpecularSum;
+
+#ifndef VERTEX_LIGHTING
+  uniform vec4 g_LightDirection;
+  //varying vec3 vPosition;
+  varying vec3 vViewDir;
+  varying vec4 vLightDir;
+  varying vec3 lightVec;
+#else
+  varying vec2 vertexLightValues;
+#endif
+
+#ifdef DIFFUSEMAP
+  uniform sampler2D m_DiffuseMap;
+#endif
+
+#ifdef SPECULARMAP
+  uniform sampler2D m_SpecularMap;
+#endif
+
+#ifdef PARALLAXMAP
+  uniform sampler2D m_ParallaxMap;  
+#endif
+#if (defined(PARALLAXMAP) || (defined(NORMALMAP_PARALLAX) && defined(NORMALMAP))) && !defined(VERTEX_LIGHTING) 
+    uniform float m_ParallaxHeight;
+    varying vec3 vViewDirPrlx;
+#endif
+
+#ifdef LIGHTMAP
+  uniform sampler2D m_LightMap;
+#endif
+  
+#ifdef NORMALMAP
+  uniform sampler2D m_NormalMap;   
+#else
+  varying vec3 vNormal;
+#endif
+
+#ifdef ALPHAMAP
+  uniform sampler2D m_AlphaMap;
+#endif
+
+#ifdef COLORRAMP
+  uniform sampler2D m_ColorRamp;
+#endif
+
+uniform float m_AlphaDiscardThreshold;
+
+#ifdef TILE_STATE
+  uniform sampler2D m_TileStateMap;
+  uniform vec2 m_MapSize;
+  uniform vec4 m_FlashColor;
+  uniform vec4 m_TagColor;
+  uniform vec4 g_AmbientLightColor;
+  varying vec2 tilePosition;
+#endif
+
+#ifdef DECAYMAP1
+  uniform sampler2D m_DecayMap1;
+#endif
+#ifdef DECAYMAP2
+  uniform sampler2D m_DecayMap2;
+#endif
+#ifdef DECAYMAP3
+  uniform sampler2D m_DecayMap3;
+#endif
+
+#ifndef VERTEX_LIGHTING
+    uniform float m_Shininess;
+#endif
+
+void main(){
+    vec2 newTexCoord;
+     
+    #if (defined(PARALLAXMAP) || (defined(NORMALMAP_PARALLAX) && defined(NORMALMAP))) && !defined(VERTEX_LIGHTING) 
+     
+       #ifdef STEEP_PARALLAX
+           #ifdef NORMALMAP_PARALLAX
+               //parallax map is stored in the alpha channel of the normal map         
+               newTexCoord = steepParallaxOffset(m_NormalMap, vViewDirPrlx, texCoord, m_ParallaxHeight);
+           #else
+               //parallax map is a texture
+               newTexCoord = steepParallaxOffset(m_ParallaxMap, vViewDirPrlx, texCoord, m_ParallaxHeight);         
+           #endif
+       #else
+           #ifdef NORMALMAP_PARALLAX
+               //parallax map is stored in the alpha channel of the normal map         
+               newTexCoord = classicParallaxOffset(m_NormalMap, vViewDirPrlx, texCoord, m_ParallaxHeight);
+           #else
+               //parallax map is a texture
+               newTexCoord = classicParallaxOffset(m_ParallaxMap, vViewDirPrlx, texCoord, m_ParallaxHeight);
+           #endif
+       #endif
+    #else
+       newTexCoord = texCoord;    
+    #endif
+    
+    #ifdef TILE_STATE
+      vec4 tileState = texture2D(m_TileStateMap, (floor(tilePosition + 0.5) + 0.5) / m_MapSize);
+    #endif
+
+   #ifdef DIFFUSEMAP
+      vec4 diffuseColor = texture2D(m_DiffuseMap, newTexCoord);
+    #else
+      vec4 diffuseColor = vec4(1.0);
+    #endif
+
+    #if defined(TILE_STATE) && defined(DECAYMAP1)
+      float decayStage = floor(tileState.b * 255.0 + 0.5);
+      if(decayStage >= 1.0){
+          diffuseColor = texture2D(m_DecayMap1, newTexCoord);
+      }
+      #ifdef DECAYMAP2
+      if(decayStage >= 2.0){
+          diffuseColor = texture2D(m_DecayMap2, newTexCoord);
+      }
+      #endif
+      #ifdef DECAYMAP3
+      if(decayStage >= 3.0){
+          diffuseColor = texture2D(m_DecayMap3, newTexCoord);
+      }
+      #endif
+    #endif
+
+    float alpha = DiffuseSum.a * diffuseColor.a;
+    #ifdef ALPHAMAP
+       alpha = alpha * texture2D(m_AlphaMap, newTexCoord).r;
+    #endif
+    #ifdef DISCARD_ALPHA
+        if(alpha < m_AlphaDiscardThreshold){
+            discard;
+        }
+    #endif
+
+    #ifdef TILE_STATE
+      // Flashed and tagged tiles are lit only by the state color
+      if(tileState.r > 0.0 || tileState.g > 0.0){
+          vec4 stateColor = tileState.g > 0.0 ? m_TagColor : m_FlashColor;
+          gl_FragColor.rgb = stateColor.rgb * g_AmbientLightColor.rgb * diffuseColor.rgb;
+          gl_FragColor.a = alpha;
+          return;
+      }
+    #endif
+
+
+    // ***********************
+    // Read from textures
+    // ***********************
+    #if defined(NORMALMAP) && !defined(VERTEX_LIGHTING)
+      vec4 normalHeight = texture2D(m_NormalMap, newTexCoord);
+      //Note the -2.0 and -1.0. We invert the green channel of the normal map, 
+      //as it's complient with normal maps generated with blender.
+      //see http://hub.jmonkeyengine.org/forum/topic/parallax-mapping-fundamental-bug/#post-256898
+      //for more explanation.
+      vec3 normal = normalize((normalHeight.xyz * vec3(2.0,-2.0,2.0) - vec3(1.0,-1.0,1.0)));
+      #ifdef LATC
+        normal.z = sqrt(1.0 - (normal.x * normal.x) - (normal.y * normal.y));
+      #endif      
+    #elif !defined(VERTEX_LIGHTING)
+      vec3 normal = vNormal;
+      #if !defined(LOW_QUALITY) && !defined(V_TANGENT)
+         normal = normalize(normal);
+      #endif
+    #endif
+
+    #ifdef SPECULARMAP
+      vec4 specularColor = texture2D(m_SpecularMap, newTexCoord);
+    #else
+      vec4 specularColor = vec4(1.0);
+    #endif
+
+    #ifdef LIGHTMAP
+       vec3 lightMapColor;
+       #ifdef SEPARATE_TEXCOORD
+          lightMapColor = texture2D(m_LightMap, texCoord2).rgb;
+       #else
+          lightMapColor = texture2D(m_LightMap, texCoord).rgb;
+       #endif
+       specularColor.rgb *= lightMapColor;
+       diffuseColor.rgb  *= lightMapColor;
+    #endif
+
+    #ifdef VERTEX_LIGHTING
+       vec2 light = vertexLightValues.xy;
+       #ifdef COLORRAMP
+            diffuseColor.rgb  *= texture2D(m_ColorRamp, vec2(light.x, 0.0)).rgb;
+            specularColor.rgb *= texture2D(m_ColorRamp, vec2(light.y, 0.0)).rgb;
+            light.xy = vec2(1.0);
+       #endif
+
+       gl_FragColor.rgb =  AmbientSum     * diffuseColor.rgb + 
+                           DiffuseSum.rgb * diffuseColor.rgb  * vec3(light.x) +
+                           SpecularSum    * specularColor.rgb * vec3(light.y);
+    #else
+       vec4 lightDir = vLightDir;
+       lightDir.xyz = normalize(lightDir.xyz);
+       vec3 viewDir = normalize(vViewDir);
+       float spotFallOff = 1.0;
+
+       #if __VERSION__ >= 110
+        // allow use of control flow
+        if(g_LightDirection.w != 0.0){
+       #endif
+          spotFallOff =  computeSpotFalloff(g_LightDirection, lightVec);
+       #if __VERSION__ >= 110
+          if(spotFallOff <= 0.0){
+              gl_FragColor.rgb = AmbientSum * diffuseColor.rgb;
+              gl_FragColor.a   = alpha;
+              return;
+          }
+         }        
+       #endif
+
+       vec2   light = computeLighting(normal, viewDir, lightDir.xyz, lightDir.w * spotFallOff, m_Shininess) ;
+       #ifdef COLORRAMP
+            diffuseColor.rgb  *= texture2D(m_ColorRamp, vec2(light.x, 0.0)).rgb;
+            specularColor.rgb *= texture2D(m_ColorRamp, vec2(light.y, 0.0)).rgb;
+            light.xy = vec2(1.0);
+       #endif
+
+       // Workaround, since it is not possible to modify varying variables
+       vec4 SpecularSum2 = vec4(SpecularSum, 1.0);
+
+       gl_FragColor.rgb =  AmbientSum       * diffuseColor.rgb  +
+                           DiffuseSum.rgb   * diffuseColor.rgb  * vec3(light.x) +
+                           SpecularSum2.rgb * specularColor.rgb * vec3(light.y);
+    #endif
+    gl_FragColor.a = alpha;
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright (C) 2014-2018 OpenKeeper
+ *
+ * OpenKeeper is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenKeeper is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenKeeper.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package toniarts.openkeeper.animation;
+
+import com.jme3.math.Vector3f;
+import com.jme3.renderer.Camera;
+import com.jme3.renderer.ViewPort;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.VertexBuffer.Type;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Morphs a crowd of imps through {@link PoseControl}, one benchmark operation
+ * is one rendered frame. The imps are in the same animation but at different
+ * frames of it, like a crowd of workers. The mesh and the track are
+ * generated to the size of the imp model, the real models need the converted
+ * game assets.<br>
+ * Run with {@code gradle jmh}.
+ *
+ * @author Toni Helenius <helenius.toni@gmail.com>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PoseControlBenchmark {
+
+    private static final int VERTICES = 600;
+    private static final int FRAMES = 30;
+    private static final float FRAME_TIME = 1 / 30f;
+
+    /**
+     * Number of the imps
+     */
+    @Param({"200"})
+    public int imps;
+
+    /**
+     * Distance of the imps from the camera, the far ones are morphed at half
+     * the frame rate
+     */
+    @Param({"10", "100"})
+    public float distance;
+
+    /**
+     * Size of the shared pose cache, with 1 every imp interpolates its frame
+     */
+    @Param({"1024", "1"})
+    public int poseCacheSize;
+
+    private PoseTrack track;
+    private PoseControl[] controls;
+    private int[] frameOffsets;
+    private ViewPort viewPort;
+    private int tick;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        track = createTrack(random);
+        PoseCache.setMaxSize(poseCacheSize);
+        PoseCache.setFrameStep(1);
+
+        Camera camera = new Camera(1280, 720);
+        camera.setLocation(new Vector3f(0, 0, 0));
+        viewPort = new ViewPort("Benchmark", camera);
+
+        float[] bindPose = new float[VERTICES * 3];
+        for (int i = 0; i < bindPose.length; i++) {
+            bindPose[i] = random.nextFloat();
+        }
+        controls = new PoseControl[imps];
+        frameOffsets = new int[imps];
+        for (int i = 0; i < imps; i++) {
+            Mesh mesh = new Mesh();
+            mesh.setBuffer(Type.Position, 3, bindPose.clone());
+            mesh.setBuffer(Type.BindPosePosition, 3, bindPose.clone());
+            Geometry geometry = new Geometry("Imp " + i, mesh);
+            geometry.setLocalTranslation(distance, 0, 0);
+            geometry.updateGeometricState();
+            controls[i] = new PoseControl();
+            geometry.addControl(controls[i]);
+            frameOffsets[i] = random.nextInt(FRAMES);
+        }
+    }
+
+    @Benchmark
+    public void renderFrame() {
+        tick++;
+        for (int i = 0; i < controls.length; i++) {
+            int frame = track.getFrameIndex(((tick + frameOffsets[i]) % FRAMES) * FRAME_TIME);
+            controls[i].setFrame(track, frame);
+            controls[i].controlRender(null, viewPort);
+        }
+    }
+
+    /**
+     * Creates an animation where every frame moves all the vertices between
+     * two poses
+     */
+    private static PoseTrack createTrack(Random random) {
+        int[] indices = new int[VERTICES];
+        for (int i = 0; i < VERTICES; i++) {
+            indices[i] = i;
+        }
+        float[] times = new float[FRAMES];
+        PoseTrack.PoseFrame[] frames = new PoseTrack.PoseFrame[FRAMES];
+        for (int frame = 0; frame < FRAMES; frame++) {
+            times[frame] = frame * FRAME_TIME;
+            Pose[] poses = {createPose(random, indices), createPose(random, indices)};
+            frames[frame] = new PoseTrack.PoseFrame(poses, new float[]{random.nextFloat()});
+        }
+        return new PoseTrack(0, times, frames);
+    }
+
+    private static Pose createPose(Random random, int[] indices) {
+        Vector3f[] offsets = new Vector3f[indices.length];
+        for (int i = 0; i < offsets.length; i++) {
+            offsets[i] = new Vector3f(random.nextFloat(), random.nextFloat(), random.nextFloat());
+        }
+        return new Pose("Pose", offsets, indices);
+    }
+
+}
@@ -182,7 +182,7 @@ public class Main extends SimpleApplication {
         }
 
         // If the folder is ok, check the conversion
-        if (folderOk && (AssetsConverter.conversionNeeded(Main.getSettings()))) {
+        if (folderOk && (AssetsConverter.conversionNeeded(Main.getSettings(), getDkIIFolder()))) {
             LOGGER.info("Need to convert the assets!");
             saveSetup = true;
 
@@ -44,6 +44,7 @@ public final class Pose implements Savable, Cloneable {
     private String name;
     private Vector3f[] offsets;
     private int[] indices;
+    private transient float[] offsetArray;
 
     public Pose(String name, Vector3f[] offsets, int[] indices) {
         this.name = name;
@@ -66,6 +67,26 @@ public final class Pose implements Savable, Cloneable {
         return offsets;
     }
 
+    /**
+     * Get the vertice offsets as a flat array, x, y and z of each vertice
+     * in a row. Built on first use.
+     *
+     * @return the vertice offsets
+     */
+    public float[] getOffsetArray() {
+        float[] result = offsetArray;
+        if (result == null) {
+            result = new float[offsets.length * 3];
+            for (int i = 0; i < offsets.length; i++) {
+                result[i * 3] = offsets[i].x;
+                result[i * 3 + 1] = offsets[i].y;
+                result[i * 3 + 2] = offsets[i].z;
+            }
+            offsetArray = result;
+        }
+        return result;
+    }
+
     /**
      * Get the vertice indices
      *
@@ -84,6 +105,7 @@ public final class Pose implements Savable, Cloneable {
     public Pose clone() {
         try {
             Pose result = (Pose) super.clone();
+            result.offsetArray = null;
             result.indices = this.indices.clone();
             if (this.offsets != null) {
                 result.offsets = new Vector3f[this.offsets.length];
@@ -116,5 +138,6 @@ public final class Pose implements Savable, Cloneable {
             offsets = new Vector3f[readSavableArray.length];
             System.arraycopy(readSavableArray, 0, offsets, 0, readSavableArray.length);
         }
+        offsetArray = null;
     }
 }
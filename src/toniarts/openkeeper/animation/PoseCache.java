@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2014-2018 OpenKeeper
+ *
+ * OpenKeeper is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenKeeper is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenKeeper.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package toniarts.openkeeper.animation;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Morphed vertex positions shared between all the instances of a model. The
+ * pose frames are shared by the tracks cloned for each spatial, so many
+ * creatures of the same type in the same animation only morph the mesh once
+ * per frame.<br>
+ * The frames can be quantised, with a larger frame step less poses are
+ * stored and shared, at the cost of a choppier animation.
+ *
+ * @author Toni Helenius <helenius.toni@gmail.com>
+ */
+public final class PoseCache {
+
+    private static final int DEFAULT_MAX_SIZE = 1024;
+
+    private static int maxSize = DEFAULT_MAX_SIZE;
+    private static volatile int frameStep = 1;
+    private static final Map<PoseTrack.PoseFrame, float[]> POSES = new LinkedHashMap<PoseTrack.PoseFrame, float[]>(16, 0.75f, true) {
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<PoseTrack.PoseFrame, float[]> eldest) {
+            return size() > maxSize;
+        }
+
+    };
+
+    private PoseCache() {
+        // Nope
+    }
+
+    /**
+     * Get the vertex positions of a frame. The returned array is shared, do
+     * not modify it.
+     *
+     * @param track the track
+     * @param frame the frame index, already quantised
+     * @param bindPose the bind pose positions of the mesh
+     * @return the vertex positions
+     * @see #getFrame(int)
+     */
+    static synchronized float[] getPositions(PoseTrack track, int frame, float[] bindPose) {
+        PoseTrack.PoseFrame poseFrame = track.getFrame(frame);
+        float[] positions = POSES.get(poseFrame);
+        if (positions == null) {
+            positions = new float[bindPose.length];
+            track.applyFrame(frame, bindPose, positions);
+            POSES.put(poseFrame, positions);
+        }
+        return positions;
+    }
+
+    /**
+     * Quantise a frame index by the frame step
+     *
+     * @param frame the frame index
+     * @return the frame to show
+     */
+    static int getFrame(int frame) {
+        return frame - frame % frameStep;
+    }
+
+    /**
+     * Set the maximum number of poses kept, the least recently used poses are
+     * dropped first
+     *
+     * @param maxSize the maximum number of poses
+     */
+    public static synchronized void setMaxSize(int maxSize) {
+        PoseCache.maxSize = Math.max(1, maxSize);
+        POSES.clear();
+    }
+
+    /**
+     * Set the frame quantisation step. 1 shows every frame.
+     *
+     * @param frameStep the frame step
+     */
+    public static synchronized void setFrameStep(int frameStep) {
+        PoseCache.frameStep = Math.max(1, frameStep);
+    }
+
+    /**
+     * Drop all the cached poses
+     */
+    public static synchronized void clear() {
+        POSES.clear();
+    }
+
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2014-2018 OpenKeeper
+ *
+ * OpenKeeper is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenKeeper is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenKeeper.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package toniarts.openkeeper.animation;
+
+import com.jme3.renderer.RenderManager;
+import com.jme3.renderer.ViewPort;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.VertexBuffer;
+import com.jme3.scene.VertexBuffer.Type;
+import com.jme3.scene.control.AbstractControl;
+import com.jme3.util.clone.Cloner;
+import java.nio.FloatBuffer;
+
+/**
+ * Morphs the mesh of a pose animated geometry. The {@link PoseTrack} only
+ * tells the frame to show, the vertices are interpolated when the geometry is
+ * about to be rendered. So geometries outside of the view are not morphed at
+ * all, and distant ones are morphed at half the frame rate. The morphed
+ * positions come from the shared {@link PoseCache}.
+ *
+ * @author Toni Helenius <helenius.toni@gmail.com>
+ */
+public class PoseControl extends AbstractControl {
+
+    /**
+     * Squared distance from the camera after which every other frame is
+     * skipped
+     */
+    private static final float FAR_DISTANCE_SQUARED = 40 * 40;
+
+    private PoseTrack track;
+    private int frame = -1;
+    private int appliedFrame = -1;
+    private float[] bindPose;
+
+    public PoseControl() {
+    }
+
+    /**
+     * Set the frame to show
+     *
+     * @param track the track the frame is from
+     * @param frame the frame index
+     */
+    public void setFrame(PoseTrack track, int frame) {
+        if (this.track != track) {
+            this.track = track;
+            appliedFrame = -1;
+        }
+        this.frame = PoseCache.getFrame(frame);
+    }
+
+    @Override
+    protected void controlUpdate(float tpf) {
+
+    }
+
+    @Override
+    protected void controlRender(RenderManager rm, ViewPort vp) {
+        if (track == null || frame == appliedFrame) {
+            return;
+        }
+        if (appliedFrame >= 0 && Math.abs(frame - appliedFrame) < 2
+                && vp.getCamera().getLocation().distanceSquared(spatial.getWorldTranslation()) > FAR_DISTANCE_SQUARED) {
+            return;
+        }
+
+        Mesh mesh = ((Geometry) spatial).getMesh();
+        if (bindPose == null) {
+            FloatBuffer bpb = (FloatBuffer) mesh.getBuffer(Type.BindPosePosition).getData();
+            bindPose = new float[bpb.limit()];
+            bpb.clear();
+            bpb.get(bindPose).clear();
+        }
+        float[] positions = PoseCache.getPositions(track, frame, bindPose);
+        appliedFrame = frame;
+
+        // Bulk copy and force to re-upload data to gpu
+        VertexBuffer pos = mesh.getBuffer(Type.Position);
+        FloatBuffer pb = (FloatBuffer) pos.getData();
+        pb.clear();
+        pb.put(positions).clear();
+        pos.updateData(pb);
+    }
+
+    @Override
+    public void cloneFields(Cloner cloner, Object original) {
+        super.cloneFields(cloner, original);
+
+        // The clone has its own mesh
+        track = null;
+        frame = -1;
+        appliedFrame = -1;
+        bindPose = null;
+    }
+
+}
@@ -40,19 +40,13 @@ import com.jme3.export.JmeExporter;
 import com.jme3.export.JmeImporter;
 import com.jme3.export.OutputCapsule;
 import com.jme3.export.Savable;
-import com.jme3.math.Vector3f;
 import com.jme3.scene.Geometry;
-import com.jme3.scene.Mesh;
 import com.jme3.scene.Node;
 import com.jme3.scene.Spatial;
-import com.jme3.scene.VertexBuffer;
-import com.jme3.scene.VertexBuffer.Type;
-import com.jme3.util.BufferUtils;
 import com.jme3.util.TempVars;
 import com.jme3.util.clone.Cloner;
 import java.io.IOException;
-import java.nio.FloatBuffer;
-import javax.annotation.Nullable;
+import java.util.Arrays;
 
 /**
  * A single track of pose animation associated with a certain mesh.
@@ -67,6 +61,7 @@ public final class PoseTrack implements Track, ClonableTrack {
 
         Pose[] poses;
         float[] weights;
+        private transient int coverage = -1;
 
         public PoseFrame(Pose[] poses, float[] weights) {
             this.poses = poses;
@@ -88,6 +83,7 @@ public final class PoseTrack implements Track, ClonableTrack {
         public PoseTrack.PoseFrame clone() {
             try {
                 PoseTrack.PoseFrame result = (PoseTrack.PoseFrame) super.clone();
+                result.coverage = -1;
                 result.weights = this.weights.clone();
                 if (this.poses != null) {
                     result.poses = new Pose[this.poses.length];
@@ -118,6 +114,35 @@ public final class PoseTrack implements Track, ClonableTrack {
                 poses = new Pose[readSavableArray.length];
                 System.arraycopy(readSavableArray, 0, poses, 0, readSavableArray.length);
             }
+            coverage = -1;
+        }
+
+        /**
+         * Get the number of distinct vertices this frame sets. If all the
+         * vertices of the mesh are set, the bind pose doesn't need to be
+         * restored before applying the frame.
+         *
+         * @param vertexCount the vertex count of the mesh
+         * @return number of vertices set by this frame
+         */
+        int getCoverage(int vertexCount) {
+            if (coverage < 0) {
+                boolean[] covered = new boolean[vertexCount];
+                int count = 0;
+                for (int i = 0; i < poses.length / 2; i++) {
+                    if (poses[i * 2] == null) {
+                        continue;
+                    }
+                    for (int index : poses[i * 2].getIndices()) {
+                        if (!covered[index]) {
+                            covered[index] = true;
+                            count++;
+                        }
+                    }
+                }
+                coverage = count;
+            }
+            return coverage;
         }
     }
 
@@ -149,81 +174,100 @@ public final class PoseTrack implements Track, ClonableTrack {
 
     }
 
-    private void applyFrame(Mesh target, int frameIndex) {
+    /**
+     * Get a frame of this track
+     *
+     * @param frameIndex the frame index
+     * @return the frame
+     */
+    PoseFrame getFrame(int frameIndex) {
+        return frames[frameIndex];
+    }
+
+    /**
+     * Interpolates the given frame into the vertex positions
+     *
+     * @param frameIndex the frame
+     * @param bindPose the bind pose positions
+     * @param positions the positions to write to, x, y and z of each vertex
+     * in a row
+     */
+    void applyFrame(int frameIndex, float[] bindPose, float[] positions) {
         PoseFrame frame = frames[frameIndex];
-        VertexBuffer pb = target.getBuffer(Type.Position);
+
+        // Restore the vertices this frame doesn't set
+        if (frame.getCoverage(positions.length / 3) < positions.length / 3) {
+            System.arraycopy(bindPose, 0, positions, 0, positions.length);
+        }
+
         for (int i = 0; i < frame.poses.length / 2; i++) {
 
             // Poses come in pairs of two [startPose] + [endPose], weight tells us how close we are to the end
             // The pose pair must have the same vertices in the same order
-            applyPose(frame.poses[i * 2], frame.poses[i * 2 + 1], frame.weights[i], (FloatBuffer) pb.getData());
+            Pose startPose = frame.poses[i * 2];
+            if (startPose == null) {
+                // FIXME should we skip if null?
+                continue;
+            }
+            applyPose(startPose.getIndices(), startPose.getOffsetArray(), frame.poses[i * 2 + 1].getOffsetArray(), frame.weights[i], positions);
         }
-
-        // force to re-upload data to gpu
-        pb.updateData(pb.getData());
     }
 
     /**
      * Applies pose for this frame
      *
-     * @param startPose starting pose for the vertices
-     * @param endPose ending pose for the vertices
+     * @param indices the vertex indices
+     * @param startOffsets starting pose for the vertices
+     * @param endOffsets ending pose for the vertices
      * @param weight weight on which to apply the interpolation
-     * @param vertexBuffer the vertex buffer
+     * @param positions the vertex positions
      */
-    private void applyPose(@Nullable Pose startPose, Pose endPose, float weight, FloatBuffer vertexBuffer) {
-        if (startPose == null) {
-            // FIXME should we skip if null?
-            return;
+    private static void applyPose(int[] indices, float[] startOffsets, float[] endOffsets, float weight, float[] positions) {
+        for (int i = 0; i < indices.length; i++) {
+            int offset = i * 3;
+            int vertex = indices[i] * 3;
+            positions[vertex] = startOffsets[offset] + (endOffsets[offset] - startOffsets[offset]) * weight;
+            positions[vertex + 1] = startOffsets[offset + 1] + (endOffsets[offset + 1] - startOffsets[offset + 1]) * weight;
+            positions[vertex + 2] = startOffsets[offset + 2] + (endOffsets[offset + 2] - startOffsets[offset + 2]) * weight;
         }
-        int[] startingIndices = startPose.getIndices();
-        Vector3f interpOffset = new Vector3f();
-        for (int i = 0; i < startingIndices.length; i++) {
-            int vertIndex = startingIndices[i];
-            Vector3f startOffset = startPose.getOffsets()[i];
-            Vector3f endOffset = endPose.getOffsets()[i];
-
-            // Interpolate
-            interpOffset.set(endOffset);
-            interpOffset.subtractLocal(startOffset);
-            interpOffset.multLocal(weight);
-            interpOffset.addLocal(startOffset);
-
-            // Write modified vertex
-            BufferUtils.setInBuffer(interpOffset, vertexBuffer, vertIndex);
+    }
+
+    /**
+     * Get the frame to show at the given time
+     *
+     * @param time the animation time
+     * @return the frame index
+     */
+    int getFrameIndex(float time) {
+        if (time < times[0]) {
+            return 0;
+        } else if (time > times[times.length - 1]) {
+            return times.length - 1;
         }
+
+        // The frame after the last key time before the time
+        int index = Arrays.binarySearch(times, time);
+        if (index < 0) {
+            index = ~index;
+        }
+        return Math.min(Math.max(0, index - 1) + 1, times.length - 1);
     }
 
     @Override
     public void setTime(float time, float weight, AnimControl control,
             AnimChannel channel, TempVars vars) {
-        Spatial spat = control.getSpatial();
-        Geometry geom = findGeom(spat);
-        Mesh target = geom.getMesh();
-
-        VertexBuffer bindPos = target.getBuffer(Type.BindPosePosition);
-        VertexBuffer pos = target.getBuffer(Type.Position);
-        FloatBuffer pb = (FloatBuffer) pos.getData();
-        FloatBuffer bpb = (FloatBuffer) bindPos.getData();
-        pb.clear();
-        bpb.clear();
-        pb.put(bpb).clear();
-
-        if (time < times[0]) {
-            applyFrame(target, 0);
-        } else if (time > times[times.length - 1]) {
-            applyFrame(target, times.length - 1);
-        } else {
-            int startFrame = 0;
-            for (int i = 0; i < times.length; i++) {
-                if (times[i] < time) {
-                    startFrame = i;
-                }
-            }
+        Geometry geom = findGeom(control.getSpatial());
+        if (geom == null) {
+            return;
+        }
 
-            int endFrame = startFrame + 1;
-            applyFrame(target, endFrame);
+        // The vertices are only morphed when the geometry is about to be rendered
+        PoseControl poseControl = geom.getControl(PoseControl.class);
+        if (poseControl == null) {
+            poseControl = new PoseControl();
+            geom.addControl(poseControl);
         }
+        poseControl.setFrame(this, getFrameIndex(time));
     }
 
     public Geometry findGeom(Spatial spatial) {
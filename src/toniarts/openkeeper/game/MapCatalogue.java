@@ -0,0 +1,287 @@
+/*
+ * Copyright (C) 2014-2018 OpenKeeper
+ *
+ * OpenKeeper is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenKeeper is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenKeeper.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package toniarts.openkeeper.game;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import toniarts.openkeeper.tools.convert.ConversionManifest;
+import toniarts.openkeeper.tools.convert.ConversionUtils;
+import toniarts.openkeeper.tools.convert.map.GameLevel;
+import toniarts.openkeeper.tools.convert.map.KwdFile;
+import toniarts.openkeeper.tools.convert.map.MapDataTypeEnum;
+
+/**
+ * Catalogue of the map headers. Listing the maps only needs the name, flags,
+ * size and player count of each map, and reading these from the KWD and MAP
+ * files of hundreds of maps is slow. So they are stored in a catalogue file,
+ * and a map is only read again if its files have changed since.
+ *
+ * @author Toni Helenius <helenius.toni@gmail.com>
+ */
+public class MapCatalogue {
+
+    /**
+     * Bump when the entry format changes, all the maps are read again
+     */
+    private static final int VERSION = 2;
+    private static final String VERSION_KEY = "version";
+
+    private final File file;
+    private final String dkIIFolder;
+    private static final Logger LOGGER = Logger.getLogger(MapCatalogue.class.getName());
+
+    /**
+     * Catalogue of the maps
+     *
+     * @param file the catalogue file
+     * @param dkIIFolder the DK II folder, the map files are relative to it
+     */
+    public MapCatalogue(File file, String dkIIFolder) {
+        this.file = file;
+        this.dkIIFolder = dkIIFolder;
+    }
+
+    /**
+     * Get the maps in the folder. Only the new and changed maps are read, the
+     * catalogue file is updated if there were any.
+     *
+     * @param mapsFolder the maps folder
+     * @return the maps
+     */
+    public synchronized List<Entry> getMaps(Path mapsFolder) {
+        Properties records = load();
+        Properties updated = new Properties();
+        updated.setProperty(VERSION_KEY, Integer.toString(VERSION));
+        boolean changed = !Integer.toString(VERSION).equals(records.getProperty(VERSION_KEY));
+        List<Entry> entries = new ArrayList<>();
+
+        DirectoryStream.Filter<Path> filter = (Path entry) -> entry.getFileName().toString().toLowerCase().endsWith(".kwd") && !Files.isDirectory(entry);
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(mapsFolder, filter)) {
+            for (Path path : stream) {
+                File kwdFile = path.toFile();
+                String key = kwdFile.getName();
+                Entry entry = (changed ? null : Entry.read(records, key, kwdFile));
+                if (entry == null) {
+                    try {
+                        entry = readEntry(kwdFile);
+                        changed = true;
+                    } catch (Exception e) {
+                        LOGGER.log(Level.WARNING, "Failed to read the map " + kwdFile + "!", e);
+                        continue;
+                    }
+                }
+                entry.write(updated, key);
+                entries.add(entry);
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Failed to load the maps!", e);
+        }
+
+        // Save if there were new, changed or removed maps
+        if (changed || records.size() != updated.size()) {
+            save(updated);
+        }
+        return entries;
+    }
+
+    private Entry readEntry(File kwdFile) throws IOException {
+        KwdFile kwd = new KwdFile(dkIIFolder, kwdFile, false);
+        GameLevel gameLevel = kwd.getGameLevel();
+        File mapFile = new File(ConversionUtils.getRealFileName(dkIIFolder, gameLevel.getFile(MapDataTypeEnum.MAP)));
+
+        Entry entry = new Entry(kwdFile, mapFile);
+        entry.name = gameLevel.getName();
+        entry.flags = EnumSet.copyOf(gameLevel.getLvlFlags());
+        entry.width = kwd.getMap().getWidth();
+        entry.height = kwd.getMap().getHeight();
+        entry.playerCount = gameLevel.getPlayerCount();
+        entry.thumbnailHash = ConversionManifest.getHash(mapFile);
+        entry.kwd = kwd;
+        return entry;
+    }
+
+    private Properties load() {
+        Properties records = new Properties();
+        if (file.exists()) {
+            try (InputStream in = new FileInputStream(file)) {
+                records.load(in);
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Failed to read the map catalogue " + file + "!", e);
+                records.clear();
+            }
+        }
+        return records;
+    }
+
+    private void save(Properties records) {
+        file.getAbsoluteFile().getParentFile().mkdirs();
+        try (OutputStream out = new FileOutputStream(file)) {
+            records.store(out, "OpenKeeper map catalogue");
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to save the map catalogue " + file + "!", e);
+        }
+    }
+
+    /**
+     * The header info of a single map
+     */
+    public static class Entry {
+
+        private final File kwdFile;
+        private final File mapFile;
+        private final long kwdModified;
+        private final long kwdSize;
+        private final long mapModified;
+        private String name;
+        private EnumSet<GameLevel.LevFlag> flags;
+        private int width;
+        private int height;
+        private int playerCount;
+        private String thumbnailHash;
+        private KwdFile kwd;
+
+        private Entry(File kwdFile, File mapFile) {
+            this.kwdFile = kwdFile;
+            this.mapFile = mapFile;
+            this.kwdModified = kwdFile.lastModified();
+            this.kwdSize = kwdFile.length();
+            this.mapModified = mapFile.lastModified();
+        }
+
+        /**
+         * Read a catalogue entry
+         *
+         * @return the entry, {@code null} if not found or the map files have
+         * changed
+         */
+        private static Entry read(Properties records, String key, File kwdFile) {
+            String mapPath = records.getProperty(key + ".mapFile");
+            if (mapPath == null) {
+                return null;
+            }
+            try {
+                Entry entry = new Entry(kwdFile, new File(mapPath));
+                if (entry.kwdModified != Long.parseLong(records.getProperty(key + ".kwdModified"))
+                        || entry.kwdSize != Long.parseLong(records.getProperty(key + ".kwdSize"))
+                        || entry.mapModified != Long.parseLong(records.getProperty(key + ".mapModified"))) {
+                    return null;
+                }
+                entry.name = records.getProperty(key + ".name");
+                entry.flags = EnumSet.noneOf(GameLevel.LevFlag.class);
+                for (String flag : records.getProperty(key + ".flags").split(",")) {
+                    if (!flag.isEmpty()) {
+                        entry.flags.add(GameLevel.LevFlag.valueOf(flag));
+                    }
+                }
+                entry.width = Integer.parseInt(records.getProperty(key + ".width"));
+                entry.height = Integer.parseInt(records.getProperty(key + ".height"));
+                entry.playerCount = Integer.parseInt(records.getProperty(key + ".playerCount"));
+                entry.thumbnailHash = records.getProperty(key + ".thumbnailHash");
+                return (entry.thumbnailHash != null ? entry : null);
+            } catch (RuntimeException e) {
+
+                // Broken entry, just read the map again
+                return null;
+            }
+        }
+
+        private void write(Properties records, String key) {
+            StringBuilder sb = new StringBuilder();
+            for (GameLevel.LevFlag flag : flags) {
+                if (sb.length() > 0) {
+                    sb.append(',');
+                }
+                sb.append(flag.name());
+            }
+            records.setProperty(key + ".mapFile", mapFile.getPath());
+            records.setProperty(key + ".kwdModified", Long.toString(kwdModified));
+            records.setProperty(key + ".kwdSize", Long.toString(kwdSize));
+            records.setProperty(key + ".mapModified", Long.toString(mapModified));
+            if (name != null) {
+                records.setProperty(key + ".name", name);
+            }
+            records.setProperty(key + ".flags", sb.toString());
+            records.setProperty(key + ".width", Integer.toString(width));
+            records.setProperty(key + ".height", Integer.toString(height));
+            records.setProperty(key + ".playerCount", Integer.toString(playerCount));
+            records.setProperty(key + ".thumbnailHash", thumbnailHash);
+        }
+
+        public File getFile() {
+            return kwdFile;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public EnumSet<GameLevel.LevFlag> getFlags() {
+            return flags;
+        }
+
+        public int getWidth() {
+            return width;
+        }
+
+        public int getHeight() {
+            return height;
+        }
+
+        public int getPlayerCount() {
+            return playerCount;
+        }
+
+        /**
+         * Get the content hash of the map data, the thumbnail of the map only
+         * changes if this changes
+         *
+         * @return the map data hash
+         */
+        public String getThumbnailHash() {
+            return thumbnailHash;
+        }
+
+        /**
+         * Get the map, the map header is read on the first call if it wasn't
+         * read for the catalogue
+         *
+         * @param dkIIFolder the DK II folder
+         * @return the map
+         */
+        public synchronized KwdFile getKwdFile(String dkIIFolder) {
+            if (kwd == null) {
+                kwd = new KwdFile(dkIIFolder, kwdFile, false);
+            }
+            return kwd;
+        }
+
+    }
+
+}
@@ -17,29 +17,30 @@
 package toniarts.openkeeper.game;
 
 import com.jme3.math.FastMath;
-import java.io.IOException;
-import java.nio.file.DirectoryStream;
-import java.nio.file.Files;
-import java.nio.file.Path;
+import java.io.File;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
-import java.util.logging.Level;
-import java.util.logging.Logger;
 import toniarts.openkeeper.Main;
+import toniarts.openkeeper.tools.convert.AssetsConverter;
 import toniarts.openkeeper.tools.convert.map.GameLevel;
 import toniarts.openkeeper.tools.convert.map.KwdFile;
 import toniarts.openkeeper.utils.PathUtils;
 
 /**
- * Class isolate map selection
+ * Class isolate map selection. The maps are listed from the
+ * {@link MapCatalogue} in the background, the map files themselves are only
+ * read when a map is actually used.
  *
  * @author ArchDemon
  */
 public class MapSelector {
 
+    private static final String CATALOGUE_FILE = "Maps.catalogue";
+
+    private final Thread loader;
     private final List<GameMapContainer> skirmishMaps = new ArrayList<>();
     private final List<GameMapContainer> multiplayerMaps = new ArrayList<>();
     private final List<GameMapContainer> mpdMaps = new ArrayList<>();
@@ -49,26 +50,25 @@ public class MapSelector {
 
     public MapSelector() {
 
-        // Get the maps
-        DirectoryStream.Filter<Path> filter = (Path entry) -> entry.getFileName().toString().toLowerCase().endsWith(".kwd") && !Files.isDirectory(entry);
-        try (DirectoryStream<Path> stream = Files.newDirectoryStream(Paths.get(Main.getDkIIFolder() + PathUtils.DKII_MAPS_FOLDER), filter)) {
-            for (Path file : stream) {
-
-                // Read the map
-                KwdFile kwd = new KwdFile(Main.getDkIIFolder(), file.toFile(), false);
-                GameMapContainer gameMapContainer = new GameMapContainer(kwd, kwd.getGameLevel().getName());
-                if (kwd.getGameLevel().getLvlFlags().contains(GameLevel.LevFlag.IS_SKIRMISH_LEVEL)) {
-                    skirmishMaps.add(gameMapContainer);
-                }
-                if (kwd.getGameLevel().getLvlFlags().contains(GameLevel.LevFlag.IS_MULTIPLAYER_LEVEL)) {
-                    multiplayerMaps.add(gameMapContainer);
-                }
-                if (kwd.getGameLevel().getLvlFlags().contains(GameLevel.LevFlag.IS_MY_PET_DUNGEON_LEVEL)) {
-                    mpdMaps.add(gameMapContainer);
-                }
+        // Get the maps in the background
+        loader = new Thread(this::loadMaps, "MapCatalogueLoader");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    private void loadMaps() {
+        MapCatalogue catalogue = new MapCatalogue(new File(AssetsConverter.getAssetsFolder().concat(CATALOGUE_FILE)), Main.getDkIIFolder());
+        for (MapCatalogue.Entry entry : catalogue.getMaps(Paths.get(Main.getDkIIFolder() + PathUtils.DKII_MAPS_FOLDER))) {
+            GameMapContainer gameMapContainer = new GameMapContainer(entry, entry.getName());
+            if (entry.getFlags().contains(GameLevel.LevFlag.IS_SKIRMISH_LEVEL)) {
+                skirmishMaps.add(gameMapContainer);
+            }
+            if (entry.getFlags().contains(GameLevel.LevFlag.IS_MULTIPLAYER_LEVEL)) {
+                multiplayerMaps.add(gameMapContainer);
+            }
+            if (entry.getFlags().contains(GameLevel.LevFlag.IS_MY_PET_DUNGEON_LEVEL)) {
+                mpdMaps.add(gameMapContainer);
             }
-        } catch (IOException ex) {
-            Logger.getLogger(MapSelector.class.getName()).log(Level.SEVERE, "Failed to load the maps!", ex);
         }
 
         // Sort them
@@ -78,6 +78,18 @@ public class MapSelector {
         Collections.sort(mpdMaps, c);
     }
 
+    /**
+     * Wait for the maps to be listed, normally they are long done by the time
+     * they are needed
+     */
+    private void waitForMaps() {
+        try {
+            loader.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
     public void random() {
         GameMapContainer current;
         List<GameMapContainer> maps = getMaps();
@@ -113,6 +125,7 @@ public class MapSelector {
     }
 
     public List<GameMapContainer> getMaps() {
+        waitForMaps();
         if (skirmish) {
             return skirmishMaps;
         } else if (mpd) {
@@ -173,20 +186,25 @@ public class MapSelector {
     }
 
     /**
-     * Small container class that holds the actual map data and the name
+     * Small container class that holds the catalogue entry and the name, the
+     * actual map data is read on demand
      */
     public class GameMapContainer {
 
-        private final KwdFile map;
+        private final MapCatalogue.Entry entry;
         private final String mapName;
 
-        public GameMapContainer(KwdFile map, String mapName) {
-            this.map = map;
+        public GameMapContainer(MapCatalogue.Entry entry, String mapName) {
+            this.entry = entry;
             this.mapName = mapName;
         }
 
         public KwdFile getMap() {
-            return map;
+            return (entry != null ? entry.getKwdFile(Main.getDkIIFolder()) : null);
+        }
+
+        public MapCatalogue.Entry getEntry() {
+            return entry;
         }
 
         public String getMapName() {
@@ -26,6 +26,7 @@ import toniarts.openkeeper.world.MapData;
 import toniarts.openkeeper.world.TileData;
 import toniarts.openkeeper.world.WorldState;
 import toniarts.openkeeper.world.creature.CreatureControl;
+import toniarts.openkeeper.world.creature.CreatureSpatialIndex;
 
 /**
  *
@@ -63,14 +64,10 @@ public class ActionPointTriggerControl extends TriggerControl {
                 switch (type) {
                     case 0:
                     case 3: // Creature
-                        MapData map = stateManager.getState(WorldState.class).getMapData();
-                        for (int x = (int) ap.getStart().x; x <= (int) ap.getEnd().x; x++) {
-                            for (int y = (int) ap.getStart().y; y <= (int) ap.getEnd().y; y++) {
-                                for (CreatureControl creature : map.getTile(x, y).getCreatures()) {
-                                    if ((playerId == 0 || creature.getOwnerId() == playerId) && (targetId == 0 || creature.getCreature().getCreatureId() == targetId)) {
-                                        target++;
-                                    }
-                                }
+                        CreatureSpatialIndex creatureIndex = stateManager.getState(WorldState.class).getCreatureIndex();
+                        for (CreatureControl creature : creatureIndex.getCreatures((int) ap.getStart().x, (int) ap.getStart().y, (int) ap.getEnd().x, (int) ap.getEnd().y)) {
+                            if ((playerId == 0 || creature.getOwnerId() == playerId) && (targetId == 0 || creature.getCreature().getCreatureId() == targetId)) {
+                                target++;
                             }
                         }
                         break;
@@ -18,27 +18,87 @@ package toniarts.openkeeper.game.logic;
 
 import com.jme3.app.Application;
 import com.jme3.app.state.AbstractAppState;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import toniarts.openkeeper.world.ThingLoader;
 import toniarts.openkeeper.world.creature.CreatureControl;
 
 /**
- * Handles creature logic updates
+ * Handles creature logic updates. The tick is done in two phases, first all
+ * the creatures sense their surroundings in parallel. This only reads the
+ * world. Then the creature logic is run one creature at a time, in the same
+ * order every tick, as it is the one modifying the world.
  *
  * @author Toni Helenius <helenius.toni@gmail.com>
  */
 public class CreatureLogicState extends AbstractAppState implements IGameLogicUpdateable {
 
+    /**
+     * Creatures per parallel sense task, the senses are mostly cached so
+     * small partitions are not worth it
+     */
+    private static final int SENSE_PARTITION_SIZE = 16;
+
     private final ThingLoader thingLoader;
+    private final ForkJoinPool pool;
 
     public CreatureLogicState(ThingLoader thingLoader) {
+        this(thingLoader, ForkJoinPool.commonPool());
+    }
+
+    public CreatureLogicState(ThingLoader thingLoader, ForkJoinPool pool) {
         this.thingLoader = thingLoader;
+        this.pool = pool;
     }
 
     @Override
     public void processTick(float tpf, Application app) {
-        for (CreatureControl creatureControl : thingLoader.getCreatures()) {
+        List<CreatureControl> creatures = thingLoader.getCreatures();
+
+        // Sense
+        if (creatures.size() > SENSE_PARTITION_SIZE) {
+            pool.invoke(new SenseTask(creatures, 0, creatures.size()));
+        } else {
+            for (CreatureControl creatureControl : creatures) {
+                creatureControl.updateSenses();
+            }
+        }
+
+        // Decide & act
+        for (CreatureControl creatureControl : creatures) {
             creatureControl.processTick(tpf, app);
         }
     }
 
+    /**
+     * Updates the senses of a range of creatures, splits the work until the
+     * partitions are small enough
+     */
+    private static class SenseTask extends RecursiveAction {
+
+        private final List<CreatureControl> creatures;
+        private final int start;
+        private final int end;
+
+        public SenseTask(List<CreatureControl> creatures, int start, int end) {
+            this.creatures = creatures;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start <= SENSE_PARTITION_SIZE) {
+                for (int i = start; i < end; i++) {
+                    creatures.get(i).updateSenses();
+                }
+                return;
+            }
+
+            int middle = (start + end) >>> 1;
+            invokeAll(new SenseTask(creatures, start, middle), new SenseTask(creatures, middle, end));
+        }
+    }
+
 }
@@ -25,13 +25,11 @@ import com.jme3.scene.Node;
 import com.jme3.scene.Spatial;
 import com.jme3.scene.shape.Box;
 import com.jme3.scene.shape.Line;
-import java.awt.Point;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import toniarts.openkeeper.Main;
-import toniarts.openkeeper.world.TileData;
 import toniarts.openkeeper.world.WorldState;
 import toniarts.openkeeper.world.creature.CreatureControl;
 
@@ -69,20 +67,7 @@ public class GameLogicThread implements Runnable {
             long start = System.currentTimeMillis();
 
             // Before anything is run, update last known positions to our map
-            for (int y = 0; y < worldState.getMapData().getHeight(); y++) {
-                for (int x = 0; x < worldState.getMapData().getWidth(); x++) {
-                    worldState.getMapData().getTile(x, y).clearCreatures();
-                }
-            }
-            for (CreatureControl creature : worldState.getThingLoader().getCreatures()) {
-                Point p = creature.getCreatureCoordinates();
-                if (p != null) {
-                    TileData tile = worldState.getMapData().getTile(p);
-                    if (tile != null) {
-                        tile.addCreature(creature);
-                    }
-                }
-            }
+            worldState.getCreatureIndex().update(worldState.getThingLoader().getCreatures());
             if (Main.isDebug()) {
                 drawCreatureVisibilities();
             }
@@ -51,6 +51,7 @@ public class PlayerCreatureControl extends AbstractPlayerControl<Creature, Set<C
     private int impIdle = 0;
     private int impFighting = 0;
     private int impBusy = 0;
+    private final Map<CreatureControl, CreatureUIState> impStates = new HashMap<>();
     private final Map<Creature, Integer> selectionIndices = new HashMap<>();
 
     public PlayerCreatureControl(Application application) {
@@ -79,7 +80,7 @@ public class PlayerCreatureControl extends AbstractPlayerControl<Creature, Set<C
 
         // Listeners
         if (isImp(creature)) {
-            updateWorkerListeners();
+            updateImpState(creature, getImpState(creature.getStateMachine().getCurrentState()));
         } else {
             creatureCount++;
             if (creatureListeners != null) {
@@ -95,7 +96,7 @@ public class PlayerCreatureControl extends AbstractPlayerControl<Creature, Set<C
     @Override
     public void onStateChange(CreatureControl creature, CreatureState newState, CreatureState oldState) {
         if (isImp(creature)) {
-            updateWorkerListeners();
+            updateImpState(creature, getImpState(newState));
         } else {
             if (creatureListeners != null) {
                 application.enqueue(() -> {
@@ -118,7 +119,7 @@ public class PlayerCreatureControl extends AbstractPlayerControl<Creature, Set<C
 
         // Listeners
         if (isImp(creature)) {
-            updateWorkerListeners();
+            updateImpState(creature, null);
         } else {
             creatureCount--;
             if (creatureListeners != null) {
@@ -176,35 +177,63 @@ public class PlayerCreatureControl extends AbstractPlayerControl<Creature, Set<C
         creatureListeners.add(listener);
     }
 
-    private void updateWorkerListeners() {
-        if (workerListeners != null) {
+    /**
+     * Move the imp to its new state in the imp counts. Only the changed imp
+     * is looked at.
+     *
+     * @param creature the imp
+     * @param state the new state of the imp, {@code null} if the imp is not
+     * counted (dead or picked up)
+     */
+    private void updateImpState(CreatureControl creature, CreatureUIState state) {
+        CreatureUIState previousState = (state != null ? impStates.put(creature, state) : impStates.remove(creature));
+        if (previousState == state) {
+            return;
+        }
+        countImp(previousState, -1);
+        countImp(state, 1);
+        updateWorkerListeners();
+    }
 
-            // Calculate
-            impTotal = 0;
-            impIdle = 0;
-            impFighting = 0;
-            impBusy = 0;
-
-            Set<CreatureControl> imps = get(imp);
-            for (CreatureControl creature : imps) {
-                if (creature.getStateMachine().getCurrentState() == CreatureState.PICKED_UP
-                        || creature.getStateMachine().getCurrentState() == CreatureState.DEAD) {
-                    continue;
-                }
-                if (isCreatureState(creature, CreatureUIState.IDLE)) {
-                    impIdle++;
-                } else if (isCreatureState(creature, CreatureUIState.FIGHT)) {
-                    impFighting++;
-                } else {
-                    impBusy++;
-                }
-                impTotal++;
-            }
+    private void countImp(CreatureUIState state, int count) {
+        if (state == null) {
+            return;
+        }
+        switch (state) {
+            case IDLE:
+                impIdle += count;
+                break;
+            case FIGHT:
+                impFighting += count;
+                break;
+            default:
+                impBusy += count;
+                break;
+        }
+        impTotal += count;
+    }
 
-            // Update
+    private static CreatureUIState getImpState(CreatureState state) {
+        if (state == CreatureState.PICKED_UP || state == CreatureState.DEAD) {
+            return null;
+        }
+        if (state == CreatureState.IDLE) {
+            return CreatureUIState.IDLE;
+        } else if (state == CreatureState.FIGHT) {
+            return CreatureUIState.FIGHT;
+        }
+        return CreatureUIState.BUSY;
+    }
+
+    private void updateWorkerListeners() {
+        if (workerListeners != null) {
+            int total = impTotal;
+            int idle = impIdle;
+            int busy = impBusy;
+            int fighting = impFighting;
             application.enqueue(() -> {
                 for (WorkerAmountControl control : workerListeners) {
-                    control.setValues(impTotal, impIdle, impBusy, impFighting);
+                    control.setValues(total, idle, busy, fighting);
                 }
             });
         }
@@ -298,6 +327,29 @@ public class PlayerCreatureControl extends AbstractPlayerControl<Creature, Set<C
         return creatureCount;
     }
 
+    /**
+     * Get the number of imps in a state, the dead and picked up imps are not
+     * counted
+     *
+     * @param state the state, {@code null} for all the states
+     * @return the number of imps
+     */
+    public int getImpCount(CreatureUIState state) {
+        if (state == null) {
+            return impTotal;
+        }
+        switch (state) {
+            case IDLE:
+                return impIdle;
+            case FIGHT:
+                return impFighting;
+            case BUSY:
+                return impBusy;
+            default:
+                return 0;
+        }
+    }
+
     /**
      * Get the imp count
      *
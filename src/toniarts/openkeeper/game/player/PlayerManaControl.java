@@ -23,8 +23,6 @@ import java.util.Map;
 import toniarts.openkeeper.game.control.Control;
 import toniarts.openkeeper.game.state.GameState;
 import toniarts.openkeeper.tools.convert.map.Variable.MiscVariable.MiscType;
-import toniarts.openkeeper.world.MapData;
-import toniarts.openkeeper.world.TileData;
 import toniarts.openkeeper.world.WorldState;
 
 /**
@@ -76,20 +74,7 @@ public class PlayerManaControl extends Control {
     }
 
     private void updateManaFromTiles() {
-        int result = 0;
-
-        MapData mapData = stateManager.getState(WorldState.class).getMapData();
-
-        for (int x = 0; x < mapData.getWidth(); x++) {
-            for (int y = 0; y < mapData.getHeight(); y++) {
-                TileData tile = mapData.getTile(x, y);
-                if (tile.getPlayerId() == this.playerId) {
-                    result += tile.getTerrain().getManaGain();
-                }
-            }
-        }
-
-        manaGainFromTiles = result;
+        manaGainFromTiles = stateManager.getState(WorldState.class).getPlayerTiles().getManaGain(playerId);
     }
 
     private void updateManaFromCreatures() {
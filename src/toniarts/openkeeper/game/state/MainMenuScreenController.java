@@ -49,8 +49,10 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.ResourceBundle;
+import java.util.concurrent.CompletableFuture;
 import java.util.logging.Logger;
 import toniarts.openkeeper.Main;
+import toniarts.openkeeper.game.MapCatalogue;
 import toniarts.openkeeper.game.MapSelector;
 import toniarts.openkeeper.game.data.CustomMPDLevel;
 import toniarts.openkeeper.game.data.GameResult;
@@ -76,7 +78,6 @@ import toniarts.openkeeper.gui.nifty.table.player.PlayerTableRow;
 import toniarts.openkeeper.tools.convert.ConversionUtils;
 import toniarts.openkeeper.tools.convert.map.AI;
 import toniarts.openkeeper.tools.convert.map.GameLevel;
-import toniarts.openkeeper.tools.convert.map.KwdFile;
 import toniarts.openkeeper.utils.PathUtils;
 import toniarts.openkeeper.utils.Utils;
 
@@ -97,6 +98,7 @@ public class MainMenuScreenController implements IMainMenuScreenController {
     private static final List<Cutscene> CUTSCENES = new ArrayList<>();
     private ChatSessionListener chatSessionListener;
     private LobbySessionListener lobbySessionListener;
+    private MapSelector.GameMapContainer thumbnailMap;
 
     /**
      * A popup instance if some screen should need one
@@ -400,7 +402,7 @@ public class MainMenuScreenController implements IMainMenuScreenController {
 
                 // Ask for players and map
                 refreshPlayerList(lobbyState.getLobbySession().getPlayers());
-                populateSelectedMap(state.mapSelector.getMap(lobbyState.getLobbySession().getMap()).getMap());
+                populateSelectedMap(state.mapSelector.getMap(lobbyState.getLobbySession().getMap()));
 
                 Label title = screen.findNiftyControl("multiplayerTitle", Label.class);
                 if (title != null) {
@@ -568,10 +570,10 @@ public class MainMenuScreenController implements IMainMenuScreenController {
             return;
         }
 
-        KwdFile map = state.mapSelector.getMaps().get(event.getSelectionIndices().get(0)).getMap();
+        MapSelector.GameMapContainer map = state.mapSelector.getMaps().get(event.getSelectionIndices().get(0));
         if (state.mapSelector.isMPD()) {
             // on mpd we show the briefing
-            state.selectedLevel = new CustomMPDLevel(map);
+            state.selectedLevel = new CustomMPDLevel(map.getMap());
             goToScreen("briefing");
         } else {
 
@@ -777,32 +779,53 @@ public class MainMenuScreenController implements IMainMenuScreenController {
         screen.findNiftyControl("invertMouse", CheckBox.class).setChecked((boolean) Settings.Setting.MOUSE_INVERT.getDefaultValue());
     }
 
-    private void populateSelectedMap(KwdFile map) {
+    private void populateSelectedMap(MapSelector.GameMapContainer map) {
+        thumbnailMap = map;
 
         // The map title
         Label label = screen.findNiftyControl("mapNameTitle", Label.class);
-        label.setText(map == null ? "No maps found from " + PathUtils.DKII_MAPS_FOLDER : map.getGameLevel().getName());
+        label.setText(map == null ? "No maps found from " + PathUtils.DKII_MAPS_FOLDER : map.getEntry().getName());
         NiftyUtils.resetContraints(label);
 
         if (map != null) {
 
             // Player count
             label = screen.findNiftyControl("playerCount", Label.class);
-            label.setText(": " + map.getGameLevel().getPlayerCount());
+            label.setText(": " + map.getEntry().getPlayerCount());
             NiftyUtils.resetContraints(label);
 
-            // Map image
-            Element mapImage = screen.findElementById("mapImage");
-            NiftyImage img = nifty.createImage(state.getMapThumbnail(map), true);
-            mapImage.getRenderer(ImageRenderer.class).setImage(img);
-            mapImage.setConstraintWidth(new SizeValue(img.getWidth() + "px"));
-            mapImage.setConstraintHeight(new SizeValue(img.getHeight() + "px"));
+            // Map image, if it needs to be created, show a placeholder until it is done
+            CompletableFuture<String> thumbnail = state.getMapThumbnail(map.getEntry());
+            if (thumbnail.isDone()) {
+                setMapImage(thumbnail.join());
+            } else {
+                setMapImage(MainMenuState.NO_MAP_THUMBNAIL);
+                thumbnail.thenAccept((asset) -> state.app.enqueue(() -> {
+
+                    // See that the map is still the selected one
+                    if (map.equals(thumbnailMap)) {
+                        setMapImage(asset);
+                        screen.layoutLayers();
+                    }
+                }));
+            }
         }
 
         // Re-populate
         screen.layoutLayers();
     }
 
+    private void setMapImage(String asset) {
+        Element mapImage = screen.findElementById("mapImage");
+        if (mapImage == null) {
+            return;
+        }
+        NiftyImage img = nifty.createImage(asset, true);
+        mapImage.getRenderer(ImageRenderer.class).setImage(img);
+        mapImage.setConstraintWidth(new SizeValue(img.getWidth() + "px"));
+        mapImage.setConstraintHeight(new SizeValue(img.getHeight() + "px"));
+    }
+
     /**
      * Populate the map selection with given maps
      */
@@ -813,16 +836,17 @@ public class MainMenuScreenController implements IMainMenuScreenController {
         for (MapSelector.GameMapContainer mapContainer : state.mapSelector.getMaps()) {
 
             String name = mapContainer.getMapName();
-            KwdFile kwd = mapContainer.getMap();
-            if (kwd.getGameLevel().getLvlFlags().contains(GameLevel.LevFlag.IS_MY_PET_DUNGEON_LEVEL)) {
+            MapCatalogue.Entry entry = mapContainer.getEntry();
+            if (entry.getFlags().contains(GameLevel.LevFlag.IS_MY_PET_DUNGEON_LEVEL)) {
                 // the resource tables in all the other levels are completely wrong, so we just use it for custom mpd maps
-                name = kwd.getGameLevel().getLevelName().isEmpty() ? kwd.getGameLevel().getName() : kwd.getGameLevel().getLevelName();
+                GameLevel gameLevel = mapContainer.getMap().getGameLevel();
+                name = gameLevel.getLevelName().isEmpty() ? gameLevel.getName() : gameLevel.getLevelName();
             }
             listBox.addItem(new TableRow(i, name,
-                    String.valueOf(kwd.getGameLevel().getPlayerCount()),
-                    String.format("%s x %s", kwd.getMap().getWidth(), kwd.getMap().getHeight())));
+                    String.valueOf(entry.getPlayerCount()),
+                    String.format("%s x %s", entry.getWidth(), entry.getHeight())));
 
-            if (selectMap && kwd.equals(state.mapSelector.getMap().getMap())) {
+            if (selectMap && mapContainer.equals(state.mapSelector.getMap())) {
                 listBox.selectItemByIndex(i);
             }
             i++;
@@ -840,7 +864,7 @@ public class MainMenuScreenController implements IMainMenuScreenController {
 
                 @Override
                 public void onMapChanged(String mapName) {
-                    populateSelectedMap(state.mapSelector.getMap(mapName).getMap());
+                    populateSelectedMap(state.mapSelector.getMap(mapName));
                 }
             };
         }
@@ -20,7 +20,6 @@ import com.jme3.app.Application;
 import com.jme3.app.state.AbstractAppState;
 import com.jme3.app.state.AppStateManager;
 import com.jme3.asset.AssetManager;
-import com.jme3.asset.TextureKey;
 import com.jme3.audio.AudioNode;
 import com.jme3.audio.AudioSource;
 import com.jme3.cinematic.events.CinematicEvent;
@@ -34,6 +33,7 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import toniarts.openkeeper.Main;
@@ -41,6 +41,7 @@ import static toniarts.openkeeper.Main.getDkIIFolder;
 import toniarts.openkeeper.cinematics.CameraSweepData;
 import toniarts.openkeeper.cinematics.CameraSweepDataEntry;
 import toniarts.openkeeper.cinematics.Cinematic;
+import toniarts.openkeeper.game.MapCatalogue;
 import toniarts.openkeeper.game.MapSelector;
 import toniarts.openkeeper.game.data.GameResult;
 import toniarts.openkeeper.game.data.GeneralLevel;
@@ -55,7 +56,6 @@ import toniarts.openkeeper.game.state.lobby.LobbyState;
 import toniarts.openkeeper.game.state.lobby.LocalLobby;
 import toniarts.openkeeper.gui.CursorFactory;
 import toniarts.openkeeper.tools.convert.AssetsConverter;
-import toniarts.openkeeper.tools.convert.ConversionUtils;
 import toniarts.openkeeper.tools.convert.map.KwdFile;
 import toniarts.openkeeper.tools.convert.map.Player;
 import toniarts.openkeeper.tools.modelviewer.SoundsLoader;
@@ -64,6 +64,7 @@ import toniarts.openkeeper.utils.PathUtils;
 import toniarts.openkeeper.utils.WorldUtils;
 import toniarts.openkeeper.video.MovieState;
 import toniarts.openkeeper.world.MapLoader;
+import toniarts.openkeeper.world.MapThumbnailService;
 import toniarts.openkeeper.world.effect.EffectManagerState;
 import toniarts.openkeeper.world.object.ObjectLoader;
 import toniarts.openkeeper.world.room.control.FrontEndLevelControl;
@@ -90,8 +91,10 @@ public class MainMenuState extends AbstractAppState {
     protected final MainMenuInteraction listener;
     private Vector3f startLocation;
     protected MapSelector mapSelector;
+    private final MapThumbnailService mapThumbnailService;
     private final MainMenuConnectionErrorListener connectionErrorListener = new MainMenuConnectionErrorListener();
 
+    protected static final String NO_MAP_THUMBNAIL = "Textures/Unique_NoTextureName.png";
     private static final Logger LOGGER = Logger.getLogger(MainMenuState.class.getName());
 
     /**
@@ -107,6 +110,9 @@ public class MainMenuState extends AbstractAppState {
         listener = new MainMenuInteraction(this);
         super.setEnabled(enabled);
 
+        // Only one map is looked at a time, so a single thread renders the missing thumbnails
+        mapThumbnailService = new MapThumbnailService(AssetsConverter.getAssetsFolder() + AssetsConverter.MAP_THUMBNAILS_FOLDER + File.separator, getDkIIFolder(), 1);
+
         if (enabled) {
             loadMenuScene(null, assetManager, app);
         }
@@ -531,27 +537,22 @@ public class MainMenuState extends AbstractAppState {
     }
 
     /**
-     * See if the map thumbnail exist, otherwise create one TODO maybe move to
-     * KwdFile class ???
+     * Get the map thumbnail. If the thumbnail doesn't exist, it is created in
+     * the background, the map file is read only then.
      *
-     * @param map
-     * @return path to map thumbnail file
+     * @param map the map
+     * @return path to map thumbnail file, completes on the generator thread
+     * if the thumbnail needs to be created
      */
-    protected String getMapThumbnail(KwdFile map) {
-
-        // See if the map thumbnail exist, otherwise create one
-        String asset = AssetsConverter.MAP_THUMBNAILS_FOLDER + File.separator + ConversionUtils.stripFileName(map.getGameLevel().getName()) + ".png";
-        if (assetManager.locateAsset(new TextureKey(asset)) == null) {
-
-            // Generate
-            try {
-                AssetsConverter.genererateMapThumbnail(map, AssetsConverter.getAssetsFolder() + AssetsConverter.MAP_THUMBNAILS_FOLDER + File.separator);
-            } catch (Exception e) {
-                LOGGER.log(java.util.logging.Level.WARNING, "Failed to generate map file out of {0}!", map);
-                asset = "Textures/Unique_NoTextureName.png";
-            }
-        }
-        return asset;
+    protected CompletableFuture<String> getMapThumbnail(MapCatalogue.Entry map) {
+        return mapThumbnailService.getThumbnail(map.getThumbnailHash(), () -> map.getKwdFile(getDkIIFolder()))
+                .handle((file, e) -> {
+                    if (e != null) {
+                        LOGGER.log(Level.WARNING, "Failed to generate map file out of " + map.getName() + "!", e);
+                        return NO_MAP_THUMBNAIL;
+                    }
+                    return AssetsConverter.MAP_THUMBNAILS_FOLDER + File.separator + file.getName();
+                });
     }
 
     private class MainMenuConnectionErrorListener implements ConnectionErrorListener {
@@ -20,10 +20,7 @@ import com.badlogic.gdx.ai.pfa.GraphPath;
 import java.awt.Point;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -62,6 +59,7 @@ import toniarts.openkeeper.world.listener.CreatureListener;
 import toniarts.openkeeper.world.listener.ObjectListener;
 import toniarts.openkeeper.world.listener.TileChangeListener;
 import toniarts.openkeeper.world.object.ObjectControl;
+import toniarts.openkeeper.world.pathfinding.PathFindingRequest;
 import toniarts.openkeeper.world.room.GenericRoom;
 
 /**
@@ -72,7 +70,7 @@ import toniarts.openkeeper.world.room.GenericRoom;
 public class TaskManager {
 
     private final WorldState worldState;
-    private final Map<Short, Set<AbstractTask>> taskQueues;
+    private final Map<Short, TaskQueue> taskQueues;
     private final Map<GenericRoom, Map<Point, AbstractCapacityCriticalRoomTask>> roomTasks = new HashMap<>();
     private static final Logger logger = Logger.getLogger(TaskManager.class.getName());
 
@@ -83,7 +81,7 @@ public class TaskManager {
         taskQueues = new HashMap<>(players.size());
         for (Keeper keeper : players) {
             if (keeper.getId() != Player.GOOD_PLAYER_ID && keeper.getId() != Player.NEUTRAL_PLAYER_ID) {
-                taskQueues.put(keeper.getId(), new HashSet<>());
+                taskQueues.put(keeper.getId(), new TaskQueue());
             }
         }
 
@@ -110,14 +108,14 @@ public class TaskManager {
 
             @Override
             public void onAdded(ObjectControl objectControl) {
-                for (Entry<Short, Set<AbstractTask>> entry : taskQueues.entrySet()) {
+                for (Entry<Short, TaskQueue> entry : taskQueues.entrySet()) {
                     entry.getValue().add(getObjectTask(objectControl, entry.getKey()));
                 }
             }
 
             @Override
             public void onRemoved(ObjectControl objectControl) {
-                for (Entry<Short, Set<AbstractTask>> entry : taskQueues.entrySet()) {
+                for (Entry<Short, TaskQueue> entry : taskQueues.entrySet()) {
                     entry.getValue().remove(getObjectTask(objectControl, entry.getKey()));
                 }
             }
@@ -136,7 +134,7 @@ public class TaskManager {
                     if (newState == CreatureState.UNCONSCIOUS) {
 
                         // Add rescue mission for the own troops and capture for the enemy
-                        for (Entry<Short, Set<AbstractTask>> entry : taskQueues.entrySet()) {
+                        for (Entry<Short, TaskQueue> entry : taskQueues.entrySet()) {
                             if (entry.getKey() == creature.getOwnerId()) {
 
                                 // Rescue
@@ -169,14 +167,14 @@ public class TaskManager {
 
         // Object tasks
         for (ObjectControl objectControl : worldState.getThingLoader().getObjects()) {
-            for (Entry<Short, Set<AbstractTask>> entry : taskQueues.entrySet()) {
+            for (Entry<Short, TaskQueue> entry : taskQueues.entrySet()) {
                 entry.getValue().add(getObjectTask(objectControl, entry.getKey()));
             }
         }
     }
 
     private void scanTerrainTasks(final MapData mapData, final int x, final int y, final boolean checkNeighbours, final boolean deleteObsolete) {
-        for (Entry<Short, Set<AbstractTask>> entry : taskQueues.entrySet()) {
+        for (Entry<Short, TaskQueue> entry : taskQueues.entrySet()) {
 
             // Scan existing tasks that are they valid, should be only one tile task per tile?
             if (deleteObsolete) {
@@ -235,38 +233,23 @@ public class TaskManager {
      */
     public boolean assignTask(CreatureControl creature, boolean byDistance) {
 
-        Set<AbstractTask> taskQueue = taskQueues.get(creature.getOwnerId());
+        TaskQueue taskQueue = taskQueues.get(creature.getOwnerId());
         if (taskQueue == null) {
             return false;
 //            throw new IllegalArgumentException("This task manager instance is not for the given player!");
         }
 
-        // Sort by distance & priority
+        // Take the closest available task, by distance & priority
         final Point currentLocation = creature.getCreatureCoordinates();
-        List<AbstractTask> prioritisedTaskQueue = new ArrayList<>(taskQueue);
-        Collections.sort(prioritisedTaskQueue, new Comparator<AbstractTask>() {
-
-            @Override
-            public int compare(AbstractTask t, AbstractTask t1) {
-                int result = Integer.compare(calculateDistance(currentLocation, t.getTaskLocation()) + t.getPriority(), calculateDistance(currentLocation, t1.getTaskLocation()) + t1.getPriority());
-                if (result == 0) {
-
-                    // If the same, compare by date added
-                    return t.getTaskCreated().compareTo(t1.getTaskCreated());
-                }
-                return result;
-            }
-
-        });
-
-        // Take the first available task from the sorted queue
-        for (AbstractTask task : prioritisedTaskQueue) {
-            if (task.canAssign(creature)) {
+        if (currentLocation == null) {
+            return false;
+        }
+        AbstractTask task = taskQueue.find(currentLocation, t -> t.canAssign(creature));
+        if (task != null) {
 
-                // Assign to first task
-                task.assign(creature, true);
-                return true;
-            }
+            // Assign to first task
+            task.assign(creature, true);
+            return true;
         }
 
         return false;
@@ -332,7 +315,9 @@ public class TaskManager {
             }
         }
 
-        // See that are they really accessible starting from the least distance one
+        // Pick a target from each room, starting from the least distance one
+        List<GenericRoom> candidateRooms = new ArrayList<>(distancesToRooms.size());
+        List<PathFindingRequest> requests = new ArrayList<>(distancesToRooms.size());
         for (GenericRoom room : distancesToRooms.values()) {
 
             // FIXME: if we are to have more capacity than one per tile, we need to refactor
@@ -342,35 +327,42 @@ public class TaskManager {
             Map<Point, AbstractCapacityCriticalRoomTask> taskPoints = roomTasks.get(room);
             while (iter.hasNext()) {
                 Point p = iter.next();
-                if (!room.isTileAccessible(null, p) || (taskPoints != null && taskPoints.containsKey(p))) {
+                if (!room.isTileAccessible(null, p) || (taskPoints != null && taskPoints.containsKey(p))
+                        || !worldState.isReachable(currentPosition, p, creature)) {
                     iter.remove();
                 }
             }
-
-            // Assign
             if (!coordinates.isEmpty()) {
-                Point target = Utils.getRandomItem(coordinates);
-                GraphPath<TileData> path = worldState.findPath(creature.getCreatureCoordinates(), target, creature);
-                if (path != null || target == creature.getCreatureCoordinates()) {
+                candidateRooms.add(room);
+                requests.add(new PathFindingRequest(currentPosition, Utils.getRandomItem(coordinates), creature));
+            }
+        }
 
-                    // Assign the task
-                    AbstractTask task = getRoomTask(objectType, target, creature, room);
+        // See that are they really accessible, the paths are searched all at once
+        List<GraphPath<TileData>> paths = worldState.findPaths(requests);
+        for (int i = 0; i < requests.size(); i++) {
+            Point target = requests.get(i).getEnd();
+            if (paths.get(i) != null || target.equals(currentPosition)) {
+                GenericRoom room = candidateRooms.get(i);
+                Map<Point, AbstractCapacityCriticalRoomTask> taskPoints = roomTasks.get(room);
 
-                    // See if really assign
-                    if (!assign) {
-                        return task.isValid(creature);
-                    }
+                // Assign the task
+                AbstractTask task = getRoomTask(objectType, target, creature, room);
 
-                    if (task instanceof AbstractCapacityCriticalRoomTask) {
-                        if (taskPoints == null) {
-                            taskPoints = new HashMap<>();
-                        }
-                        taskPoints.put(target, (AbstractCapacityCriticalRoomTask) task);
-                        roomTasks.put(room, taskPoints);
+                // See if really assign
+                if (!assign) {
+                    return task.isValid(creature);
+                }
+
+                if (task instanceof AbstractCapacityCriticalRoomTask) {
+                    if (taskPoints == null) {
+                        taskPoints = new HashMap<>();
                     }
-                    task.assign(creature, true);
-                    return true;
+                    taskPoints.put(target, (AbstractCapacityCriticalRoomTask) task);
+                    roomTasks.put(room, taskPoints);
                 }
+                task.assign(creature, true);
+                return true;
             }
         }
 
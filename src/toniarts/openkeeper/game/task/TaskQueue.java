@@ -0,0 +1,224 @@
+/*
+ * Copyright (C) 2014-2018 OpenKeeper
+ *
+ * OpenKeeper is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenKeeper is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenKeeper.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package toniarts.openkeeper.game.task;
+
+import java.awt.Point;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Task queue of a player. The tasks are also indexed by their priority and
+ * location, so that the best task for a location can be found without
+ * sorting all the tasks. The best task is the one with the lowest Manhattan
+ * distance plus priority, ties are broken by the creation time.
+ *
+ * @author Toni Helenius <helenius.toni@gmail.com>
+ */
+class TaskQueue extends AbstractSet<AbstractTask> {
+
+    /**
+     * Size of the index cells, in tiles
+     */
+    private static final int CELL_SIZE = 8;
+
+    private final Set<AbstractTask> tasks = new HashSet<>();
+    private final Map<Integer, Map<Point, List<AbstractTask>>> tiers = new HashMap<>();
+
+    @Override
+    public boolean add(AbstractTask task) {
+        if (!tasks.add(task)) {
+            return false;
+        }
+
+        Map<Point, List<AbstractTask>> cells = tiers.get(task.getPriority());
+        if (cells == null) {
+            cells = new HashMap<>();
+            tiers.put(task.getPriority(), cells);
+        }
+        Point cell = getCell(task.getTaskLocation());
+        List<AbstractTask> cellTasks = cells.get(cell);
+        if (cellTasks == null) {
+            cellTasks = new ArrayList<>();
+            cells.put(cell, cellTasks);
+        }
+        cellTasks.add(task);
+        return true;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        if (!tasks.remove(o)) {
+            return false;
+        }
+        removeFromIndex((AbstractTask) o);
+        return true;
+    }
+
+    private void removeFromIndex(AbstractTask task) {
+        Map<Point, List<AbstractTask>> cells = tiers.get(task.getPriority());
+        if (cells == null) {
+            return;
+        }
+        Point cell = getCell(task.getTaskLocation());
+        List<AbstractTask> cellTasks = cells.get(cell);
+        if (cellTasks != null && cellTasks.remove(task) && cellTasks.isEmpty()) {
+            cells.remove(cell);
+            if (cells.isEmpty()) {
+                tiers.remove(task.getPriority());
+            }
+        }
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return tasks.contains(o);
+    }
+
+    @Override
+    public Iterator<AbstractTask> iterator() {
+        final Iterator<AbstractTask> iter = tasks.iterator();
+        return new Iterator<AbstractTask>() {
+
+            private AbstractTask current;
+
+            @Override
+            public boolean hasNext() {
+                return iter.hasNext();
+            }
+
+            @Override
+            public AbstractTask next() {
+                current = iter.next();
+                return current;
+            }
+
+            @Override
+            public void remove() {
+                iter.remove();
+                removeFromIndex(current);
+            }
+        };
+    }
+
+    @Override
+    public int size() {
+        return tasks.size();
+    }
+
+    @Override
+    public void clear() {
+        tasks.clear();
+        tiers.clear();
+    }
+
+    /**
+     * Find the best task for the given location. The tasks are visited in
+     * the order of distance plus priority, the first task accepted by the
+     * filter is returned.
+     *
+     * @param location the location to search from
+     * @param filter filter for the tasks, i.e. can the task be assigned
+     * @return the best task accepted by the filter, {@code null} if none
+     */
+    public AbstractTask find(Point location, Predicate<AbstractTask> filter) {
+
+        // Best first, a cell is only opened when no task can beat its lower bound
+        PriorityQueue<Candidate> candidates = new PriorityQueue<>();
+        for (Map.Entry<Integer, Map<Point, List<AbstractTask>>> tier : tiers.entrySet()) {
+            for (Map.Entry<Point, List<AbstractTask>> cell : tier.getValue().entrySet()) {
+                candidates.add(new Candidate(tier.getKey() + getCellDistance(location, cell.getKey()), cell.getValue()));
+            }
+        }
+        while (!candidates.isEmpty()) {
+            Candidate candidate = candidates.poll();
+            if (candidate.task != null) {
+                if (filter.test(candidate.task)) {
+                    return candidate.task;
+                }
+                continue;
+            }
+            for (AbstractTask task : candidate.cellTasks) {
+                candidates.add(new Candidate(task.getPriority() + getDistance(location, task.getTaskLocation()), task));
+            }
+        }
+        return null;
+    }
+
+    private static Point getCell(Point location) {
+        return new Point(Math.floorDiv(location.x, CELL_SIZE), Math.floorDiv(location.y, CELL_SIZE));
+    }
+
+    /**
+     * Lowest possible distance from the location to any tile in the cell
+     */
+    private static int getCellDistance(Point location, Point cell) {
+        int minX = cell.x * CELL_SIZE;
+        int minY = cell.y * CELL_SIZE;
+        int dx = Math.max(0, Math.max(minX - location.x, location.x - (minX + CELL_SIZE - 1)));
+        int dy = Math.max(0, Math.max(minY - location.y, location.y - (minY + CELL_SIZE - 1)));
+        return dx + dy;
+    }
+
+    private static int getDistance(Point location, Point p) {
+        return Math.abs(location.x - p.x) + Math.abs(location.y - p.y);
+    }
+
+    /**
+     * A task, or a cell of tasks not yet opened
+     */
+    private static final class Candidate implements Comparable<Candidate> {
+
+        private final int score;
+        private final AbstractTask task;
+        private final List<AbstractTask> cellTasks;
+
+        public Candidate(int score, List<AbstractTask> cellTasks) {
+            this.score = score;
+            this.task = null;
+            this.cellTasks = cellTasks;
+        }
+
+        public Candidate(int score, AbstractTask task) {
+            this.score = score;
+            this.task = task;
+            this.cellTasks = null;
+        }
+
+        @Override
+        public int compareTo(Candidate o) {
+            int result = Integer.compare(score, o.score);
+            if (result != 0) {
+                return result;
+            }
+
+            // Open the cells first, they may contain older tasks with the same score
+            if (task == null || o.task == null) {
+                return Boolean.compare(task != null, o.task != null);
+            }
+            return task.getTaskCreated().compareTo(o.task.getTaskCreated());
+        }
+    }
+
+}
@@ -25,13 +25,13 @@ import com.jme3.math.Quaternion;
 import com.jme3.math.Vector3f;
 import com.jme3.scene.Node;
 import com.jme3.system.AppSettings;
-import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.FilenameFilter;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
+import java.nio.ByteBuffer;
 import java.nio.file.FileVisitOption;
 import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
@@ -39,13 +39,24 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.util.AbstractMap;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.EnumSet;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
@@ -72,7 +83,7 @@ import toniarts.openkeeper.tools.convert.textures.loadingscreens.LoadingScreenFi
 import toniarts.openkeeper.tools.convert.wad.WadFile;
 import toniarts.openkeeper.utils.AssetUtils;
 import toniarts.openkeeper.utils.PathUtils;
-import toniarts.openkeeper.world.MapThumbnailGenerator;
+import toniarts.openkeeper.world.MapThumbnailService;
 
 /**
  *
@@ -86,9 +97,7 @@ import toniarts.openkeeper.world.MapThumbnailGenerator;
 public abstract class AssetsConverter {
 
     /**
-     * Processes are done in order
-     *
-     * @see ConvertProcess#getProcessNumber()
+     * The conversion processes, independent processes are run in parallel
      */
     public enum ConvertProcess {
 
@@ -100,7 +109,7 @@ public abstract class AssetsConverter {
         PATHS(4),
         HI_SCORES(2),
         FONTS(3),
-        MAP_THUMBNAILS(3);
+        MAP_THUMBNAILS(4);
 
         private ConvertProcess(int version) {
             this.version = version;
@@ -136,7 +145,8 @@ public abstract class AssetsConverter {
     }
     private final String dungeonKeeperFolder;
     private final AssetManager assetManager;
-    private static final boolean OVERWRITE_DATA = true; // Not exhausting your SDD :) or our custom graphics
+    private final int threads;
+    private final ConversionManifest manifest;
     private static final String ASSETS_FOLDER = "assets" + File.separator + "Converted";
     private static final String ABSOLUTE_ASSETS_FOLDER = getCurrentFolder() + ASSETS_FOLDER + File.separator;
 
@@ -151,16 +161,38 @@ public abstract class AssetsConverter {
     public static final String FONTS_FOLDER = INTERFACE_FOLDER + "Fonts";
     public static final String TEXTS_FOLDER = INTERFACE_FOLDER + "Texts";
     public static final String PATHS_FOLDER = INTERFACE_FOLDER + "Paths";
+    private static final String MANIFEST_FILE = "Conversion.manifest";
+
+    /**
+     * Versions of the single entry converters, bump when the output changes.
+     * Only the entries of the bumped converter are converted again.
+     */
+    private static final int MODEL_CONVERTER_VERSION = 1;
+    private static final int PATH_CONVERTER_VERSION = 1;
 
     private static final Logger LOGGER = Logger.getLogger(AssetsConverter.class.getName());
 
     public AssetsConverter(String dungeonKeeperFolder, AssetManager assetManager) {
+        this(dungeonKeeperFolder, assetManager, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a converter
+     *
+     * @param dungeonKeeperFolder DK II main folder
+     * @param assetManager the asset manager
+     * @param threads the number of worker threads to convert with
+     */
+    public AssetsConverter(String dungeonKeeperFolder, AssetManager assetManager, int threads) {
         this.dungeonKeeperFolder = dungeonKeeperFolder;
         this.assetManager = assetManager;
+        this.threads = Math.max(1, threads);
+        this.manifest = new ConversionManifest(new File(getAssetsFolder().concat(MANIFEST_FILE)));
     }
 
     /**
-     * Callback for updates
+     * Callback for updates. The processes run in parallel, so this is called
+     * from several threads
      *
      * @param currentProgress current progress, maybe null if not certain yet
      * @param totalProgress total progress, maybe null if not certain yet
@@ -168,18 +200,31 @@ public abstract class AssetsConverter {
      */
     protected abstract void updateStatus(Integer currentProgress, Integer totalProgress, ConvertProcess process);
 
-    public static boolean conversionNeeded(AppSettings settings) {
+    /**
+     * See which conversion processes need to be run. A process is run if its
+     * version has been bumped or if any of its source files has changed.
+     *
+     * @param settings the settings with the converted versions
+     * @param dungeonKeeperFolder DK II main folder
+     * @return true if any of the processes need to be run
+     */
+    public static boolean conversionNeeded(AppSettings settings, String dungeonKeeperFolder) {
         boolean needConversion = false;
+        ConversionManifest manifest = new ConversionManifest(new File(getAssetsFolder().concat(MANIFEST_FILE)));
 
         for (ConvertProcess item : ConvertProcess.values()) {
             String key = item.getSettingName();
-            boolean isOutdated = item.getVersion() > settings.getInteger(key);
+            boolean isOutdated = item.getVersion() > settings.getInteger(key)
+                    || manifest.isSourcesChanged(item.name(), getSourceFiles(item, dungeonKeeperFolder));
             item.setOutdated(isOutdated);
             if (isOutdated) {
                 needConversion = true;
             }
         }
 
+        // The checked sources might have new modification times
+        manifest.save();
+
         return needConversion;
     }
 
@@ -204,37 +249,154 @@ public abstract class AssetsConverter {
 
         //TODO: We need to search the normal assets before extracting do we actually already
         //have a user made asset there
-        //First and foremost, we need the textures
-        convertTextures(dungeonKeeperFolder, currentFolder.concat(TEXTURES_FOLDER).concat(File.separator));
+        final String assetsFolder = currentFolder;
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
 
-        //And the models, note that these already need to find the textures (our custom resource locator)
-        //In development this works without such
-        convertModels(dungeonKeeperFolder, currentFolder.concat(MODELS_FOLDER).concat(File.separator), assetManager);
+            //First and foremost, we need the textures
+            CompletableFuture<Void> textures = runProcess(ConvertProcess.TEXTURES,
+                    () -> convertTextures(dungeonKeeperFolder, assetsFolder.concat(TEXTURES_FOLDER).concat(File.separator)), pool);
+
+            //And the models, note that these already need to find the textures (our custom resource locator)
+            //In development this works without such
+            CompletableFuture<Void> models = textures.thenCompose((v) -> runProcess(ConvertProcess.MODELS,
+                    () -> convertModels(dungeonKeeperFolder, assetsFolder.concat(MODELS_FOLDER).concat(File.separator), assetManager), pool));
+
+            // The rest are independent
+            List<CompletableFuture<Void>> processes = Arrays.asList(textures, models,
+                    runProcess(ConvertProcess.MOUSE_CURSORS,
+                            () -> convertMouseCursors(dungeonKeeperFolder, assetsFolder.concat(MOUSE_CURSORS_FOLDER).concat(File.separator)), pool),
+                    runProcess(ConvertProcess.MUSIC_AND_SOUNDS,
+                            () -> convertSounds(dungeonKeeperFolder, assetsFolder.concat(SOUNDS_FOLDER).concat(File.separator)), pool),
+                    runProcess(ConvertProcess.INTERFACE_TEXTS,
+                            () -> convertTexts(dungeonKeeperFolder, assetsFolder.concat(TEXTS_FOLDER).concat(File.separator)), pool),
+                    runProcess(ConvertProcess.PATHS,
+                            () -> convertPaths(dungeonKeeperFolder, assetsFolder.concat(PATHS_FOLDER).concat(File.separator)), pool),
+                    runProcess(ConvertProcess.HI_SCORES,
+                            () -> convertHiScores(dungeonKeeperFolder), pool),
+                    runProcess(ConvertProcess.FONTS,
+                            () -> convertFonts(dungeonKeeperFolder, assetsFolder.concat(FONTS_FOLDER).concat(File.separator)), pool),
+                    runProcess(ConvertProcess.MAP_THUMBNAILS,
+                            () -> generateMapThumbnails(dungeonKeeperFolder, assetsFolder.concat(MAP_THUMBNAILS_FOLDER).concat(File.separator)), pool));
+            CompletableFuture.allOf(processes.toArray(new CompletableFuture[processes.size()])).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException("Failed to convert the assets!", e.getCause());
+        } finally {
+            pool.shutdown();
 
-        //The mouse cursors
-        convertMouseCursors(dungeonKeeperFolder, currentFolder.concat(MOUSE_CURSORS_FOLDER).concat(File.separator));
+            // Even if failed, the converted entries need not to be converted again
+            manifest.save();
+        }
 
-        //The sound and music
-        convertSounds(dungeonKeeperFolder, currentFolder.concat(SOUNDS_FOLDER).concat(File.separator));
+        // Log the time taken
+        long duration = System.currentTimeMillis() - start;
+        LOGGER.log(Level.INFO, "Conversion took {0} seconds!", TimeUnit.SECONDS.convert(duration, TimeUnit.MILLISECONDS));
+    }
 
-        //The texts
-        convertTexts(dungeonKeeperFolder, currentFolder.concat(TEXTS_FOLDER).concat(File.separator));
+    /**
+     * Runs a conversion process asynchronously and logs the time it took
+     *
+     * @param process the process
+     * @param task the conversion
+     * @param executor the executor to run on
+     * @return the process completion
+     */
+    private CompletableFuture<Void> runProcess(ConvertProcess process, Runnable task, Executor executor) {
+        return CompletableFuture.runAsync(() -> {
+            if (!process.isOutdated()) {
+                return;
+            }
+            long start = System.currentTimeMillis();
+            task.run();
 
-        //The paths
-        convertPaths(dungeonKeeperFolder, currentFolder.concat(PATHS_FOLDER).concat(File.separator));
+            // Record the sources only after a successful conversion
+            manifest.updateSources(process.name(), getSourceFiles(process, dungeonKeeperFolder));
+            LOGGER.log(Level.INFO, "Process {0} took {1} ms!", new Object[]{process, System.currentTimeMillis() - start});
+        }, executor);
+    }
 
-        //HiScores
-        convertHiScores(dungeonKeeperFolder);
+    /**
+     * Get the original files a conversion process reads
+     *
+     * @param process the conversion process
+     * @param dungeonKeeperFolder DK II main folder
+     * @return the existing source files
+     */
+    private static List<File> getSourceFiles(ConvertProcess process, String dungeonKeeperFolder) {
+        List<File> files = new ArrayList<>();
+        try {
+            switch (process) {
+                case TEXTURES:
+                    files.addAll(getEngineTexturesSourceFiles(dungeonKeeperFolder));
+                    files.add(new File(ConversionUtils.getRealFileName(dungeonKeeperFolder, PathUtils.DKII_DATA_FOLDER + "FrontEnd.WAD")));
+                    files.add(new File(ConversionUtils.getRealFileName(dungeonKeeperFolder, PathUtils.DKII_DATA_FOLDER + "EngineTextures.WAD")));
+                    break;
+                case MODELS:
+                    files.addAll(getEngineTexturesSourceFiles(dungeonKeeperFolder));
+                    files.add(new File(dungeonKeeperFolder + PathUtils.DKII_DATA_FOLDER + "Meshes.WAD"));
+                    break;
+                case MOUSE_CURSORS:
+                    files.add(new File(dungeonKeeperFolder + PathUtils.DKII_DATA_FOLDER + "Sprite.WAD"));
+                    break;
+                case MUSIC_AND_SOUNDS:
+                    files.addAll(findFiles(new File(ConversionUtils.getRealFileName(dungeonKeeperFolder, PathUtils.DKII_SFX_FOLDER)), ".sdt", Integer.MAX_VALUE));
+                    break;
+                case INTERFACE_TEXTS:
+                    files.addAll(findFiles(new File(dungeonKeeperFolder + PathUtils.DKII_TEXT_DEFAULT_FOLDER), ".str", 1));
+                    break;
+                case PATHS:
+                    files.add(new File(dungeonKeeperFolder + PathUtils.DKII_DATA_FOLDER + "Paths.WAD"));
+                    break;
+                case HI_SCORES:
+                    files.add(new File(dungeonKeeperFolder + "Data/Settings/HiScores.dat"));
+                    break;
+                case FONTS:
+                    files.addAll(findFiles(new File(dungeonKeeperFolder + PathUtils.DKII_TEXT_DEFAULT_FOLDER), ".bf4", Integer.MAX_VALUE));
+                    break;
+                case MAP_THUMBNAILS:
+                    files.addAll(findFiles(new File(dungeonKeeperFolder + PathUtils.DKII_MAPS_FOLDER), "", 1));
+                    break;
+            }
+        } catch (IOException e) {
 
-        //The fonts
-        convertFonts(dungeonKeeperFolder, currentFolder.concat(FONTS_FOLDER).concat(File.separator));
+            // The sources then differ from the recorded ones, and the process is just run
+            LOGGER.log(Level.WARNING, "Failed to list the source files of " + process + "!", e);
+        }
+        files.removeIf((file) -> !file.isFile());
+        return files;
+    }
 
-        //The map thumbnails
-        generateMapThumbnails(dungeonKeeperFolder, currentFolder.concat(MAP_THUMBNAILS_FOLDER).concat(File.separator));
+    private static List<File> getEngineTexturesSourceFiles(String dungeonKeeperFolder) throws IOException {
+        String file = ConversionUtils.getRealFileName(dungeonKeeperFolder, "DK2TextureCache".concat(File.separator).concat("EngineTextures.dat"));
+        return Arrays.asList(new File(file), new File(file.substring(0, file.length() - 3).concat("dir")));
+    }
 
-        // Log the time taken
-        long duration = System.currentTimeMillis() - start;
-        LOGGER.log(Level.INFO, "Conversion took {0} seconds!", TimeUnit.SECONDS.convert(duration, TimeUnit.MILLISECONDS));
+    /**
+     * Find files from a folder
+     *
+     * @param folder the folder
+     * @param extension the file extension, in lower case
+     * @param maxDepth how deep to search, 1 is only the folder itself
+     * @return the files found
+     * @throws IOException may fail
+     */
+    private static List<File> findFiles(File folder, String extension, int maxDepth) throws IOException {
+        final List<File> files = new ArrayList<>();
+        Files.walkFileTree(folder.toPath(), EnumSet.noneOf(FileVisitOption.class), maxDepth, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                if (attrs.isRegularFile() && file.getFileName().toString().toLowerCase().endsWith(extension)) {
+                    files.add(file.toFile());
+                }
+
+                //Always continue
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return files;
     }
 
     /**
@@ -275,22 +437,16 @@ public abstract class AssetsConverter {
             if (found && Integer.parseInt(matcher.group("mipmaplevel")) == 0) {
 
                 //Highest resolution, extract and rename
-                File f = etFile.extractFileData(textureFile, destination, OVERWRITE_DATA);
+                File f = etFile.extractFileData(textureFile, destination, true);
                 File newFile = new File(f.toString().replaceFirst("MM" + matcher.group("mipmaplevel"), ""));
-                if (OVERWRITE_DATA && newFile.exists()) {
+                if (newFile.exists()) {
                     newFile.delete();
-                } else if (!OVERWRITE_DATA && newFile.exists()) {
-
-                    // Delete the extracted file
-                    LOGGER.log(Level.INFO, "File {0} already exists, skipping!", newFile);
-                    f.delete();
-                    continue;
                 }
                 f.renameTo(newFile);
             } else if (!found) {
 
                 // No mipmap levels, just extract
-                etFile.extractFileData(textureFile, destination, OVERWRITE_DATA);
+                etFile.extractFileData(textureFile, destination, true);
             }
         }
 
@@ -310,79 +466,110 @@ public abstract class AssetsConverter {
         }
         LOGGER.log(Level.INFO, "Extracting models to: {0}", destination);
         updateStatus(null, null, ConvertProcess.MODELS);
-        AssetUtils.deleteFolder(new File(destination));
 
         // Create the materials folder or else the material file saving fails
+        // The folders are not cleared, the manifest tells what needs to be converted
         File materialFolder = new File(getAssetsFolder().concat(AssetsConverter.MATERIALS_FOLDER));
-        AssetUtils.deleteFolder(materialFolder);
         materialFolder.mkdirs();
 
         // Get the engine textures catalog
         EngineTexturesFile engineTexturesFile = getEngineTexturesFile(dungeonKeeperFolder);
 
+        // The models are converted with the engine textures, so they are a part of every model source
+        String engineTexturesHash;
+        try {
+            engineTexturesHash = ConversionManifest.getHash(getEngineTexturesSourceFiles(dungeonKeeperFolder));
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to hash the EngineTextures file!", e);
+        }
+
         //Meshes are in the data folder, access the packed file
         WadFile wad = new WadFile(new File(dungeonKeeperFolder + PathUtils.DKII_DATA_FOLDER + "Meshes.WAD"));
-        HashMap<String, KmfFile> kmfs = new HashMap<>();
-        File tmpdir = new File(System.getProperty("java.io.tmpdir"));
-        int i = 0;
+        Map<String, KmfFile> kmfs = new ConcurrentHashMap<>();
+        Map<String, String> sourceHashes = new ConcurrentHashMap<>();
+        AtomicInteger progress = new AtomicInteger(0);
         int total = wad.getWadFileEntryCount();
+        List<ForkJoinTask<?>> tasks = new ArrayList<>(total);
         for (final String entry : wad.getWadFileEntries()) {
-            try {
-                updateStatus(i, total, ConvertProcess.MODELS);
+            tasks.add(ForkJoinTask.adapt(() -> {
+                try {
+                    updateStatus(progress.get(), total, ConvertProcess.MODELS);
+
+                    // See if we already have this model
+                    ByteBuffer data = wad.getFileBuffer(entry);
+                    String sourceHash = ConversionManifest.getHash(data, engineTexturesHash);
+                    if (manifest.isUpToDate(getManifestKey(MODELS_FOLDER, entry), MODEL_CONVERTER_VERSION, sourceHash, getModelFile(destination, entry))) {
+                        progress.incrementAndGet();
+                        return;
+                    }
 
-                // See if we already have this model
-                if (!OVERWRITE_DATA && new File(destination.concat(entry.substring(0, entry.length() - 4)).concat(".j3o")).exists()) {
-                    LOGGER.log(Level.INFO, "File {0} already exists, skipping!", entry);
-                    i++;
-                    continue;
-                }
+                    // Parse straight from the WAD
+                    final KmfFile kmfFile = new KmfFile(data);
 
-                // Extract each file to temp
-                File f = wad.extractFileData(entry, tmpdir.toString());
-                f.deleteOnExit();
-
-                // Parse
-                final KmfFile kmfFile = new KmfFile(f);
-
-                // If it is a regular model or animation, process it straight away
-                // Leave groups for later (since linking)
-                if (kmfFile.getType() == KmfFile.Type.MESH || kmfFile.getType() == KmfFile.Type.ANIM) {
-                    convertModel(assetManager, new Entry<String, KmfFile>() {
-                        @Override
-                        public String getKey() {
-                            return entry;
-                        }
-
-                        @Override
-                        public KmfFile getValue() {
-                            return kmfFile;
-                        }
-
-                        @Override
-                        public KmfFile setValue(KmfFile value) {
-                            throw new UnsupportedOperationException("Plz, don't do this!");
-                        }
-                    }, destination, engineTexturesFile);
-
-                    // We can delete the file straight
-                    f.delete();
-                    i++;
-                } else {
+                    // If it is a regular model or animation, process it straight away
+                    // Leave groups for later (since linking)
+                    if (kmfFile.getType() == KmfFile.Type.MESH || kmfFile.getType() == KmfFile.Type.ANIM) {
+                        convertModel(assetManager, new AbstractMap.SimpleImmutableEntry<>(entry, kmfFile), destination, engineTexturesFile);
+                        manifest.update(getManifestKey(MODELS_FOLDER, entry), MODEL_CONVERTER_VERSION, sourceHash, getModelFile(destination, entry));
+                        progress.incrementAndGet();
+                    } else {
 
-                    // For later processing
-                    kmfs.put(entry, kmfFile);
+                        // For later processing
+                        kmfs.put(entry, kmfFile);
+                        sourceHashes.put(entry, sourceHash);
+                    }
+                } catch (Exception ex) {
+                    LOGGER.log(Level.SEVERE, "Failed to create a file for WAD entry " + entry + "!", ex);
+                    throw ex;
                 }
-            } catch (Exception ex) {
-                LOGGER.log(Level.SEVERE, "Failed to create a file for WAD entry " + entry + "!", ex);
-                throw ex;
-            }
+            }));
         }
 
+        // The meshes & animations can be converted in parallel
+        ForkJoinTask.invokeAll(tasks);
+
         // And the groups (now they can be linked)
+        tasks.clear();
         for (Entry<String, KmfFile> entry : kmfs.entrySet()) {
-            updateStatus(i, total, ConvertProcess.MODELS);
-            convertModel(assetManager, entry, destination, engineTexturesFile);
-            i++;
+            tasks.add(ForkJoinTask.adapt(() -> {
+                updateStatus(progress.get(), total, ConvertProcess.MODELS);
+                convertModel(assetManager, entry, destination, engineTexturesFile);
+                manifest.update(getManifestKey(MODELS_FOLDER, entry.getKey()), MODEL_CONVERTER_VERSION, sourceHashes.get(entry.getKey()), getModelFile(destination, entry.getKey()));
+                progress.incrementAndGet();
+            }));
+        }
+        ForkJoinTask.invokeAll(tasks);
+
+        // Remove the models that are no longer in the WAD
+        removeStaleEntries(MODELS_FOLDER, wad.getWadFileEntries(), (entry) -> getModelFile(destination, entry));
+    }
+
+    private static File getModelFile(String destination, String entry) {
+        return new File(destination.concat(entry.substring(0, entry.length() - 4)).concat(".j3o"));
+    }
+
+    private static String getManifestKey(String folder, String entry) {
+        return folder.concat("/").concat(entry);
+    }
+
+    /**
+     * Removes the converted files of the entries no longer present in the
+     * source
+     *
+     * @param folder the conversion folder, the manifest key prefix
+     * @param entries the current source entries
+     * @param outputFile gives the converted file of an entry
+     */
+    private void removeStaleEntries(String folder, Collection<String> entries, Function<String, File> outputFile) {
+        String prefix = getManifestKey(folder, "");
+        Set<String> keys = manifest.getKeys(prefix);
+        for (String entry : entries) {
+            keys.remove(getManifestKey(folder, entry));
+        }
+        for (String key : keys) {
+            LOGGER.log(Level.INFO, "Removing stale entry {0}", key);
+            outputFile.apply(key.substring(prefix.length())).delete();
+            manifest.remove(key);
         }
     }
 
@@ -470,23 +657,11 @@ public abstract class AssetsConverter {
         String dataDirectory = PathUtils.DKII_SFX_FOLDER;
 
         //Find all the sound files
-        final List<File> sdtFiles = new ArrayList<>();
+        final List<File> sdtFiles;
         File dataDir = null;
         try {
             dataDir = new File(ConversionUtils.getRealFileName(dungeonKeeperFolder, dataDirectory));
-            Files.walkFileTree(dataDir.toPath(), new SimpleFileVisitor<Path>() {
-                @Override
-                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
-
-                    //Get all the SDT files
-                    if (attrs.isRegularFile() && file.getFileName().toString().toLowerCase().endsWith(".sdt")) {
-                        sdtFiles.add(file.toFile());
-                    }
-
-                    //Always continue
-                    return FileVisitResult.CONTINUE;
-                }
-            });
+            sdtFiles = findFiles(dataDir, ".sdt", Integer.MAX_VALUE);
         } catch (IOException ex) {
             String msg = "Failed to scan sounds folder " + dataDirectory + "!";
             LOGGER.log(Level.SEVERE, msg, ex);
@@ -568,22 +743,10 @@ public abstract class AssetsConverter {
         String dataDirectory = dungeonKeeperFolder + PathUtils.DKII_TEXT_DEFAULT_FOLDER;
 
         //Find all the STR files
-        final List<File> srtFiles = new ArrayList<>();
+        final List<File> srtFiles;
         File dataDir = new File(dataDirectory);
         try {
-            Files.walkFileTree(dataDir.toPath(), EnumSet.noneOf(FileVisitOption.class), 1, new SimpleFileVisitor<Path>() {
-                @Override
-                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
-
-                    //Get all the STR files
-                    if (attrs.isRegularFile() && file.getFileName().toString().toLowerCase().endsWith(".str")) {
-                        srtFiles.add(file.toFile());
-                    }
-
-                    //Always continue
-                    return FileVisitResult.CONTINUE;
-                }
-            });
+            srtFiles = findFiles(dataDir, ".str", 1);
         } catch (IOException ex) {
             String msg = "Failed to scan texts folder " + dataDirectory + "!";
             LOGGER.log(Level.SEVERE, msg, ex);
@@ -666,13 +829,11 @@ public abstract class AssetsConverter {
         }
         LOGGER.log(Level.INFO, "Extracting paths to: {0}", destination);
         updateStatus(null, null, ConvertProcess.PATHS);
-        AssetUtils.deleteFolder(new File(destination));
 
         //Paths are in the data folder, access the packed file
         WadFile wad = new WadFile(new File(dungeonKeeperFolder + PathUtils.DKII_DATA_FOLDER + "Paths.WAD"));
         int i = 0;
         int total = wad.getWadFileEntryCount();
-        File tmpdir = new File(System.getProperty("java.io.tmpdir"));
         BinaryExporter exporter = BinaryExporter.getInstance();
         for (final String entry : wad.getWadFileEntries()) {
             try {
@@ -682,12 +843,16 @@ public abstract class AssetsConverter {
                 // Convert all the KCS entries
                 if (entry.toLowerCase().endsWith(".kcs")) {
 
-                    // Extract each file to temp
-                    File f = wad.extractFileData(entry, tmpdir.toString());
-                    f.deleteOnExit();
+                    // See if we already have this path
+                    ByteBuffer data = wad.getFileBuffer(entry);
+                    String sourceHash = ConversionManifest.getHash(data);
+                    File pathFile = getPathFile(destination, entry);
+                    if (manifest.isUpToDate(getManifestKey(PATHS_FOLDER, entry), PATH_CONVERTER_VERSION, sourceHash, pathFile)) {
+                        continue;
+                    }
 
-                    // Open the entry
-                    KcsFile kcsFile = new KcsFile(f);
+                    // Open the entry straight from the WAD
+                    KcsFile kcsFile = new KcsFile(data);
 
                     // Convert
                     List<CameraSweepDataEntry> entries = new ArrayList<>(kcsFile.getKcsEntries().size());
@@ -709,7 +874,8 @@ public abstract class AssetsConverter {
                     CameraSweepData cameraSweepData = new CameraSweepData(entries);
 
                     // Save it
-                    exporter.save(cameraSweepData, new File(destination.concat(entry.substring(0, entry.length() - 3)).concat(CameraSweepDataLoader.CAMERA_SWEEP_DATA_FILE_EXTENSION)));
+                    exporter.save(cameraSweepData, pathFile);
+                    manifest.update(getManifestKey(PATHS_FOLDER, entry), PATH_CONVERTER_VERSION, sourceHash, pathFile);
                 } else if (entry.toLowerCase().endsWith(".txt")) {
 
                     // The text file is nice to have, it is an info text
@@ -722,6 +888,13 @@ public abstract class AssetsConverter {
                 throw new RuntimeException(msg, ex);
             }
         }
+
+        // Remove the paths that are no longer in the WAD
+        removeStaleEntries(PATHS_FOLDER, wad.getWadFileEntries(), (entry) -> getPathFile(destination, entry));
+    }
+
+    private static File getPathFile(String destination, String entry) {
+        return new File(destination.concat(entry.substring(0, entry.length() - 3)).concat(CameraSweepDataLoader.CAMERA_SWEEP_DATA_FILE_EXTENSION));
     }
 
     /**
@@ -774,20 +947,7 @@ public abstract class AssetsConverter {
             new File(destination).mkdirs();
 
             // Find all the font files
-            final List<File> bf4Files = new ArrayList<>();
-            Files.walkFileTree(new File(dungeonKeeperFolder + PathUtils.DKII_TEXT_DEFAULT_FOLDER).toPath(), new SimpleFileVisitor<Path>() {
-                @Override
-                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
-
-                    //Get all the BF4 files
-                    if (attrs.isRegularFile() && file.getFileName().toString().toLowerCase().endsWith(".bf4")) {
-                        bf4Files.add(file.toFile());
-                    }
-
-                    //Always continue
-                    return FileVisitResult.CONTINUE;
-                }
-            });
+            final List<File> bf4Files = findFiles(new File(dungeonKeeperFolder + PathUtils.DKII_TEXT_DEFAULT_FOLDER), ".bf4", Integer.MAX_VALUE);
 
             // Go through the font files
             int i = 0;
@@ -842,7 +1002,9 @@ public abstract class AssetsConverter {
     }
 
     /**
-     * Generates thumbnails out of map files (only the skirmish/mp)
+     * Generates thumbnails out of map files (only the skirmish/mp). The
+     * thumbnails are rendered in parallel and named by the map data hash, see
+     * {@link MapThumbnailService}
      *
      * @param dungeonKeeperFolder DK II main folder
      * @param destination Destination folder
@@ -857,6 +1019,7 @@ public abstract class AssetsConverter {
         AssetUtils.deleteFolder(destFolder);
         // Make sure it exists
         destFolder.mkdirs();
+        MapThumbnailService thumbnailService = new MapThumbnailService(destination, dungeonKeeperFolder, threads);
         try {
 
             // Get the skirmish/mp maps
@@ -878,32 +1041,25 @@ public abstract class AssetsConverter {
                 }
             }
 
-            // Go through the map files
-            int i = 0;
+            // Render the map files in parallel
+            AtomicInteger progress = new AtomicInteger(0);
             int total = maps.size();
+            updateStatus(0, total, ConvertProcess.MAP_THUMBNAILS);
+            List<CompletableFuture<File>> thumbnails = new ArrayList<>(total);
             for (KwdFile kwd : maps) {
-                updateStatus(i, total, ConvertProcess.MAP_THUMBNAILS);
-                genererateMapThumbnail(kwd, destination);
-                i++;
+                thumbnails.add(thumbnailService.getThumbnail(kwd).whenComplete((file, e) -> {
+                    if (e != null) {
+                        LOGGER.log(Level.WARNING, "Failed to generate the map thumbnail of " + kwd.getGameLevel().getName() + "!", e); // Not fatal
+                    }
+                    updateStatus(progress.incrementAndGet(), total, ConvertProcess.MAP_THUMBNAILS);
+                }));
             }
+            CompletableFuture.allOf(thumbnails.toArray(new CompletableFuture[thumbnails.size()])).exceptionally((e) -> null).join();
         } catch (Exception ex) {
             String msg = "Failed to process the map thumbnails to " + destination + "!";
             LOGGER.log(Level.WARNING, msg, ex); // Not fatal
+        } finally {
+            thumbnailService.shutdown();
         }
     }
-
-    /**
-     * Generates a map thumbnail out of the given map file
-     *
-     * @param kwd map file
-     * @param destination the folder to save to
-     * @throws IOException may fail
-     */
-    public static void genererateMapThumbnail(KwdFile kwd, String destination) throws IOException {
-
-        // Create the thumbnail & save it
-        // TODO maybe image size in Settings ???
-        BufferedImage thumbnail = MapThumbnailGenerator.generateMap(kwd, 144, 144, false);
-        ImageIO.write(thumbnail, "png", new File(destination + ConversionUtils.stripFileName(kwd.getGameLevel().getName()) + ".png"));
-    }
 }
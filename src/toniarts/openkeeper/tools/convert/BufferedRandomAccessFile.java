@@ -0,0 +1,146 @@
+/*
+ * Copyright (C) 2014-2018 OpenKeeper
+ *
+ * OpenKeeper is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenKeeper is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenKeeper.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package toniarts.openkeeper.tools.convert;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+/**
+ * Read only random access file that reads the underlying file in large
+ * chunks. The file formats are read a field at a time, with a plain
+ * {@link RandomAccessFile} every field is a system call. Seeking inside the
+ * current chunk is free.
+ *
+ * @author Toni Helenius <helenius.toni@gmail.com>
+ */
+public class BufferedRandomAccessFile extends RandomAccessFile {
+
+    private static final int DEFAULT_BUFFER_SIZE = 65536;
+
+    private final byte[] buffer;
+    private final long length;
+    private long bufferStart = 0;
+    private int bufferLength = 0;
+    private int bufferPosition = 0;
+
+    public BufferedRandomAccessFile(String name) throws FileNotFoundException {
+        this(new File(name));
+    }
+
+    public BufferedRandomAccessFile(File file) throws FileNotFoundException {
+        this(file, DEFAULT_BUFFER_SIZE);
+    }
+
+    public BufferedRandomAccessFile(File file, int bufferSize) throws FileNotFoundException {
+        super(file, "r");
+        this.buffer = new byte[bufferSize];
+        this.length = file.length();
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (bufferPosition >= bufferLength && !fill()) {
+            return -1;
+        }
+        return buffer[bufferPosition++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b) throws IOException {
+        return read(b, 0, b.length);
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+
+        int read = 0;
+        while (read < len) {
+            if (bufferPosition >= bufferLength) {
+
+                // Large reads go straight to the file
+                if (len - read >= buffer.length) {
+                    long position = getFilePointer();
+                    super.seek(position);
+                    int count = super.read(b, off + read, len - read);
+                    if (count > 0) {
+                        read += count;
+                        bufferStart = position + count;
+                        bufferLength = 0;
+                        bufferPosition = 0;
+                    }
+                    break;
+                }
+                if (!fill()) {
+                    break;
+                }
+            }
+            int count = Math.min(len - read, bufferLength - bufferPosition);
+            System.arraycopy(buffer, bufferPosition, b, off + read, count);
+            bufferPosition += count;
+            read += count;
+        }
+        return (read == 0 ? -1 : read);
+    }
+
+    @Override
+    public long getFilePointer() throws IOException {
+        return bufferStart + bufferPosition;
+    }
+
+    @Override
+    public void seek(long pos) throws IOException {
+        if (pos < 0) {
+            throw new IOException("Negative seek offset " + pos + "!");
+        }
+        if (pos >= bufferStart && pos <= bufferStart + bufferLength) {
+            bufferPosition = (int) (pos - bufferStart);
+        } else {
+            bufferStart = pos;
+            bufferLength = 0;
+            bufferPosition = 0;
+        }
+    }
+
+    @Override
+    public long length() throws IOException {
+        return length;
+    }
+
+    /**
+     * Reads the next chunk from the current position
+     *
+     * @return false if at the end of the file
+     */
+    private boolean fill() throws IOException {
+        bufferStart = getFilePointer();
+        bufferPosition = 0;
+        bufferLength = 0;
+        super.seek(bufferStart);
+        int count = super.read(buffer, 0, buffer.length);
+        if (count <= 0) {
+            return false;
+        }
+        bufferLength = count;
+        return true;
+    }
+
+}
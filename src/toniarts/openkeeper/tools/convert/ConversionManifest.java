@@ -0,0 +1,302 @@
+/*
+ * Copyright (C) 2014-2018 OpenKeeper
+ *
+ * OpenKeeper is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenKeeper is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenKeeper.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package toniarts.openkeeper.tools.convert;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Properties;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Records what has been converted. Every converted entry has the version of
+ * its converter and the content hashes of the source and the output. An entry
+ * only needs to be converted again if any of these have changed.<br>
+ * The source files of the conversion processes are recorded too, so a
+ * changed source file is noticed even if no conversion version has changed.
+ * Their size and modification time are checked first, the files are only
+ * hashed if these differ.<br>
+ * Thread safe, the conversion processes run in parallel. A converted entry
+ * is read and written with single operations of the underlying properties,
+ * the source file records are read and modified under the manifest lock.
+ *
+ * @author Toni Helenius <helenius.toni@gmail.com>
+ */
+public class ConversionManifest {
+
+    private static final String HASH_ALGORITHM = "SHA-1";
+    private static final String SOURCES_PREFIX = "sources/";
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final File file;
+    private final Properties records = new Properties();
+    private static final Logger LOGGER = Logger.getLogger(ConversionManifest.class.getName());
+
+    /**
+     * Opens a manifest, a missing or a broken manifest is just empty
+     *
+     * @param file the manifest file
+     */
+    public ConversionManifest(File file) {
+        this.file = file;
+        if (file.exists()) {
+            try (InputStream in = new FileInputStream(file)) {
+                records.load(in);
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Failed to read the conversion manifest " + file + "!", e);
+                records.clear();
+            }
+        }
+    }
+
+    /**
+     * See if the entry is already converted from the given source
+     *
+     * @param key the entry key
+     * @param version version of the converter
+     * @param sourceHash hash of the source data
+     * @param output the converted file
+     * @return true if the output is up to date
+     */
+    public boolean isUpToDate(String key, int version, String sourceHash, File output) {
+        String record = records.getProperty(key);
+        if (record == null || !record.startsWith(version + ":" + sourceHash + ":") || !output.exists()) {
+            return false;
+        }
+        try {
+            return record.equals(toRecord(version, sourceHash, getHash(output)));
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Record a converted entry
+     *
+     * @param key the entry key
+     * @param version version of the converter
+     * @param sourceHash hash of the source data
+     * @param output the converted file
+     */
+    public void update(String key, int version, String sourceHash, File output) {
+        try {
+            records.setProperty(key, toRecord(version, sourceHash, getHash(output)));
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to hash the output " + output + "!", e);
+            records.remove(key);
+        }
+    }
+
+    /**
+     * Forget an entry
+     *
+     * @param key the entry key
+     */
+    public void remove(String key) {
+        records.remove(key);
+    }
+
+    /**
+     * Get the keys of the recorded entries
+     *
+     * @param prefix key prefix, i.e. the conversion process
+     * @return the entry keys starting with the prefix
+     */
+    public Set<String> getKeys(String prefix) {
+        Set<String> keys = new HashSet<>();
+        for (String key : records.stringPropertyNames()) {
+            if (key.startsWith(prefix)) {
+                keys.add(key);
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * See if the source files of a process have changed since they were last
+     * recorded, or if files have been added or removed
+     *
+     * @param process the conversion process
+     * @param sources the current source files
+     * @return true if the process needs to be run
+     */
+    public synchronized boolean isSourcesChanged(String process, Collection<File> sources) {
+        String prefix = getSourcesPrefix(process);
+        Set<String> keys = getKeys(prefix);
+        for (File source : sources) {
+            String key = prefix.concat(source.getPath());
+            if (!keys.remove(key) || !isSourceUpToDate(key, source)) {
+                return true;
+            }
+        }
+        return !keys.isEmpty();
+    }
+
+    private boolean isSourceUpToDate(String key, File source) {
+        String record = records.getProperty(key);
+        String stamp = source.length() + ":" + source.lastModified() + ":";
+        if (record.startsWith(stamp)) {
+            return true;
+        }
+
+        // Just touched, remember the new time so that it is not hashed again
+        try {
+            String hash = getHash(source);
+            if (record.endsWith(":" + hash)) {
+                records.setProperty(key, stamp.concat(hash));
+                return true;
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to hash the source " + source + "!", e);
+        }
+        return false;
+    }
+
+    /**
+     * Record the source files of a successfully run process
+     *
+     * @param process the conversion process
+     * @param sources the source files
+     */
+    public synchronized void updateSources(String process, Collection<File> sources) {
+        String prefix = getSourcesPrefix(process);
+        for (String key : getKeys(prefix)) {
+            records.remove(key);
+        }
+        for (File source : sources) {
+            try {
+                records.setProperty(prefix.concat(source.getPath()), source.length() + ":" + source.lastModified() + ":" + getHash(source));
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Failed to hash the source " + source + "!", e);
+            }
+        }
+    }
+
+    private static String getSourcesPrefix(String process) {
+        return SOURCES_PREFIX.concat(process).concat("/");
+    }
+
+    /**
+     * Write the manifest to the disk
+     */
+    public synchronized void save() {
+        file.getParentFile().mkdirs();
+        try (OutputStream out = new FileOutputStream(file)) {
+            records.store(out, "OpenKeeper conversion manifest");
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to save the conversion manifest " + file + "!", e);
+        }
+    }
+
+    private static String toRecord(int version, String sourceHash, String outputHash) {
+        return version + ":" + sourceHash + ":" + outputHash;
+    }
+
+    /**
+     * Hash the remaining data of a buffer, the buffer position is not changed
+     *
+     * @param data the data
+     * @return the hash as a hex string
+     */
+    public static String getHash(ByteBuffer data) {
+        MessageDigest digest = getDigest();
+        digest.update(data.duplicate());
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Hash the remaining data of a buffer together with the hash of other
+     * data the conversion depends on, the buffer position is not changed
+     *
+     * @param data the data
+     * @param dependencyHash hash of the other source data
+     * @return the hash as a hex string
+     */
+    public static String getHash(ByteBuffer data, String dependencyHash) {
+        MessageDigest digest = getDigest();
+        digest.update(data.duplicate());
+        digest.update(dependencyHash.getBytes(StandardCharsets.US_ASCII));
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Hash a file
+     *
+     * @param file the file
+     * @return the hash as a hex string
+     * @throws IOException may fail
+     */
+    public static String getHash(File file) throws IOException {
+        MessageDigest digest = getDigest();
+        update(digest, file);
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Hash files, in the given order
+     *
+     * @param files the files
+     * @return the hash as a hex string
+     * @throws IOException may fail
+     */
+    public static String getHash(Collection<File> files) throws IOException {
+        MessageDigest digest = getDigest();
+        for (File file : files) {
+            update(digest, file);
+        }
+        return toHex(digest.digest());
+    }
+
+    private static void update(MessageDigest digest, File file) throws IOException {
+        byte[] buffer = new byte[65536];
+        try (InputStream in = new FileInputStream(file)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+    }
+
+    private static MessageDigest getDigest() {
+        try {
+            return MessageDigest.getInstance(HASH_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("No " + HASH_ALGORITHM + " available!", e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        char[] result = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            result[i * 2] = HEX[(bytes[i] >> 4) & 0xF];
+            result[i * 2 + 1] = HEX[bytes[i] & 0xF];
+        }
+        return new String(result);
+    }
+
+}
@@ -94,6 +94,24 @@ public class ConversionUtils {
         return toUnsignedInteger(unsignedInt);
     }
 
+    /**
+     * Reads 4 bytes and converts it to JAVA int from LITTLE ENDIAN unsigned int
+     *
+     * @param buffer the buffer to read from
+     * @return JAVA native int
+     * @see #readUnsignedInteger(java.io.RandomAccessFile)
+     */
+    public static int readUnsignedInteger(ByteBuffer buffer) {
+        int result = buffer.getInt();
+        if (buffer.order() != ByteOrder.LITTLE_ENDIAN) {
+            result = Integer.reverseBytes(result);
+        }
+        if (result < 0) {
+            LOGGER.warning("This unsigned integer doesn't fit to JAVA integer! Use a different method!");
+        }
+        return result;
+    }
+
     /**
      * Converts 4 bytes to JAVA int from LITTLE ENDIAN unsigned int presented by
      * a byte array
@@ -153,6 +171,21 @@ public class ConversionUtils {
         return toUnsignedShort(unsignedShort);
     }
 
+    /**
+     * Reads 2 bytes and converts it to JAVA short from LITTLE ENDIAN unsigned
+     * short (needs to be int in JAVA)
+     *
+     * @param buffer the buffer to read from
+     * @return JAVA native int
+     */
+    public static int readUnsignedShort(ByteBuffer buffer) {
+        short result = buffer.getShort();
+        if (buffer.order() != ByteOrder.LITTLE_ENDIAN) {
+            result = Short.reverseBytes(result);
+        }
+        return result & 0xFFFF;
+    }
+
     /**
      * Converts 2 bytes to JAVA short from LITTLE ENDIAN unsigned short
      * presented by a byte array (needs to be int in JAVA)
@@ -208,6 +241,30 @@ public class ConversionUtils {
         return toFloat(f);
     }
 
+    /**
+     * Reads 4 bytes and converts it to JAVA float from LITTLE ENDIAN float
+     *
+     * @param buffer the buffer to read from
+     * @return JAVA native float
+     */
+    public static float readFloat(ByteBuffer buffer) {
+        int bits = buffer.getInt();
+        if (buffer.order() != ByteOrder.LITTLE_ENDIAN) {
+            bits = Integer.reverseBytes(bits);
+        }
+        return Float.intBitsToFloat(bits);
+    }
+
+    /**
+     * Skips bytes in the buffer
+     *
+     * @param buffer the buffer
+     * @param count the number of bytes to skip
+     */
+    public static void skipBytes(ByteBuffer buffer, int count) {
+        buffer.position(buffer.position() + count);
+    }
+
     /**
      * Converts 4 bytes to JAVA float from LITTLE ENDIAN float presented by a
      * byte array
@@ -382,6 +439,32 @@ public class ConversionUtils {
         return strings;
     }
 
+    /**
+     * Reads strings of varying length (ASCII NULL terminated) from the buffer
+     *
+     * @param buffer the buffer to read from
+     * @param numberOfStrings number of Strings to read
+     * @return list of strings read from the buffer
+     */
+    public static List<String> readVaryingLengthStrings(ByteBuffer buffer, int numberOfStrings) {
+        List<String> strings = new ArrayList<>(numberOfStrings);
+
+        for (int i = 0; i < numberOfStrings; i++) {
+
+            // Read until 0 byte
+            int start = buffer.position();
+            while (buffer.get() != 0) {
+                // Just find the end
+            }
+            byte[] bytes = new byte[buffer.position() - start - 1];
+            buffer.position(start);
+            buffer.get(bytes);
+            buffer.get(); // The 0 byte
+            strings.add(ConversionUtils.toString(bytes));
+        }
+        return strings;
+    }
+
     /**
      * Reads string of varying length (ASCII NULL terminated) from the file
      *
@@ -158,7 +158,16 @@ public class KmfModelLoader implements AssetLoader {
         if (kmfFile.getType() == KmfFile.Type.MESH || kmfFile.getType() == KmfFile.Type.ANIM) {
 
             // Get the materials first
-            Map<Integer, List<Material>> materials = getMaterials(kmfFile, generateMaterialFile, assetInfo);
+            Map<Integer, List<Material>> materials;
+            if (generateMaterialFile) {
+
+                // The material files are shared between the models, generate them one model at a time
+                synchronized (materialCache) {
+                    materials = getMaterials(kmfFile, true, assetInfo);
+                }
+            } else {
+                materials = getMaterials(kmfFile, false, assetInfo);
+            }
 
             //
             // The meshes
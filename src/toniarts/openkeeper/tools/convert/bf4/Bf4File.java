@@ -33,6 +33,7 @@ import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import javax.imageio.stream.MemoryCacheImageInputStream;
+import toniarts.openkeeper.tools.convert.BufferedRandomAccessFile;
 import toniarts.openkeeper.tools.convert.ConversionUtils;
 import toniarts.openkeeper.tools.convert.bf4.Bf4Entry.FontEntryFlag;
 
@@ -73,7 +74,7 @@ public class Bf4File implements Iterable<Bf4Entry> {
     public Bf4File(File file) {
 
         // Read the file
-        try (RandomAccessFile rawBf4 = new RandomAccessFile(file, "r")) {
+        try (RandomAccessFile rawBf4 = new BufferedRandomAccessFile(file)) {
 
             // Check the header
             byte[] header = new byte[4];
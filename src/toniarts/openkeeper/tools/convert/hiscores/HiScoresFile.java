@@ -21,6 +21,7 @@ import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.util.ArrayList;
 import java.util.List;
+import toniarts.openkeeper.tools.convert.BufferedRandomAccessFile;
 import toniarts.openkeeper.tools.convert.ConversionUtils;
 
 /**
@@ -42,7 +43,7 @@ public class HiScoresFile {
     public HiScoresFile(File file) {
 
         //Read the file
-        try (RandomAccessFile data = new RandomAccessFile(file, "r")) {
+        try (RandomAccessFile data = new BufferedRandomAccessFile(file)) {
 
             //Read the entries, no header, just entries till the end
             hiScoresEntries = new ArrayList<>();
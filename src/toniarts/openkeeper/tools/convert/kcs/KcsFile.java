@@ -18,7 +18,9 @@ package toniarts.openkeeper.tools.convert.kcs;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.List;
 import toniarts.openkeeper.tools.convert.ConversionUtils;
@@ -46,36 +48,49 @@ public class KcsFile {
      * @param file the kcs file to read
      */
     public KcsFile(File file) {
+        this(readFile(file));
+    }
 
-        //Read the file
-        try (RandomAccessFile rawKcs = new RandomAccessFile(file, "r")) {
+    /**
+     * Constructs a new Kcs file reader from memory, i.e. straight from a WAD
+     * entry
+     *
+     * @param data the kcs file data, read from the current position
+     */
+    public KcsFile(ByteBuffer data) {
+        ByteBuffer rawKcs = data.duplicate().order(ByteOrder.LITTLE_ENDIAN);
 
-            //Header
-            int numOfEntries = ConversionUtils.readUnsignedInteger(rawKcs);
-            rawKcs.skipBytes(12); // 12 bytes of emptiness?
+        //Header
+        int numOfEntries = ConversionUtils.readUnsignedInteger(rawKcs);
+        ConversionUtils.skipBytes(rawKcs, 12); // 12 bytes of emptiness?
 
-            //Read the entries
-            kcsEntries = new ArrayList<>(numOfEntries);
-            for (int i = 0; i < numOfEntries; i++) {
+        //Read the entries
+        kcsEntries = new ArrayList<>(numOfEntries);
+        for (int i = 0; i < numOfEntries; i++) {
+
+            //Entries have 56 bytes in them
+            KcsEntry entry = new KcsEntry();
+            entry.setPosition(ConversionUtils.readFloat(rawKcs),
+                    ConversionUtils.readFloat(rawKcs),
+                    ConversionUtils.readFloat(rawKcs));
+            entry.setDirection(ConversionUtils.readFloat(rawKcs),
+                    ConversionUtils.readFloat(rawKcs),
+                    ConversionUtils.readFloat(rawKcs));
+            entry.setLeft(ConversionUtils.readFloat(rawKcs),
+                    ConversionUtils.readFloat(rawKcs),
+                    ConversionUtils.readFloat(rawKcs));
+            entry.setUp(ConversionUtils.readFloat(rawKcs),
+                    ConversionUtils.readFloat(rawKcs),
+                    ConversionUtils.readFloat(rawKcs));
+            entry.setLens(ConversionUtils.readFloat(rawKcs));
+            entry.setNear(ConversionUtils.readFloat(rawKcs));
+            kcsEntries.add(entry);
+        }
+    }
 
-                //Entries have 56 bytes in them
-                KcsEntry entry = new KcsEntry();
-                entry.setPosition(ConversionUtils.readFloat(rawKcs),
-                        ConversionUtils.readFloat(rawKcs),
-                        ConversionUtils.readFloat(rawKcs));
-                entry.setDirection(ConversionUtils.readFloat(rawKcs),
-                        ConversionUtils.readFloat(rawKcs),
-                        ConversionUtils.readFloat(rawKcs));
-                entry.setLeft(ConversionUtils.readFloat(rawKcs),
-                        ConversionUtils.readFloat(rawKcs),
-                        ConversionUtils.readFloat(rawKcs));
-                entry.setUp(ConversionUtils.readFloat(rawKcs),
-                        ConversionUtils.readFloat(rawKcs),
-                        ConversionUtils.readFloat(rawKcs));
-                entry.setLens(ConversionUtils.readFloat(rawKcs));
-                entry.setNear(ConversionUtils.readFloat(rawKcs));
-                kcsEntries.add(entry);
-            }
+    private static ByteBuffer readFile(File file) {
+        try {
+            return ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
         } catch (IOException e) {
 
             //Fug
@@ -18,7 +18,9 @@ package toniarts.openkeeper.tools.convert.kmf;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -84,53 +86,66 @@ public class KmfFile {
     public KmfFile(File file) {
 
         //Read the file
-        try (RandomAccessFile rawKmf = new RandomAccessFile(file, "r")) {
+        try {
+            parse(ByteBuffer.wrap(Files.readAllBytes(file.toPath())).order(ByteOrder.LITTLE_ENDIAN));
+        } catch (IOException e) {
 
-            //Read the identifier
-            checkHeader(rawKmf, KMF_HEADER_IDENTIFIER);
-            rawKmf.skipBytes(4);
-            version = ConversionUtils.readUnsignedInteger(rawKmf);
+            //Fug
+            throw new RuntimeException("Failed to open the file " + file + "!", e);
+        }
+    }
 
-            //KMSH/HEAD
-            checkHeader(rawKmf, KMF_HEAD);
-            parseHead(rawKmf);
+    /**
+     * Reads a KMF file from memory, i.e. straight from a WAD entry
+     *
+     * @param data the KMF file data, read from the current position
+     */
+    public KmfFile(ByteBuffer data) {
+        parse(data.duplicate().order(ByteOrder.LITTLE_ENDIAN));
+    }
 
-            //KMSH/MATL
-            if (type != Type.GROP) {
-                checkHeader(rawKmf, KMF_MATERIALS);
-                parseMatl(rawKmf);
-            }
+    private void parse(ByteBuffer rawKmf) {
 
-            //KMSH/MESH, there are n amount of these
-            meshes = new ArrayList();
-            String temp = "";
-            byte[] buf = new byte[4];
-            do {
-                if (rawKmf.read(buf) == -1) {
-                    break; // EOF
-                }
-                temp = ConversionUtils.toString(buf);
-                if (KMF_MESH.equals(temp)) {
-                    meshes.add(parseMesh(rawKmf));
-                } else {
-                    break;
-                }
-            } while (true);
+        //Read the identifier
+        checkHeader(rawKmf, KMF_HEADER_IDENTIFIER);
+        ConversionUtils.skipBytes(rawKmf, 4);
+        version = ConversionUtils.readUnsignedInteger(rawKmf);
 
-            //KMSH/ANIM
-            if (type == Type.ANIM && KMF_ANIM.equals(temp)) {
-                anim = parseAnim(rawKmf);
-            }
+        //KMSH/HEAD
+        checkHeader(rawKmf, KMF_HEAD);
+        parseHead(rawKmf);
 
-            //KMSH/GROP
-            if (type == Type.GROP && KMF_GROP.equals(temp)) {
-                grops = parseGrop(rawKmf);
+        //KMSH/MATL
+        if (type != Type.GROP) {
+            checkHeader(rawKmf, KMF_MATERIALS);
+            parseMatl(rawKmf);
+        }
+
+        //KMSH/MESH, there are n amount of these
+        meshes = new ArrayList();
+        String temp = "";
+        byte[] buf = new byte[4];
+        do {
+            if (rawKmf.remaining() < buf.length) {
+                break; // EOF
             }
+            rawKmf.get(buf);
+            temp = ConversionUtils.toString(buf);
+            if (KMF_MESH.equals(temp)) {
+                meshes.add(parseMesh(rawKmf));
+            } else {
+                break;
+            }
+        } while (true);
 
-        } catch (IOException e) {
+        //KMSH/ANIM
+        if (type == Type.ANIM && KMF_ANIM.equals(temp)) {
+            anim = parseAnim(rawKmf);
+        }
 
-            //Fug
-            throw new RuntimeException("Failed to open the file " + file + "!", e);
+        //KMSH/GROP
+        if (type == Type.GROP && KMF_GROP.equals(temp)) {
+            grops = parseGrop(rawKmf);
         }
     }
 
@@ -140,8 +155,8 @@ public class KmfFile {
      *
      * @param rawKmf kmf file starting on HEAD
      */
-    private void parseHead(RandomAccessFile rawKmf) throws IOException {
-        rawKmf.skipBytes(4);
+    private void parseHead(ByteBuffer rawKmf) {
+        ConversionUtils.skipBytes(rawKmf, 4);
         this.type = Type.toType(ConversionUtils.readUnsignedInteger(rawKmf));
         int unknown = ConversionUtils.readUnsignedInteger(rawKmf);
     }
@@ -152,8 +167,8 @@ public class KmfFile {
      *
      * @param rawKmf kmf file starting on MATL
      */
-    private void parseMatl(RandomAccessFile rawKmf) throws IOException {
-        rawKmf.skipBytes(4);
+    private void parseMatl(ByteBuffer rawKmf) {
+        ConversionUtils.skipBytes(rawKmf, 4);
         int materialsCount = ConversionUtils.readUnsignedInteger(rawKmf);
         byte[] buf = new byte[4];
 
@@ -171,8 +186,8 @@ public class KmfFile {
      *
      * @param rawKmf kmf file starting on MATL
      */
-    private Material parseMat2(RandomAccessFile rawKmf) throws IOException {
-        rawKmf.skipBytes(4);
+    private Material parseMat2(ByteBuffer rawKmf) {
+        ConversionUtils.skipBytes(rawKmf, 4);
 
         //Create the material
         Material m = new Material();
@@ -200,12 +215,12 @@ public class KmfFile {
      *
      * @param rawKmf kmf file starting on mesh
      */
-    private Mesh parseMesh(RandomAccessFile rawKmf) throws IOException {
-        rawKmf.skipBytes(4);
+    private Mesh parseMesh(ByteBuffer rawKmf) {
+        ConversionUtils.skipBytes(rawKmf, 4);
 
         //KMSH/MESH/HEAD
         checkHeader(rawKmf, KMF_HEAD);
-        rawKmf.skipBytes(4);
+        ConversionUtils.skipBytes(rawKmf, 4);
 
         //Create the mesh
         Mesh m = new Mesh();
@@ -243,8 +258,8 @@ public class KmfFile {
      *
      * @param rawKmf kmf file starting on mesh
      */
-    private List<MeshControl> parseMeshControls(RandomAccessFile rawKmf) throws IOException {
-        rawKmf.skipBytes(4);
+    private List<MeshControl> parseMeshControls(ByteBuffer rawKmf) {
+        ConversionUtils.skipBytes(rawKmf, 4);
 
         int controlCount = ConversionUtils.readUnsignedInteger(rawKmf);
         List<MeshControl> controls = new ArrayList<>(controlCount);
@@ -266,8 +281,8 @@ public class KmfFile {
      *
      * @param rawKmf kmf file starting on sprite
      */
-    private List<MeshSprite> parseMeshSprites(RandomAccessFile rawKmf, int sprsCount, int lodCount) throws IOException {
-        rawKmf.skipBytes(4);
+    private List<MeshSprite> parseMeshSprites(ByteBuffer rawKmf, int sprsCount, int lodCount) {
+        ConversionUtils.skipBytes(rawKmf, 4);
         List<MeshSprite> sprites = new ArrayList<>(sprsCount);
 
         //Headers
@@ -276,7 +291,7 @@ public class KmfFile {
             //Sprite headers
             //KMSH/MESH/SPRS/SPHD
             checkHeader(rawKmf, KMF_MESH_SPRITES_HEADER);
-            rawKmf.skipBytes(4);
+            ConversionUtils.skipBytes(rawKmf, 4);
 
             //Create new sprite
             MeshSprite sprite = new MeshSprite();
@@ -296,7 +311,7 @@ public class KmfFile {
             //Sprite data
             //KMSH/MESH/SPRS/SPRS
             checkHeader(rawKmf, KMF_MESH_SPRITES_DATA_HEADER);
-            rawKmf.skipBytes(4);
+            ConversionUtils.skipBytes(rawKmf, 4);
 
             MeshSprite sprite = sprites.get(i);
             sprite.setMaterialIndex(ConversionUtils.readUnsignedInteger(rawKmf));
@@ -306,9 +321,9 @@ public class KmfFile {
             for (int j = 0; j < lodCount; j++) {
                 List<Triangle> triangles = new ArrayList<>(sprite.getTriangleCounts().get(j));
                 for (int k = 0; k < sprite.getTriangleCounts().get(j); k++) {
-                    triangles.add(new Triangle(ConversionUtils.toUnsignedByte(rawKmf.readByte()),
-                            ConversionUtils.toUnsignedByte(rawKmf.readByte()),
-                            ConversionUtils.toUnsignedByte(rawKmf.readByte())));
+                    triangles.add(new Triangle(ConversionUtils.toUnsignedByte(rawKmf.get()),
+                            ConversionUtils.toUnsignedByte(rawKmf.get()),
+                            ConversionUtils.toUnsignedByte(rawKmf.get())));
                 }
                 trianglesPerLod.put(j, triangles);
             }
@@ -338,8 +353,8 @@ public class KmfFile {
      *
      * @param rawKmf kmf file starting on geom
      */
-    private List<Vector3f> parseMeshGeoms(RandomAccessFile rawKmf, int geomCount) throws IOException {
-        rawKmf.skipBytes(4);
+    private List<Vector3f> parseMeshGeoms(ByteBuffer rawKmf, int geomCount) {
+        ConversionUtils.skipBytes(rawKmf, 4);
         List<Vector3f> geometries = new ArrayList<>(geomCount);
 
         //Geometries
@@ -358,12 +373,12 @@ public class KmfFile {
      *
      * @param rawKmf kmf file starting on ANIM
      */
-    private Anim parseAnim(RandomAccessFile rawKmf) throws IOException {
-        rawKmf.skipBytes(4);
+    private Anim parseAnim(ByteBuffer rawKmf) {
+        ConversionUtils.skipBytes(rawKmf, 4);
 
         //KMSH/ANIM/HEAD
         checkHeader(rawKmf, KMF_HEAD);
-        rawKmf.skipBytes(4);
+        ConversionUtils.skipBytes(rawKmf, 4);
 
         //Create the anim
         Anim a = new Anim();
@@ -397,7 +412,7 @@ public class KmfFile {
         //KMSH/ANIM/SPRS/ITAB
         //indexCount sized chunks for each 128 frame block
         checkHeader(rawKmf, KMF_ANIM_SPRITES_ITAB_HEADER);
-        rawKmf.skipBytes(4);
+        ConversionUtils.skipBytes(rawKmf, 4);
         int chunks = (int) Math.floor((frameCount - 1) / 128.0 + 1);
         int[][] itab = new int[chunks][indexCount];
         for (int chunk = 0; chunk < chunks; chunk++) {
@@ -410,7 +425,7 @@ public class KmfFile {
         //Sprite geometries
         //KMSH/ANIM/SPRS/GEOM
         checkHeader(rawKmf, KMF_MESH_GEOM);
-        rawKmf.skipBytes(4);
+        ConversionUtils.skipBytes(rawKmf, 4);
         List<AnimGeom> geometries = new ArrayList<>(geomCount + 1);
         AnimGeom geom = null;
         for (int i = 0; i < geomCount; i++) {
@@ -429,7 +444,7 @@ public class KmfFile {
             v.scale(a.getScale()); // Scale
             geom.setGeometry(v);
 
-            geom.setFrameBase(ConversionUtils.toUnsignedByte(rawKmf.readByte()));
+            geom.setFrameBase(ConversionUtils.toUnsignedByte(rawKmf.get()));
             geometries.add(geom);
         }
 
@@ -441,11 +456,11 @@ public class KmfFile {
         //Sprite offsets
         //KMSH/ANIM/SPRS/VGEO
         checkHeader(rawKmf, KMF_ANIM_SPRITES_VGEO_HEADER);
-        rawKmf.skipBytes(4);
+        ConversionUtils.skipBytes(rawKmf, 4);
         short[][] offsets = new short[indexCount][frameCount];
         for (int i = 0; i < indexCount; i++) {
             for (int frame = 0; frame < frameCount; frame++) {
-                offsets[i][frame] = ConversionUtils.toUnsignedByte(rawKmf.readByte());
+                offsets[i][frame] = ConversionUtils.toUnsignedByte(rawKmf.get());
             }
         }
         a.setOffsets(offsets);
@@ -459,8 +474,8 @@ public class KmfFile {
      *
      * @param rawKmf kmf file starting on mesh
      */
-    private List<AnimControl> parseAnimControls(RandomAccessFile rawKmf) throws IOException {
-        rawKmf.skipBytes(4);
+    private List<AnimControl> parseAnimControls(ByteBuffer rawKmf) {
+        ConversionUtils.skipBytes(rawKmf, 4);
 
         int controlCount = ConversionUtils.readUnsignedInteger(rawKmf);
         List<AnimControl> controls = new ArrayList<>(controlCount);
@@ -483,8 +498,8 @@ public class KmfFile {
      *
      * @param rawKmf kmf file starting on sprite
      */
-    private List<AnimSprite> parseAnimSprites(RandomAccessFile rawKmf, int sprsCount, int lodCount) throws IOException {
-        rawKmf.skipBytes(4);
+    private List<AnimSprite> parseAnimSprites(ByteBuffer rawKmf, int sprsCount, int lodCount) {
+        ConversionUtils.skipBytes(rawKmf, 4);
         List<AnimSprite> sprites = new ArrayList<>(sprsCount);
 
         //Headers
@@ -493,7 +508,7 @@ public class KmfFile {
             //Sprite headers
             //KMSH/ANIM/SPRS/SPHD
             checkHeader(rawKmf, KMF_MESH_SPRITES_HEADER);
-            rawKmf.skipBytes(4);
+            ConversionUtils.skipBytes(rawKmf, 4);
 
             //Create new sprite
             AnimSprite sprite = new AnimSprite();
@@ -513,7 +528,7 @@ public class KmfFile {
             //Sprite data
             //KMSH/ANIM/SPRS/SPRS
             checkHeader(rawKmf, KMF_MESH_SPRITES_DATA_HEADER);
-            rawKmf.skipBytes(4);
+            ConversionUtils.skipBytes(rawKmf, 4);
 
             AnimSprite sprite = sprites.get(i);
             sprite.setMaterialIndex(ConversionUtils.readUnsignedInteger(rawKmf));
@@ -521,12 +536,12 @@ public class KmfFile {
             //The triangles, for each lod level
             //KMSH/ANIM/SPRS/SPRS/POLY
             checkHeader(rawKmf, KMF_ANIM_SPRITES_POLY_HEADER);
-            rawKmf.skipBytes(4);
+            ConversionUtils.skipBytes(rawKmf, 4);
             HashMap<Integer, List<Triangle>> trianglesPerLod = new HashMap<>(lodCount);
             for (int j = 0; j < lodCount; j++) {
                 List<Triangle> triangles = new ArrayList<>(sprite.getTriangleCounts().get(j));
                 for (int k = 0; k < sprite.getTriangleCounts().get(j); k++) {
-                    triangles.add(new Triangle(ConversionUtils.toUnsignedByte(rawKmf.readByte()), ConversionUtils.toUnsignedByte(rawKmf.readByte()), ConversionUtils.toUnsignedByte(rawKmf.readByte())));
+                    triangles.add(new Triangle(ConversionUtils.toUnsignedByte(rawKmf.get()), ConversionUtils.toUnsignedByte(rawKmf.get()), ConversionUtils.toUnsignedByte(rawKmf.get())));
                 }
                 trianglesPerLod.put(j, triangles);
             }
@@ -535,7 +550,7 @@ public class KmfFile {
             //Anim vertices
             //KMSH/ANIM/SPRS/SPRS/VERT
             checkHeader(rawKmf, KMF_ANIM_SPRITES_VERT_HEADER);
-            rawKmf.skipBytes(4);
+            ConversionUtils.skipBytes(rawKmf, 4);
             List<AnimVertex> vertices = new ArrayList<>(sprite.getVerticeCount());
             for (int j = 0; j < sprite.getVerticeCount(); j++) {
                 AnimVertex animVertex = new AnimVertex();
@@ -559,12 +574,12 @@ public class KmfFile {
      *
      * @param rawKmf kmf file starting on grop
      */
-    private List<Grop> parseGrop(RandomAccessFile rawKmf) throws IOException {
-        rawKmf.skipBytes(4);
+    private List<Grop> parseGrop(ByteBuffer rawKmf) {
+        ConversionUtils.skipBytes(rawKmf, 4);
 
         //KMSH/GROP/HEAD
         checkHeader(rawKmf, KMF_HEAD);
-        rawKmf.skipBytes(4);
+        ConversionUtils.skipBytes(rawKmf, 4);
         int elementCount = ConversionUtils.readUnsignedInteger(rawKmf);
 
         //Read the elements
@@ -573,7 +588,7 @@ public class KmfFile {
 
             //KMSH/GROP/ELEM
             checkHeader(rawKmf, KMF_GROP_ELEM);
-            rawKmf.skipBytes(4);
+            ConversionUtils.skipBytes(rawKmf, 4);
 
             //Read it
             Grop grop = new Grop();
@@ -595,9 +610,9 @@ public class KmfFile {
      * @throws RuntimeException if the extracted header doesn't mach the
      * expected header
      */
-    private void checkHeader(RandomAccessFile rawKmf, String expectedHeader) throws RuntimeException, IOException {
+    private void checkHeader(ByteBuffer rawKmf, String expectedHeader) throws RuntimeException {
         byte[] buf = new byte[4];
-        rawKmf.read(buf);
+        rawKmf.get(buf);
         String extractedHeader = ConversionUtils.toString(buf);
         if (!expectedHeader.equals(extractedHeader)) {
             throw new RuntimeException("Header should be " + expectedHeader + " and it was " + extractedHeader + "! Cancelling!");
@@ -24,13 +24,17 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import toniarts.openkeeper.tools.convert.BufferedRandomAccessFile;
 import toniarts.openkeeper.tools.convert.ConversionUtils;
 import toniarts.openkeeper.tools.convert.map.ArtResource.ArtResourceType;
 import toniarts.openkeeper.tools.convert.map.Creature.AnimationType;
@@ -79,6 +83,23 @@ public final class KwdFile {
     private final static short ROOM_PORTAL_ID = 3;
     private final static short TRIGGER_GENERIC = 213;
     private final static short TRIGGER_ACTION = 214;
+    private final static int MAX_CACHED_CATALOGS = 32;
+    private final static Set<MapDataTypeEnum> CATALOG_TYPES = Collections.unmodifiableSet(EnumSet.of(MapDataTypeEnum.TERRAIN,
+            MapDataTypeEnum.ROOMS, MapDataTypeEnum.TRAPS, MapDataTypeEnum.DOORS, MapDataTypeEnum.KEEPER_SPELLS,
+            MapDataTypeEnum.CREATURE_SPELLS, MapDataTypeEnum.CREATURES, MapDataTypeEnum.OBJECTS,
+            MapDataTypeEnum.EFFECT_ELEMENTS, MapDataTypeEnum.SHOTS, MapDataTypeEnum.EFFECTS));
+
+    /**
+     * The parsed catalogs, shared between all the maps. Only ever read from,
+     * overriding a catalog makes a copy of it
+     */
+    private final static Map<CatalogKey, KwdFile> CATALOGS = new LinkedHashMap<CatalogKey, KwdFile>(MAX_CACHED_CATALOGS, 0.75f, true) {
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<CatalogKey, KwdFile> eldest) {
+            return size() > MAX_CACHED_CATALOGS;
+        }
+    };
 
     private GameLevel gameLevel;
     private GameMap map;
@@ -108,6 +129,7 @@ public final class KwdFile {
     //
     private boolean customOverrides = false;
     private boolean loaded = false;
+    private boolean mapLoaded = false;
     private Creature imp;
     private final String basePath;
     private GameObject levelGem;
@@ -151,7 +173,7 @@ public final class KwdFile {
         } else {
 
             // We need map width & height if not loaded fully, I couldn't figure out where, except the map data
-            try (RandomAccessFile data = new RandomAccessFile(ConversionUtils.getRealFileName(basePath, gameLevel.getFile(MAP)), "r")) {
+            try (RandomAccessFile data = new BufferedRandomAccessFile(ConversionUtils.getRealFileName(basePath, gameLevel.getFile(MAP)))) {
                 KwdHeader header = readKwdHeader(data);
                 map = new GameMap(header.getWidth(), header.getHeight());
             } catch (Exception e) {
@@ -162,8 +184,17 @@ public final class KwdFile {
         }
     }
 
+    /**
+     * Constructs an empty KWD file, for reading the catalogs
+     *
+     * @param basePath path to DK II main path (or where ever is the "root")
+     */
+    private KwdFile(String basePath) {
+        this.basePath = basePath;
+    }
+
     private void readFileContents(File file) throws IOException {
-        try (RandomAccessFile data = new RandomAccessFile(file, "r")) {
+        try (RandomAccessFile data = new BufferedRandomAccessFile(file)) {
             while (data.getFilePointer() < data.length()) {
 
                 // Read header (and put the file pointer to the data start)
@@ -182,21 +213,24 @@ public final class KwdFile {
      *
      * @throws RuntimeException level file fails to parse
      */
-    public void load() throws RuntimeException {
+    public synchronized void load() throws RuntimeException {
         if (!loaded) {
 
             // Read the map data first (we store some data to the map)
-            for (FilePath path : gameLevel.getPaths()) {
-                if (path.getId() == MapDataTypeEnum.MAP) {
-                    readFilePath(path);
-                    break;
+            if (!mapLoaded) {
+                for (FilePath path : gameLevel.getPaths()) {
+                    if (path.getId() == MapDataTypeEnum.MAP) {
+                        readFilePath(path);
+                        break;
+                    }
                 }
             }
 
             // Now we have the paths, read all of those in order
             for (FilePath path : gameLevel.getPaths()) {
 
-                if (path.getId() == MapDataTypeEnum.MAP) {
+                if (path.getId() == MapDataTypeEnum.MAP
+                        || (mapLoaded && path.getId() == MapDataTypeEnum.TERRAIN)) {
                     continue;
                 }
 
@@ -207,16 +241,149 @@ public final class KwdFile {
         }
     }
 
+    /**
+     * Loads only the map tiles and the terrain catalog, this is all that is
+     * needed for drawing the map thumbnail. The rest is read by
+     * {@link #load()} if the map is actually played.
+     *
+     * @throws RuntimeException level file fails to parse
+     */
+    public synchronized void loadMapAndTerrain() throws RuntimeException {
+        if (!loaded && !mapLoaded) {
+            for (FilePath path : gameLevel.getPaths()) {
+                if (path.getId() == MapDataTypeEnum.MAP) {
+                    readFilePath(path);
+                    break;
+                }
+            }
+            for (FilePath path : gameLevel.getPaths()) {
+                if (path.getId() == MapDataTypeEnum.TERRAIN) {
+                    readFilePath(path);
+                }
+            }
+            mapLoaded = true;
+        }
+    }
+
     private void readFilePath(FilePath path) {
         File file = null;
         try {
             file = new File(ConversionUtils.getRealFileName(basePath, path.getPath()));
-            readFileContents(file);
+            if (CATALOG_TYPES.contains(path.getId())) {
+                readCatalog(file);
+            } else {
+                readFileContents(file);
+            }
         } catch (Exception e) {
             throw new RuntimeException("Failed to read the file " + file + "!", e);
         }
     }
 
+    /**
+     * Reads a catalog file, the catalogs are parsed only once and shared
+     * between the maps
+     *
+     * @param file the catalog file
+     * @throws IOException may fail reading
+     */
+    private void readCatalog(File file) throws IOException {
+        KwdFile catalog = getCatalog(basePath, file);
+
+        terrainTiles = mergeCatalog(terrainTiles, catalog.terrainTiles);
+        doors = mergeCatalog(doors, catalog.doors);
+        traps = mergeCatalog(traps, catalog.traps);
+        rooms = mergeCatalog(rooms, catalog.rooms);
+        roomsByTerrainId = mergeCatalog(roomsByTerrainId, catalog.roomsByTerrainId);
+        creatures = mergeCatalog(creatures, catalog.creatures);
+        objects = mergeCatalog(objects, catalog.objects);
+        creatureSpells = mergeCatalog(creatureSpells, catalog.creatureSpells);
+        effectElements = mergeCatalog(effectElements, catalog.effectElements);
+        effects = mergeCatalog(effects, catalog.effects);
+        keeperSpells = mergeCatalog(keeperSpells, catalog.keeperSpells);
+        shots = mergeCatalog(shots, catalog.shots);
+        if (imp == null) {
+            imp = catalog.imp;
+        }
+        if (levelGem == null) {
+            levelGem = catalog.levelGem;
+        }
+
+        // The shared catalog has no map, so see that we have water & lava set
+        if (map != null && catalog.terrainTiles != null) {
+            setWaterAndLava(catalog.terrainTiles.values());
+        }
+    }
+
+    /**
+     * Sets the map water & lava if not set already, the terrain with the
+     * smallest ID is used like when reading the terrain in order
+     *
+     * @param terrains the terrain catalog entries
+     */
+    private void setWaterAndLava(Collection<Terrain> terrains) {
+        Terrain water = null;
+        Terrain lava = null;
+        for (Terrain terrain : terrains) {
+            if (terrain.getFlags().contains(Terrain.TerrainFlag.WATER)
+                    && (water == null || terrain.getTerrainId() < water.getTerrainId())) {
+                water = terrain;
+            }
+            if (terrain.getFlags().contains(Terrain.TerrainFlag.LAVA)
+                    && (lava == null || terrain.getTerrainId() < lava.getTerrainId())) {
+                lava = terrain;
+            }
+        }
+        if (map.getWater() == null && water != null) {
+            map.setWater(water);
+        }
+        if (map.getLava() == null && lava != null) {
+            map.setLava(lava);
+        }
+    }
+
+    private static synchronized KwdFile getCatalog(String basePath, File file) throws IOException {
+        CatalogKey key = new CatalogKey(file);
+        KwdFile catalog = CATALOGS.get(key);
+        if (catalog == null) {
+            catalog = new KwdFile(basePath);
+            catalog.readFileContents(file);
+            catalog.terrainTiles = toSharedCatalog(catalog.terrainTiles);
+            catalog.doors = toSharedCatalog(catalog.doors);
+            catalog.traps = toSharedCatalog(catalog.traps);
+            catalog.rooms = toSharedCatalog(catalog.rooms);
+            catalog.roomsByTerrainId = toSharedCatalog(catalog.roomsByTerrainId);
+            catalog.creatures = toSharedCatalog(catalog.creatures);
+            catalog.objects = toSharedCatalog(catalog.objects);
+            catalog.creatureSpells = toSharedCatalog(catalog.creatureSpells);
+            catalog.effectElements = toSharedCatalog(catalog.effectElements);
+            catalog.effects = toSharedCatalog(catalog.effects);
+            catalog.keeperSpells = toSharedCatalog(catalog.keeperSpells);
+            catalog.shots = toSharedCatalog(catalog.shots);
+            CATALOGS.put(key, catalog);
+        }
+        return catalog;
+    }
+
+    private static <K, V> Map<K, V> toSharedCatalog(Map<K, V> catalog) {
+        return (catalog != null ? Collections.unmodifiableMap(catalog) : null);
+    }
+
+    /**
+     * Merges a shared catalog to the current one, the later catalog overrides
+     * the entries of the earlier one
+     */
+    private static <K, V> Map<K, V> mergeCatalog(Map<K, V> catalog, Map<K, V> sharedCatalog) {
+        if (sharedCatalog == null) {
+            return catalog;
+        }
+        if (catalog == null) {
+            return sharedCatalog;
+        }
+        Map<K, V> result = new HashMap<>(catalog);
+        result.putAll(sharedCatalog);
+        return result;
+    }
+
     /**
      * Reads the common KWD header
      *
@@ -551,6 +718,7 @@ public final class KwdFile {
             terrainTiles = new HashMap<>(header.getItemCount());
         } else {
             logger.warning("Overrides terrain!");
+            terrainTiles = new HashMap<>(terrainTiles);
         }
 
         for (int i = 0; i < header.getItemCount(); i++) {
@@ -613,11 +781,11 @@ public final class KwdFile {
             // Add to the hash by the terrain ID
             terrainTiles.put(terrain.getTerrainId(), terrain);
 
-            // See that we have water & lava set
-            if (map.getWater() == null && terrain.getFlags().contains(Terrain.TerrainFlag.WATER)) {
+            // See that we have water & lava set, the shared catalogs have no map
+            if (map != null && map.getWater() == null && terrain.getFlags().contains(Terrain.TerrainFlag.WATER)) {
                 map.setWater(terrain);
             }
-            if (map.getLava() == null && terrain.getFlags().contains(Terrain.TerrainFlag.LAVA)) {
+            if (map != null && map.getLava() == null && terrain.getFlags().contains(Terrain.TerrainFlag.LAVA)) {
                 map.setLava(terrain);
             }
 
@@ -751,6 +919,7 @@ public final class KwdFile {
             doors = new HashMap<>(header.getItemCount());
         } else {
             logger.warning("Overrides doors!");
+            doors = new HashMap<>(doors);
         }
 
         for (int i = 0; i < header.getItemCount(); i++) {
@@ -817,6 +986,7 @@ public final class KwdFile {
             traps = new HashMap<>(header.getItemCount());
         } else {
             logger.warning("Overrides traps!");
+            traps = new HashMap<>(traps);
         }
 
         for (int i = 0; i < header.getItemCount(); i++) {
@@ -896,6 +1066,8 @@ public final class KwdFile {
             roomsByTerrainId = new HashMap<>(header.getItemCount());
         } else {
             logger.warning("Overrides rooms!");
+            rooms = new HashMap<>(rooms);
+            roomsByTerrainId = new HashMap<>(roomsByTerrainId);
         }
 
         for (int i = 0; i < header.getItemCount(); i++) {
@@ -1138,6 +1310,7 @@ public final class KwdFile {
             creatures = new HashMap<>(header.getItemCount());
         } else {
             logger.warning("Overrides creatures!");
+            creatures = new HashMap<>(creatures);
         }
 
         for (int i = 0; i < header.getItemCount(); i++) {
@@ -1515,6 +1688,7 @@ public final class KwdFile {
             objects = new HashMap<>(header.getItemCount());
         } else {
             logger.warning("Overrides objects!");
+            objects = new HashMap<>(objects);
         }
 
         for (int i = 0; i < header.getItemCount(); i++) {
@@ -1592,6 +1766,7 @@ public final class KwdFile {
             creatureSpells = new HashMap<>(header.getItemCount());
         } else {
             logger.warning("Overrides creature spells!");
+            creatureSpells = new HashMap<>(creatureSpells);
         }
 
         for (int i = 0; i < header.getItemCount(); i++) {
@@ -1649,6 +1824,7 @@ public final class KwdFile {
             effectElements = new HashMap<>(header.getItemCount());
         } else {
             logger.warning("Overrides effect elements!");
+            effectElements = new HashMap<>(effectElements);
         }
 
         for (int i = 0; i < header.getItemCount(); i++) {
@@ -1705,6 +1881,7 @@ public final class KwdFile {
             effects = new HashMap<>(header.getItemCount());
         } else {
             logger.warning("Overrides effects!");
+            effects = new HashMap<>(effects);
         }
 
         for (int i = 0; i < header.getItemCount(); i++) {
@@ -1783,6 +1960,7 @@ public final class KwdFile {
             keeperSpells = new HashMap<>(header.getItemCount());
         } else {
             logger.warning("Overrides keeper spells!");
+            keeperSpells = new HashMap<>(keeperSpells);
         }
 
         for (int i = 0; i < header.getItemCount(); i++) {
@@ -2138,6 +2316,7 @@ public final class KwdFile {
             shots = new HashMap<>(header.getItemCount());
         } else {
             logger.warning("Overrides shots!");
+            shots = new HashMap<>(shots);
         }
 
         for (int i = 0; i < header.getItemCount(); i++) {
@@ -3165,6 +3344,53 @@ public final class KwdFile {
         }
     }
 
+    /**
+     * Identifies a catalog file, a modified file is read again
+     */
+    private static final class CatalogKey {
+
+        private final String path;
+        private final long lastModified;
+        private final long length;
+
+        public CatalogKey(File file) throws IOException {
+            this.path = file.getCanonicalPath();
+            this.lastModified = file.lastModified();
+            this.length = file.length();
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = 7;
+            hash = 53 * hash + Objects.hashCode(this.path);
+            hash = 53 * hash + (int) (this.lastModified ^ (this.lastModified >>> 32));
+            hash = 53 * hash + (int) (this.length ^ (this.length >>> 32));
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (obj == null) {
+                return false;
+            }
+            if (getClass() != obj.getClass()) {
+                return false;
+            }
+            final CatalogKey other = (CatalogKey) obj;
+            if (this.lastModified != other.lastModified) {
+                return false;
+            }
+            if (this.length != other.length) {
+                return false;
+            }
+            return Objects.equals(this.path, other.path);
+        }
+
+    }
+
     /**
      * Kwd header, few different kinds, handles all
      */
@@ -19,6 +19,7 @@ package toniarts.openkeeper.tools.convert.sound;
 import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import toniarts.openkeeper.tools.convert.BufferedRandomAccessFile;
 import toniarts.openkeeper.tools.convert.ConversionUtils;
 
 /**
@@ -53,7 +54,7 @@ public class BankMapFile {
         this.file = file;
 
         //Read the file
-        try (RandomAccessFile rawMap = new RandomAccessFile(file, "r")) {
+        try (RandomAccessFile rawMap = new BufferedRandomAccessFile(file)) {
             //Header
             int[] check = new int[] {
                 ConversionUtils.readInteger(rawMap),
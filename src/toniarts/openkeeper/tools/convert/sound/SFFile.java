@@ -19,6 +19,7 @@ package toniarts.openkeeper.tools.convert.sound;
 import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import toniarts.openkeeper.tools.convert.BufferedRandomAccessFile;
 
 /**
  *
@@ -29,7 +30,7 @@ public class SFFile {
 
     public SFFile(File file) {
         //Read the file
-        try (RandomAccessFile f = new RandomAccessFile(file, "r")) {
+        try (RandomAccessFile f = new BufferedRandomAccessFile(file)) {
             chunk = new SFChunk(f);
         } catch (IOException e) {
             //Fug
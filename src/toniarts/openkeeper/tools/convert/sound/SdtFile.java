@@ -24,6 +24,7 @@ import java.io.OutputStream;
 import java.io.RandomAccessFile;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import toniarts.openkeeper.tools.convert.BufferedRandomAccessFile;
 import toniarts.openkeeper.tools.convert.ConversionUtils;
 import toniarts.openkeeper.tools.convert.sound.SdtFileEntry.SoundType;
 import toniarts.openkeeper.utils.PathUtils;
@@ -56,7 +57,7 @@ public class SdtFile {
         this.file = file;
 
         //Read the file
-        try (RandomAccessFile rawSdt = new RandomAccessFile(file, "r")) {
+        try (RandomAccessFile rawSdt = new BufferedRandomAccessFile(file)) {
 
             //Header
             count = ConversionUtils.readUnsignedInteger(rawSdt);
@@ -108,7 +109,7 @@ public class SdtFile {
     public void extractFileData(String destination) {
 
         //Open the SDT for extraction
-        try (RandomAccessFile rawSdt = new RandomAccessFile(file, "r")) {
+        try (RandomAccessFile rawSdt = new BufferedRandomAccessFile(file)) {
             for (SdtFileEntry entry : entries) {
                 extractFileData(entry, destination, rawSdt);
             }
@@ -20,6 +20,7 @@ import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.util.Arrays;
+import toniarts.openkeeper.tools.convert.BufferedRandomAccessFile;
 import toniarts.openkeeper.tools.convert.ConversionUtils;
 
 /**
@@ -45,7 +46,7 @@ public class SfxMapFile {
         this.file = file;
 
         //Read the file
-        try (RandomAccessFile rawMap = new RandomAccessFile(file, "r")) {
+        try (RandomAccessFile rawMap = new BufferedRandomAccessFile(file)) {
             //Header
             int[] check = new int[] {
                 ConversionUtils.readInteger(rawMap),
@@ -26,6 +26,7 @@ import java.io.RandomAccessFile;
 import java.util.Random;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import toniarts.openkeeper.tools.convert.BufferedRandomAccessFile;
 import toniarts.openkeeper.tools.convert.ConversionUtils;
 
 /**
@@ -49,7 +50,7 @@ public class SprFile {
     public SprFile(File file) {
         this.sprFile = file;
 
-        try (RandomAccessFile data = new RandomAccessFile(sprFile, "r")) {
+        try (RandomAccessFile data = new BufferedRandomAccessFile(sprFile)) {
 
             header = new SprHeader();
             header.magic = ConversionUtils.readString(data, 4);
@@ -22,6 +22,7 @@ import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.CharBuffer;
+import toniarts.openkeeper.tools.convert.BufferedRandomAccessFile;
 import toniarts.openkeeper.tools.convert.ConversionUtils;
 
 /**
@@ -49,7 +50,7 @@ public class MbToUniFile {
     private final int count;
 
     public MbToUniFile(File file) {
-        try (RandomAccessFile rawCodepage = new RandomAccessFile(file, "r")) {
+        try (RandomAccessFile rawCodepage = new BufferedRandomAccessFile(file)) {
 
             // Check the header
             byte[] header = new byte[4];
@@ -29,6 +29,7 @@ import java.util.Map.Entry;
 import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import toniarts.openkeeper.tools.convert.BufferedRandomAccessFile;
 import toniarts.openkeeper.tools.convert.ConversionUtils;
 
 /**
@@ -75,7 +76,7 @@ public class StrFile {
         this.codePage = codePage;
 
         // Read the file
-        try (RandomAccessFile rawStr = new RandomAccessFile(file, "r")) {
+        try (RandomAccessFile rawStr = new BufferedRandomAccessFile(file)) {
 
             // Check the header
             byte[] header = new byte[4];
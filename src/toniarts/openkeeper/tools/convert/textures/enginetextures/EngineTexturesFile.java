@@ -31,6 +31,7 @@ import java.util.Iterator;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.imageio.ImageIO;
+import toniarts.openkeeper.tools.convert.BufferedRandomAccessFile;
 import toniarts.openkeeper.tools.convert.ConversionUtils;
 import toniarts.openkeeper.utils.PathUtils;
 
@@ -56,7 +57,7 @@ public class EngineTexturesFile implements Iterable<String> {
 
         //Read the names from the DIR file in the same folder
         File dirFile = new File(file.toString().substring(0, file.toString().length() - 3).concat("dir"));
-        try (RandomAccessFile rawDir = new RandomAccessFile(dirFile, "r")) {
+        try (RandomAccessFile rawDir = new BufferedRandomAccessFile(dirFile)) {
 
             // File format:
             // HEADER:
@@ -73,7 +74,7 @@ public class EngineTexturesFile implements Iterable<String> {
             int numberOfEntries = ConversionUtils.readUnsignedInteger(rawDir);
             engineTextureEntries = new HashMap<>(numberOfEntries);
 
-            try (RandomAccessFile rawTextures = new RandomAccessFile(file, "r")) {
+            try (RandomAccessFile rawTextures = new BufferedRandomAccessFile(file)) {
                 do {
                     String name = ConversionUtils.convertFileSeparators(ConversionUtils.readVaryingLengthStrings(rawDir, 1).get(0));
                     int offset = ConversionUtils.readUnsignedInteger(rawDir);
@@ -123,7 +124,7 @@ public class EngineTexturesFile implements Iterable<String> {
     public void extractFileData(String destination) {
 
         //Open the Texture file for extraction
-        try (RandomAccessFile rawTextures = new RandomAccessFile(file, "r")) {
+        try (RandomAccessFile rawTextures = new BufferedRandomAccessFile(file)) {
 
             for (String textureEntry : engineTextureEntries.keySet()) {
                 extractFileData(textureEntry, destination, rawTextures, true);
@@ -146,7 +147,7 @@ public class EngineTexturesFile implements Iterable<String> {
     public File extractFileData(String textureEntry, String destination, boolean overwrite) {
 
         //Open the Texture file for extraction
-        try (RandomAccessFile rawTextures = new RandomAccessFile(file, "r")) {
+        try (RandomAccessFile rawTextures = new BufferedRandomAccessFile(file)) {
             return extractFileData(textureEntry, destination, rawTextures, overwrite);
         } catch (IOException e) {
 
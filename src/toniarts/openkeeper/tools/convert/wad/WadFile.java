@@ -22,11 +22,15 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import toniarts.openkeeper.tools.convert.BufferedRandomAccessFile;
 import toniarts.openkeeper.tools.convert.ConversionUtils;
 import toniarts.openkeeper.utils.PathUtils;
 
@@ -44,6 +48,7 @@ public class WadFile {
 
     private final File file;
     private final Map<String, WadFileEntry> wadFileEntries;
+    private volatile ByteBuffer mappedWad;
     private static final String WAD_HEADER_IDENTIFIER = "DWFB";
     private static final int WAD_HEADER_VERSION = 2;
 
@@ -57,7 +62,7 @@ public class WadFile {
         this.file = file;
 
         // Read the file
-        try (RandomAccessFile rawWad = new RandomAccessFile(file, "r")) {
+        try (RandomAccessFile rawWad = new BufferedRandomAccessFile(file)) {
 
             // Check the header
             byte[] header = new byte[4];
@@ -168,7 +173,7 @@ public class WadFile {
     public void extractFileData(String destination) {
 
         // Open the WAD for extraction
-        try (RandomAccessFile rawWad = new RandomAccessFile(file, "r")) {
+        try (RandomAccessFile rawWad = new BufferedRandomAccessFile(file)) {
 
             for (String fileName : wadFileEntries.keySet()) {
                 extractFileData(fileName, destination, rawWad);
@@ -220,7 +225,7 @@ public class WadFile {
     public File extractFileData(String fileName, String destination) {
 
         // Open the WAD for extraction
-        try (RandomAccessFile rawWad = new RandomAccessFile(file, "r")) {
+        try (RandomAccessFile rawWad = new BufferedRandomAccessFile(file)) {
             return extractFileData(fileName, destination, rawWad);
         } catch (Exception e) {
 
@@ -237,7 +242,20 @@ public class WadFile {
      * @return the file data
      */
     private ByteArrayOutputStream getFileData(String fileName, RandomAccessFile rawWad) {
-        ByteArrayOutputStream result = null;
+        byte[] bytes = readFileData(fileName, rawWad);
+        ByteArrayOutputStream result = new ByteArrayOutputStream(bytes.length);
+        result.write(bytes, 0, bytes.length);
+        return result;
+    }
+
+    /**
+     * Read a single file, decompressed if needed
+     *
+     * @param fileName the file to read
+     * @param rawWad the opened WAD file
+     * @return the file data
+     */
+    private byte[] readFileData(String fileName, RandomAccessFile rawWad) {
 
         // Get the file
         WadFileEntry fileEntry = wadFileEntries.get(fileName);
@@ -250,24 +268,18 @@ public class WadFile {
             // Seek to the file we want and read it
             rawWad.seek(fileEntry.getOffset());
             byte[] bytes = new byte[fileEntry.getCompressedSize()];
-            rawWad.read(bytes);
-
-            result = new ByteArrayOutputStream();
+            rawWad.readFully(bytes);
 
             // See if the file is compressed
             if (fileEntry.isCompressed()) {
-                result.write(decompressFileData(bytes, fileName));
-            } else {
-                result.write(bytes);
+                return decompressFileData(bytes, fileName);
             }
-
+            return bytes;
         } catch (Exception e) {
 
             // Fug
             throw new RuntimeException("Failed to read the WAD file!", e);
         }
-
-        return result;
     }
 
     /**
@@ -279,7 +291,7 @@ public class WadFile {
     public ByteArrayOutputStream getFileData(String fileName) {
 
         // Open the WAD for extraction
-        try (RandomAccessFile rawWad = new RandomAccessFile(file, "r")) {
+        try (RandomAccessFile rawWad = new BufferedRandomAccessFile(file)) {
             return getFileData(fileName, rawWad);
         } catch (Exception e) {
 
@@ -288,6 +300,61 @@ public class WadFile {
         }
     }
 
+    /**
+     * Get a single file as a read only buffer, without extracting it to the
+     * disk. Uncompressed files are not copied, the buffer is a view to the
+     * memory mapped WAD.
+     *
+     * @param fileName the file to get
+     * @return the file data, in LITTLE ENDIAN byte order
+     */
+    public ByteBuffer getFileBuffer(String fileName) {
+
+        // Get the file
+        WadFileEntry fileEntry = wadFileEntries.get(fileName);
+        if (fileEntry == null) {
+            throw new RuntimeException("File " + fileName + " not found from the WAD archive!");
+        }
+
+        // Uncompressed files are just views to the mapped WAD, only the compressed ones are copied
+        ByteBuffer data = getMappedWad().duplicate();
+        data.limit(fileEntry.getOffset() + fileEntry.getCompressedSize());
+        data.position(fileEntry.getOffset());
+        if (fileEntry.isCompressed()) {
+            byte[] bytes = new byte[fileEntry.getCompressedSize()];
+            data.get(bytes);
+            return ByteBuffer.wrap(decompressFileData(bytes, fileName)).asReadOnlyBuffer().order(ByteOrder.LITTLE_ENDIAN);
+        }
+        return data.slice().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Maps the WAD file to the memory, once per WAD. The mapping stays valid
+     * after the channel is closed.
+     *
+     * @return read only buffer of the whole WAD file
+     */
+    private ByteBuffer getMappedWad() {
+        ByteBuffer result = mappedWad;
+        if (result == null) {
+            synchronized (this) {
+                result = mappedWad;
+                if (result == null) {
+                    try (RandomAccessFile rawWad = new RandomAccessFile(file, "r");
+                            FileChannel channel = rawWad.getChannel()) {
+                        result = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                        mappedWad = result;
+                    } catch (IOException e) {
+
+                        // Fug
+                        throw new RuntimeException("Failed to read the WAD file!", e);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
     /**
      * Some file entries in the WAD are compressed (type 4?), this decompresses
      * the file data
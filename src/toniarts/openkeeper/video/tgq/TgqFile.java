@@ -23,6 +23,7 @@ import java.io.RandomAccessFile;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.imageio.ImageIO;
+import toniarts.openkeeper.tools.convert.BufferedRandomAccessFile;
 import toniarts.openkeeper.tools.convert.ConversionUtils;
 
 /**
@@ -101,7 +102,7 @@ public abstract class TgqFile implements AutoCloseable {
     }
 
     public TgqFile(File file) throws FileNotFoundException {
-        this.file = new RandomAccessFile(file, "r");
+        this.file = new BufferedRandomAccessFile(file);
     }
 
     @Override
@@ -19,7 +19,6 @@ package toniarts.openkeeper.view;
 import com.jme3.app.Application;
 import com.jme3.app.state.AppStateManager;
 import com.jme3.asset.AssetManager;
-import com.jme3.collision.CollisionResults;
 import com.jme3.input.InputManager;
 import com.jme3.input.KeyInput;
 import com.jme3.input.MouseInput;
@@ -33,7 +32,6 @@ import com.jme3.input.event.TouchEvent;
 import com.jme3.math.Ray;
 import com.jme3.math.Vector2f;
 import com.jme3.math.Vector3f;
-import com.jme3.scene.Node;
 import com.jme3.scene.control.AbstractControl;
 import de.lessvoid.nifty.controls.Label;
 import de.lessvoid.nifty.elements.Element;
@@ -105,6 +103,9 @@ public abstract class PlayerInteractionState extends AbstractPauseAwareState {
     private IInteractiveControl interactiveControl;
     private Label tooltip;
     private KeeperHand keeperHand;
+    private ThingPicker thingPicker;
+    private final Ray ray = new Ray();
+    private final Vector3f rayDirection = new Vector3f();
 
     private static final Logger logger = Logger.getLogger(PlayerInteractionState.class.getName());
 
@@ -420,35 +421,22 @@ public abstract class PlayerInteractionState extends AbstractPauseAwareState {
     }
 
     private void updateInteractiveObjectOnCursor() {
-
-        // See if we hit a creature/object
-        CollisionResults results = new CollisionResults();
+        if (thingPicker == null) {
+            thingPicker = new ThingPicker(getWorldHandler().getThingsNode(),
+                    getWorldHandler().getMapData().getWidth(), getWorldHandler().getMapData().getHeight());
+            getWorldHandler().getThingLoader().addListener(thingPicker);
+        }
 
         // Convert screen click to 3D position
-        Vector3f click3d = app.getCamera().getWorldCoordinates(
-                new Vector2f(mousePosition.x, mousePosition.y), 0f);
-        Vector3f dir = app.getCamera().getWorldCoordinates(
-                new Vector2f(mousePosition.x, mousePosition.y), 1f).subtractLocal(click3d);
+        Vector3f click3d = app.getCamera().getWorldCoordinates(mousePosition, 0f, ray.getOrigin());
+        app.getCamera().getWorldCoordinates(mousePosition, 1f, rayDirection).subtractLocal(click3d).normalizeLocal();
 
         // Aim the ray from the mouse spot forwards
-        Ray ray = new Ray(click3d, dir);
-
-        // Collect intersections between ray and all nodes in results list
-        getWorldHandler().getThingsNode().collideWith(ray, results);
+        ray.setDirection(rayDirection);
 
-        // See the results so we see what is going on
-        Node object;
-        for (int i = 0; i < results.size(); i++) {
-
-            // TODO: Now just creature control, but all interaction objects
-            object = results.getCollision(i).getGeometry().getParent().getParent();
-            IInteractiveControl control = object.getControl(IInteractiveControl.class);
-            if (control != null) {
-                setInteractiveControl(control);
-                return;
-            }
-        }
-        setInteractiveControl(null);
+        // See if we hit a creature/object, only the things near the ray are tested
+        thingPicker.update();
+        setInteractiveControl(thingPicker.pick(ray));
     }
 
     private void setInteractiveControl(IInteractiveControl interactiveControl) {
@@ -0,0 +1,268 @@
+/*
+ * Copyright (C) 2014-2018 OpenKeeper
+ *
+ * OpenKeeper is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenKeeper is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenKeeper.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package toniarts.openkeeper.view;
+
+import com.jme3.bounding.BoundingBox;
+import com.jme3.bounding.BoundingSphere;
+import com.jme3.bounding.BoundingVolume;
+import com.jme3.collision.CollisionResults;
+import com.jme3.math.Ray;
+import com.jme3.math.Vector3f;
+import com.jme3.scene.Node;
+import com.jme3.scene.Spatial;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import toniarts.openkeeper.world.MapLoader;
+import toniarts.openkeeper.world.control.IInteractiveControl;
+import toniarts.openkeeper.world.listener.ThingListener;
+
+/**
+ * Picks the interactive things under the cursor. The things are indexed by
+ * the tiles their bounds cover. The index is kept up to date from the thing
+ * events, only the things that were added, removed or moved are looked at
+ * again. A pick only walks the tiles under the ray and
+ * tests the things in them, first against their bounds and only then against
+ * their triangles. The walk stops as soon as nothing further can be closer
+ * than the best hit.
+ *
+ * @author Toni Helenius <helenius.toni@gmail.com>
+ */
+public class ThingPicker implements ThingListener {
+
+    /**
+     * The height band the things can be in, the ray is only walked inside it
+     */
+    private static final float MIN_HEIGHT = -MapLoader.TILE_HEIGHT;
+    private static final float MAX_HEIGHT = MapLoader.TOP_HEIGHT + 2 * MapLoader.TILE_HEIGHT;
+
+    private final Node thingsNode;
+    private final int width;
+    private final int height;
+    private final List<List<Spatial>> tiles;
+    private final Map<Spatial, int[]> footprints = new IdentityHashMap<>();
+    private final Set<Spatial> changed = ConcurrentHashMap.newKeySet();
+    private final Set<Spatial> tested = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final CollisionResults results = new CollisionResults();
+    private final int[] footprint = new int[4];
+    private final float[] range = new float[2];
+
+    public ThingPicker(Node thingsNode, int width, int height) {
+        this.thingsNode = thingsNode;
+        this.width = width;
+        this.height = height;
+        this.tiles = new ArrayList<>(width * height);
+        for (int i = 0; i < width * height; i++) {
+            tiles.add(new ArrayList<>(0));
+        }
+
+        // The things already in the world
+        for (Spatial category : thingsNode.getChildren()) {
+            if (category instanceof Node) {
+                changed.addAll(((Node) category).getChildren());
+            }
+        }
+    }
+
+    @Override
+    public void onAdded(Spatial thing) {
+        changed.add(thing);
+    }
+
+    @Override
+    public void onRemoved(Spatial thing) {
+        changed.add(thing);
+    }
+
+    @Override
+    public void onMoved(Spatial thing) {
+        changed.add(thing);
+    }
+
+    /**
+     * Update the index with the things that have changed since the last
+     * update. A thing is only moved in the index when the tiles it covers
+     * change.
+     */
+    public void update() {
+        if (changed.isEmpty()) {
+            return;
+        }
+        for (Spatial thing : changed) {
+            changed.remove(thing);
+            if (isInWorld(thing)) {
+                update(thing);
+            } else {
+                remove(thing);
+            }
+        }
+    }
+
+    private boolean isInWorld(Spatial thing) {
+        Node category = thing.getParent();
+        return category != null && category.getParent() == thingsNode
+                && thing.getControl(IInteractiveControl.class) != null;
+    }
+
+    private void remove(Spatial thing) {
+        int[] previous = footprints.remove(thing);
+        if (previous != null) {
+            setTiles(thing, previous, false);
+        }
+    }
+
+    private void update(Spatial thing) {
+        getFootprint(thing, footprint);
+        int[] previous = footprints.get(thing);
+        if (previous == null) {
+            previous = footprint.clone();
+            footprints.put(thing, previous);
+            setTiles(thing, previous, true);
+        } else if (previous[0] != footprint[0] || previous[1] != footprint[1]
+                || previous[2] != footprint[2] || previous[3] != footprint[3]) {
+            setTiles(thing, previous, false);
+            System.arraycopy(footprint, 0, previous, 0, footprint.length);
+            setTiles(thing, previous, true);
+        }
+    }
+
+    private void setTiles(Spatial thing, int[] area, boolean add) {
+        for (int y = area[1]; y <= area[3]; y++) {
+            for (int x = area[0]; x <= area[2]; x++) {
+                if (add) {
+                    tiles.get(y * width + x).add(thing);
+                } else {
+                    tiles.get(y * width + x).remove(thing);
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the tiles covered by the thing bounds, clamped to the map
+     */
+    private void getFootprint(Spatial thing, int[] area) {
+        BoundingVolume bound = thing.getWorldBound();
+        Vector3f center = (bound != null ? bound.getCenter() : thing.getWorldTranslation());
+        float extentX = 0;
+        float extentZ = 0;
+        if (bound instanceof BoundingBox) {
+            extentX = ((BoundingBox) bound).getXExtent();
+            extentZ = ((BoundingBox) bound).getZExtent();
+        } else if (bound instanceof BoundingSphere) {
+            extentX = extentZ = ((BoundingSphere) bound).getRadius();
+        }
+        area[0] = clamp(getTile(center.x - extentX), width);
+        area[1] = clamp(getTile(center.z - extentZ), height);
+        area[2] = clamp(getTile(center.x + extentX), width);
+        area[3] = clamp(getTile(center.z + extentZ), height);
+    }
+
+    /**
+     * Pick the closest interactive thing hit by the ray
+     *
+     * @param ray the ray, the direction must be normalized
+     * @return the control of the thing, {@code null} if nothing is hit
+     */
+    public IInteractiveControl pick(Ray ray) {
+        Vector3f origin = ray.getOrigin();
+        Vector3f direction = ray.getDirection();
+
+        // Clip the ray to the map area and the height band
+        range[0] = 0;
+        range[1] = Float.POSITIVE_INFINITY;
+        if (!clip(origin.x, direction.x, -MapLoader.TILE_WIDTH / 2, (width - 0.5f) * MapLoader.TILE_WIDTH, range)
+                || !clip(origin.y, direction.y, MIN_HEIGHT, MAX_HEIGHT, range)
+                || !clip(origin.z, direction.z, -MapLoader.TILE_WIDTH / 2, (height - 0.5f) * MapLoader.TILE_WIDTH, range)) {
+            return null;
+        }
+
+        // Walk the tiles under the ray
+        float start = range[0];
+        int x = clamp(getTile(origin.x + direction.x * start), width);
+        int y = clamp(getTile(origin.z + direction.z * start), height);
+        int stepX = (direction.x > 0 ? 1 : -1);
+        int stepY = (direction.z > 0 ? 1 : -1);
+        float deltaX = (direction.x != 0 ? MapLoader.TILE_WIDTH / Math.abs(direction.x) : Float.POSITIVE_INFINITY);
+        float deltaY = (direction.z != 0 ? MapLoader.TILE_WIDTH / Math.abs(direction.z) : Float.POSITIVE_INFINITY);
+        float nextX = (direction.x != 0 ? ((x + stepX * 0.5f) * MapLoader.TILE_WIDTH - origin.x) / direction.x : Float.POSITIVE_INFINITY);
+        float nextY = (direction.z != 0 ? ((y + stepY * 0.5f) * MapLoader.TILE_WIDTH - origin.z) / direction.z : Float.POSITIVE_INFINITY);
+
+        IInteractiveControl closest = null;
+        float closestDistance = Float.POSITIVE_INFINITY;
+        float entry = start;
+        while (entry <= range[1] && entry <= closestDistance && x >= 0 && y >= 0 && x < width && y < height) {
+            for (Spatial thing : tiles.get(y * width + x)) {
+                if (!tested.add(thing)) {
+                    continue;
+                }
+                BoundingVolume bound = thing.getWorldBound();
+                if (bound == null || !bound.intersects(ray)) {
+                    continue;
+                }
+                results.clear();
+                thing.collideWith(ray, results);
+                if (results.size() > 0 && results.getClosestCollision().getDistance() < closestDistance) {
+                    closestDistance = results.getClosestCollision().getDistance();
+                    closest = thing.getControl(IInteractiveControl.class);
+                }
+            }
+
+            if (nextX < nextY) {
+                entry = nextX;
+                nextX += deltaX;
+                x += stepX;
+            } else {
+                entry = nextY;
+                nextY += deltaY;
+                y += stepY;
+            }
+        }
+        tested.clear();
+        results.clear();
+        return closest;
+    }
+
+    /**
+     * Clip the ray range to a slab on one axis
+     *
+     * @return false if the ray misses the slab
+     */
+    private static boolean clip(float origin, float direction, float min, float max, float[] range) {
+        if (direction == 0) {
+            return origin >= min && origin <= max;
+        }
+        float t1 = (min - origin) / direction;
+        float t2 = (max - origin) / direction;
+        range[0] = Math.max(range[0], Math.min(t1, t2));
+        range[1] = Math.min(range[1], Math.max(t1, t2));
+        return range[0] <= range[1];
+    }
+
+    private static int getTile(float coordinate) {
+        return (int) Math.floor(coordinate / MapLoader.TILE_WIDTH + 0.5f);
+    }
+
+    private static int clamp(int tile, int size) {
+        return Math.max(0, Math.min(size - 1, tile));
+    }
+
+}
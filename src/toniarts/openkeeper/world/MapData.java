@@ -76,6 +76,18 @@ public final class MapData {
         return this.tiles[x][y];
     }
 
+    /**
+     * Get the tile data by tile index
+     *
+     * @param index the tile index
+     * @return the tile data
+     * @see TileData#getIndex()
+     */
+    @Nullable
+    public TileData getTileByIndex(int index) {
+        return getTile(index % width, index / width);
+    }
+
     /**
      * Get the tile data at point
      *
@@ -18,12 +18,13 @@ package toniarts.openkeeper.world;
 
 import com.jme3.asset.AssetManager;
 import com.jme3.asset.TextureKey;
+import com.jme3.material.MatParam;
 import com.jme3.material.Material;
 import com.jme3.math.ColorRGBA;
 import com.jme3.math.FastMath;
+import com.jme3.math.Vector2f;
 import com.jme3.math.Vector3f;
 import com.jme3.renderer.queue.RenderQueue;
-import com.jme3.scene.BatchNode;
 import com.jme3.scene.Geometry;
 import com.jme3.scene.Node;
 import com.jme3.scene.SceneGraphVisitor;
@@ -59,6 +60,8 @@ import toniarts.openkeeper.world.room.RoomConstructor;
 import toniarts.openkeeper.world.room.RoomInstance;
 import toniarts.openkeeper.world.room.WallSection;
 import toniarts.openkeeper.world.room.WallSection.WallDirection;
+import toniarts.openkeeper.world.terrain.TerrainBatchNode;
+import toniarts.openkeeper.world.terrain.TileStateTexture;
 import toniarts.openkeeper.world.terrain.Water;
 
 /**
@@ -78,17 +81,21 @@ public abstract class MapLoader implements ILoader<KwdFile> {
 
     public final static ColorRGBA COLOR_FLASH = new ColorRGBA(0.8f, 0, 0, 1);
     public final static ColorRGBA COLOR_TAG = new ColorRGBA(0, 0, 0.8f, 1);
-    private final static int PAGE_SQUARE_SIZE = 8; // Divide the terrain to square "pages"
+    public final static int PAGE_SQUARE_SIZE = 8; // Divide the terrain to square "pages"
     private final static int FLOOR_INDEX = 0;
     private final static int WALL_INDEX = 1;
     private final static int TOP_INDEX = 2;
     private final static String MAP_NODE = "Map";
     private final static String TERRAIN_NODE = "Terrain";
     private final static String ROOM_NODE = "Rooms";
+    private final static String LIGHTING_MATERIAL = "Common/MatDefs/Light/Lighting.j3md";
+    private final static String TERRAIN_MATERIAL = "MatDefs/Terrain.j3md";
+    private final static int MAX_DECAY_MAPS = 3;
     private List<Node> pages;
     private final KwdFile kwdFile;
     private Node map;
     private final MapData mapData;
+    private final TileStateTexture tileStates;
     private final AssetManager assetManager;
     private final EffectManagerState effectManager;
     private Node roomsNode;
@@ -112,6 +119,7 @@ public abstract class MapLoader implements ILoader<KwdFile> {
 
         // Create modifiable tiles
         mapData = new MapData(kwdFile);
+        tileStates = new TileStateTexture(mapData.getWidth(), mapData.getHeight());
     }
 
     @Override
@@ -151,9 +159,9 @@ public abstract class MapLoader implements ILoader<KwdFile> {
 
         // Batch the terrain pages
         for (Node page : pages) {
-            ((BatchNode) page.getChild(FLOOR_INDEX)).batch();
-            ((BatchNode) page.getChild(WALL_INDEX)).batch();
-            ((BatchNode) page.getChild(TOP_INDEX)).batch();
+            ((TerrainBatchNode) page.getChild(FLOOR_INDEX)).batch();
+            ((TerrainBatchNode) page.getChild(WALL_INDEX)).batch();
+            ((TerrainBatchNode) page.getChild(TOP_INDEX)).batch();
         }
         map.attachChild(terrain);
 
@@ -182,55 +190,52 @@ public abstract class MapLoader implements ILoader<KwdFile> {
     protected void updateTiles(Point... points) {
 
         // Reconstruct all tiles in the area
-        Set<BatchNode> nodesNeedBatching = new HashSet<>();
+        Set<TerrainBatchNode> nodesNeedPatching = new HashSet<>();
         Node terrainNode = (Node) map.getChild(TERRAIN_NODE);
         for (Point point : points) {
             TileData tile = mapData.getTile(point);
-            // Reconstruct and mark for patching
-            // The tile node needs to created anew, somehow the BatchNode just doesn't get it if I remove children from subnode
+
+            // Clear and mark for patching, only the slots of the tile are rewritten
             Node pageNode = getPageNode(point, terrainNode);
-            Node tileNode = getTileNode(point, (Node) pageNode.getChild(FLOOR_INDEX));
-            if (!tileNode.getChildren().isEmpty()) {
-                tileNode.removeFromParent();
-                ((BatchNode) pageNode.getChild(FLOOR_INDEX)).attachChildAt(new Node(tileNode.getName()), getTileNodeIndex(point));
-                nodesNeedBatching.add((BatchNode) pageNode.getChild(FLOOR_INDEX));
-            }
-            tileNode = getTileNode(point, (Node) pageNode.getChild(WALL_INDEX));
-            if (!tileNode.getChildren().isEmpty()) {
-                tileNode.removeFromParent();
-                ((BatchNode) pageNode.getChild(WALL_INDEX)).attachChildAt(new Node(tileNode.getName()), getTileNodeIndex(point));
-                nodesNeedBatching.add((BatchNode) pageNode.getChild(WALL_INDEX));
-            }
-            tileNode = getTileNode(point, (Node) pageNode.getChild(TOP_INDEX));
-            if (!tileNode.getChildren().isEmpty()) {
-                tileNode.removeFromParent();
-                ((BatchNode) pageNode.getChild(TOP_INDEX)).attachChildAt(new Node(tileNode.getName()), getTileNodeIndex(point));
-                nodesNeedBatching.add((BatchNode) pageNode.getChild(TOP_INDEX));
+            for (int index : new int[]{FLOOR_INDEX, WALL_INDEX, TOP_INDEX}) {
+                TerrainBatchNode batchNode = (TerrainBatchNode) pageNode.getChild(index);
+                batchNode.clearTile(getTileNodeIndex(point));
+                nodesNeedPatching.add(batchNode);
             }
 
             // Reconstruct
-            handleTile(tile, (Node) map.getChild(TERRAIN_NODE));
+            handleTile(tile, terrainNode);
         }
 
-        // Batch
-        for (BatchNode batchNode : nodesNeedBatching) {
-            batchNode.batch();
+        // Patch
+        for (TerrainBatchNode batchNode : nodesNeedPatching) {
+            batchNode.patch();
         }
     }
 
     /**
-     * Sets the right material to tile (selected / decayed...)
+     * Update the visual state of the tiles (selected / flashed / decayed...).
+     * This doesn't touch the scene, the state is drawn by the terrain
+     * material.
      *
-     * @param node
+     * @param points tile coordinates to update
      */
-    private void setTileMaterialToGeometries(final TileData tile, final Node node) {
-
-        // Change the material on geometries
-        if (!tile.isFlashed() && !tile.isSelected()
-                && !tile.getTerrain().getFlags().contains(Terrain.TerrainFlag.DECAY)) {
-            return;
+    public void updateTileStates(Point... points) {
+        for (Point point : points) {
+            TileData tile = mapData.getTile(point);
+            if (tile != null) {
+                tileStates.update(tile);
+            }
         }
+    }
 
+    /**
+     * Sets the terrain material to tile geometries, the material draws the
+     * tile state (selected / flashed / decayed...)
+     *
+     * @param node
+     */
+    private void setTileMaterialToGeometries(final TileData tile, final Node node) {
         node.depthFirstTraversal(new SceneGraphVisitor() {
             @Override
             public void visit(Spatial spatial) {
@@ -239,50 +244,60 @@ public abstract class MapLoader implements ILoader<KwdFile> {
                 }
 
                 Material material = ((Geometry) spatial).getMaterial();
-
-                // Decay
-                if (tile.getTerrain().getFlags().contains(Terrain.TerrainFlag.DECAY) && tile.getTerrain().getTextureFrames() > 1) {
-
-                    Integer texCount = spatial.getUserData(KmfModelLoader.MATERIAL_ALTERNATIVE_TEXTURES_COUNT);
-                    if (texCount != null) {
-
-                        // FIXME: This doesn't sit well with the material thinking (meaning we produce the actual material files)
-                        // Now we have a random starting texture...
-                        int textureIndex = tile.getTerrain().getTextureFrames() - (int) Math.ceil(tile.getHealthPercent() / (100f / tile.getTerrain().getTextureFrames()));
-                        String diffuseTexture = ((Texture) material.getParam("DiffuseMap").getValue()).getKey().getName().replaceFirst("_DECAY\\d", ""); // Unharmed texture
-                        if (textureIndex > 0) {
-
-                            // The first one doesn't have a number
-                            if (textureIndex == 1) {
-                                diffuseTexture = diffuseTexture.replaceFirst(".png", "_DECAY.png");
-                            } else {
-                                diffuseTexture = diffuseTexture.replaceFirst(".png", "_DECAY" + textureIndex + ".png");
-                            }
-                        }
-                        try {
-                            Texture texture = assetManager.loadTexture(new TextureKey(ConversionUtils.getCanonicalAssetKey(diffuseTexture), false));
-                            material.setTexture("DiffuseMap", texture);
-
-                            AssetUtils.assignMapsToMaterial(assetManager, material);
-                        } catch (Exception e) {
-                            logger.log(Level.WARNING, "Error applying decay texture: {0} to {1} terrain! ({2})", new Object[]{diffuseTexture, tile.getTerrain().getName(), e.getMessage()});
-                        }
-                    }
+                if (!LIGHTING_MATERIAL.equals(material.getMaterialDef().getAssetName())) {
+                    return;
                 }
+                Material terrainMaterial = createTerrainMaterial(material);
 
-                if (tile.isFlashed()) {
-                    material.setColor("Ambient", COLOR_FLASH);
-                    material.setBoolean("UseMaterialColors", true);
-                }
-                if (tile.isSelected()) {
-                    material.setColor("Ambient", COLOR_TAG);
-                    material.setBoolean("UseMaterialColors", true);
+                // Decay
+                Integer texCount = spatial.getUserData(KmfModelLoader.MATERIAL_ALTERNATIVE_TEXTURES_COUNT);
+                if (texCount != null && tile.getTerrain().getFlags().contains(Terrain.TerrainFlag.DECAY)
+                        && tile.getTerrain().getTextureFrames() > 1) {
+                    setDecayMaps(tile, terrainMaterial);
                 }
 
+                ((Geometry) spatial).setMaterial(terrainMaterial);
             }
 
         });
+    }
+
+    private Material createTerrainMaterial(Material material) {
+        Material terrainMaterial = new Material(assetManager, TERRAIN_MATERIAL);
+        for (MatParam param : material.getParams()) {
+            if (terrainMaterial.getMaterialDef().getMaterialParam(param.getName()) != null) {
+                terrainMaterial.setParam(param.getName(), param.getVarType(), param.getValue());
+            }
+        }
+        terrainMaterial.getAdditionalRenderState().set(material.getAdditionalRenderState());
+        terrainMaterial.setTransparent(material.isTransparent());
+        terrainMaterial.setReceivesShadows(material.isReceivesShadows());
+
+        terrainMaterial.setTexture("TileStateMap", tileStates.getTexture());
+        terrainMaterial.setVector2("MapSize", new Vector2f(tileStates.getWidth(), tileStates.getHeight()));
+        terrainMaterial.setFloat("TileWidth", TILE_WIDTH);
+        terrainMaterial.setColor("FlashColor", COLOR_FLASH);
+        terrainMaterial.setColor("TagColor", COLOR_TAG);
+        return terrainMaterial;
+    }
+
+    private void setDecayMaps(TileData tile, Material material) {
 
+        // FIXME: This doesn't sit well with the material thinking (meaning we produce the actual material files)
+        String unharmedTexture = ((Texture) material.getParam("DiffuseMap").getValue()).getKey().getName().replaceFirst("_DECAY\\d", "");
+        int frames = Math.min(MAX_DECAY_MAPS, tile.getTerrain().getTextureFrames() - 1);
+        for (int i = 1; i <= frames; i++) {
+
+            // The first one doesn't have a number
+            String diffuseTexture = unharmedTexture.replaceFirst(".png", "_DECAY" + (i == 1 ? "" : i) + ".png");
+            try {
+                Texture texture = assetManager.loadTexture(new TextureKey(ConversionUtils.getCanonicalAssetKey(diffuseTexture), false));
+                material.setTexture("DecayMap" + i, texture);
+            } catch (Exception e) {
+                logger.log(Level.WARNING, "Error applying decay texture: {0} to {1} terrain! ({2})", new Object[]{diffuseTexture, tile.getTerrain().getName(), e.getMessage()});
+                break;
+            }
+        }
     }
 
     /**
@@ -298,15 +313,15 @@ public abstract class MapLoader implements ILoader<KwdFile> {
                 Node page = new Node(x + "_" + y);
 
                 // Create batch nodes for ceiling, floor and walls
-                BatchNode floor = new BatchNode("floor");
+                TerrainBatchNode floor = new TerrainBatchNode("floor", PAGE_SQUARE_SIZE * PAGE_SQUARE_SIZE);
                 floor.setShadowMode(RenderQueue.ShadowMode.Receive); // Floors don't cast
                 generateTileNodes(floor, x, y);
                 page.attachChild(floor);
-                BatchNode wall = new BatchNode("wall");
+                TerrainBatchNode wall = new TerrainBatchNode("wall", PAGE_SQUARE_SIZE * PAGE_SQUARE_SIZE);
                 wall.setShadowMode(RenderQueue.ShadowMode.CastAndReceive); // Walls cast and receive shadows
                 generateTileNodes(wall, x, y);
                 page.attachChild(wall);
-                BatchNode ceiling = new BatchNode("ceiling");
+                TerrainBatchNode ceiling = new TerrainBatchNode("ceiling", PAGE_SQUARE_SIZE * PAGE_SQUARE_SIZE);
                 ceiling.setShadowMode(RenderQueue.ShadowMode.Off); // No lights above ceilings
                 generateTileNodes(ceiling, x, y);
                 page.attachChild(ceiling);
@@ -324,7 +339,7 @@ public abstract class MapLoader implements ILoader<KwdFile> {
      * @param pageX page x
      * @param pageY page y
      */
-    private void generateTileNodes(BatchNode pageBatch, int pageX, int pageY) {
+    private void generateTileNodes(TerrainBatchNode pageBatch, int pageX, int pageY) {
         for (int y = 0; y < PAGE_SQUARE_SIZE; y++) {
             for (int x = 0; x < PAGE_SQUARE_SIZE; x++) {
                 pageBatch.attachChild(new Node((x + pageX * PAGE_SQUARE_SIZE) + "_" + (y + pageY * PAGE_SQUARE_SIZE)));
@@ -436,6 +451,7 @@ public abstract class MapLoader implements ILoader<KwdFile> {
         Terrain terrain = tile.getTerrain();
         Point p = tile.getLocation();
         Node pageNode = getPageNode(p, root);
+        tileStates.update(tile);
 
         // Torch (see https://github.com/tonihele/OpenKeeper/issues/128)
         if (!terrain.getFlags().contains(Terrain.TerrainFlag.SOLID)
@@ -632,7 +648,7 @@ public abstract class MapLoader implements ILoader<KwdFile> {
             mapData.getTile(p.x, p.y).setFlashed(enabled);
         }
 
-        updateTiles(points.toArray(new Point[points.size()]));
+        updateTileStates(points.toArray(new Point[points.size()]));
     }
 
     /**
@@ -70,16 +70,10 @@ public class MapThumbnailGenerator {
     public static BufferedImage generateMap(final KwdFile kwd, final Integer width, final Integer height, final boolean preserveAspectRatio) {
 
         // Get the palette if not gotten already
-        if (cm == null) {
-            synchronized (paletteLock) {
-                if (cm == null) {
-                    cm = readPalette();
-                }
-            }
-        }
+        IndexColorModel cm = getPalette();
 
-        // Ensure that the kwd is fully loaded
-        kwd.load();
+        // Ensure that the map tiles and terrain are loaded, the thumbnail doesn't need the rest
+        kwd.loadMapAndTerrain();
 
         // Determine wanted width/height
         int imageWidth = kwd.getMap().getWidth();
@@ -145,6 +139,17 @@ public class MapThumbnailGenerator {
         return bi;
     }
 
+    private static IndexColorModel getPalette() {
+        if (cm == null) {
+            synchronized (paletteLock) {
+                if (cm == null) {
+                    cm = readPalette();
+                }
+            }
+        }
+        return cm;
+    }
+
     private static IndexColorModel readPalette() {
         try {
 
@@ -246,6 +251,6 @@ public class MapThumbnailGenerator {
      * @return the player color
      */
     public static Color getPlayerColor(short playerId) {
-        return new Color(readPalette().getRGB(35 + playerId));
+        return new Color(getPalette().getRGB(35 + playerId));
     }
 }
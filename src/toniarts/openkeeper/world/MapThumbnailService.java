@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) 2014-2018 OpenKeeper
+ *
+ * OpenKeeper is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenKeeper is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenKeeper.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package toniarts.openkeeper.world;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import javax.imageio.ImageIO;
+import toniarts.openkeeper.tools.convert.ConversionManifest;
+import toniarts.openkeeper.tools.convert.ConversionUtils;
+import toniarts.openkeeper.tools.convert.map.KwdFile;
+import toniarts.openkeeper.tools.convert.map.MapDataTypeEnum;
+
+/**
+ * Renders the map thumbnails on a pool of worker threads and caches them on
+ * disk. The thumbnails are named by the content hash of the map data, so a
+ * thumbnail is rendered only once per map, and an edited map gets a new one.
+ * Only the map tiles and the terrain are read for rendering, see
+ * {@link KwdFile#loadMapAndTerrain()}.
+ *
+ * @author Toni Helenius <helenius.toni@gmail.com>
+ */
+public class MapThumbnailService {
+
+    public static final int THUMBNAIL_SIZE = 144;
+    private static final String THUMBNAIL_EXTENSION = ".png";
+
+    private final File folder;
+    private final String dkIIFolder;
+    private final ExecutorService executor;
+    private final Map<String, CompletableFuture<File>> thumbnails = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a thumbnail service
+     *
+     * @param folder the folder to cache the thumbnails to
+     * @param dkIIFolder the DK II folder, the map files are relative to it
+     * @param threads the number of worker threads
+     */
+    public MapThumbnailService(String folder, String dkIIFolder, int threads) {
+        this.folder = new File(folder);
+        this.dkIIFolder = dkIIFolder;
+        AtomicInteger threadIndex = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(Math.max(1, threads), (Runnable r) -> {
+            Thread thread = new Thread(r, "MapThumbnailGenerator-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Get the thumbnail of the map. The content hash of the map data is
+     * calculated on the worker thread.
+     *
+     * @param kwd the map
+     * @return the thumbnail file once it exists
+     */
+    public CompletableFuture<File> getThumbnail(KwdFile kwd) {
+        return CompletableFuture.supplyAsync(() -> getHash(kwd), executor)
+                .thenCompose((hash) -> getThumbnail(hash, () -> kwd));
+    }
+
+    /**
+     * Get the thumbnail of the map with the given content hash. The map is
+     * only asked for if the thumbnail needs to be rendered.
+     *
+     * @param hash the content hash of the map data
+     * @param map supplies the map, called on the worker thread
+     * @return the thumbnail file once it exists
+     */
+    public CompletableFuture<File> getThumbnail(String hash, Supplier<KwdFile> map) {
+        File file = getThumbnailFile(hash);
+        if (file.exists()) {
+            return CompletableFuture.completedFuture(file);
+        }
+
+        // Render, the same thumbnail is requested only once at a time
+        CompletableFuture<File> future = thumbnails.computeIfAbsent(hash,
+                (key) -> CompletableFuture.supplyAsync(() -> generateThumbnail(map.get(), file), executor));
+        future.whenComplete((result, e) -> {
+            if (e != null) {
+
+                // Let it be tried again
+                thumbnails.remove(hash, future);
+            }
+        });
+        return future;
+    }
+
+    private File getThumbnailFile(String hash) {
+        return new File(folder, hash + THUMBNAIL_EXTENSION);
+    }
+
+    private String getHash(KwdFile kwd) {
+        try {
+            return ConversionManifest.getHash(new File(ConversionUtils.getRealFileName(dkIIFolder, kwd.getGameLevel().getFile(MapDataTypeEnum.MAP))));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read the map data of " + kwd + "!", e);
+        }
+    }
+
+    private static File generateThumbnail(KwdFile kwd, File file) {
+        if (file.exists()) {
+            return file;
+        }
+
+        // Write to a temporary file first so that no one sees a half written thumbnail
+        BufferedImage thumbnail = MapThumbnailGenerator.generateMap(kwd, THUMBNAIL_SIZE, THUMBNAIL_SIZE, false);
+        File tempFile = null;
+        try {
+            file.getParentFile().mkdirs();
+            tempFile = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
+            ImageIO.write(thumbnail, "png", tempFile);
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            return file;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to save the map thumbnail " + file + "!", e);
+        } finally {
+            if (tempFile != null) {
+                tempFile.delete();
+            }
+        }
+    }
+
+    /**
+     * Stops the worker threads, the thumbnails already requested are still
+     * rendered
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+}
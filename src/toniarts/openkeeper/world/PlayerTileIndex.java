@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2014-2018 OpenKeeper
+ *
+ * OpenKeeper is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenKeeper is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenKeeper.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package toniarts.openkeeper.world;
+
+import java.util.HashMap;
+import java.util.Map;
+import toniarts.openkeeper.tools.convert.map.KwdFile;
+import toniarts.openkeeper.tools.convert.map.Terrain;
+import toniarts.openkeeper.world.listener.TileChangeListener;
+
+/**
+ * Running totals of the tiles the players own, by terrain and by the mana
+ * they generate. The map is scanned once, after that only the changed tiles
+ * are looked at. The owner and terrain of every tile is remembered so that a
+ * change can be taken off from the previous totals.
+ *
+ * @author Toni Helenius <helenius.toni@gmail.com>
+ */
+public class PlayerTileIndex implements TileChangeListener {
+
+    private final MapData mapData;
+    private final KwdFile kwdFile;
+    private final short[] owners;
+    private final short[] terrains;
+    private final Map<Short, PlayerTiles> players = new HashMap<>();
+
+    public PlayerTileIndex(MapData mapData, KwdFile kwdFile) {
+        this.mapData = mapData;
+        this.kwdFile = kwdFile;
+        owners = new short[mapData.getWidth() * mapData.getHeight()];
+        terrains = new short[mapData.getWidth() * mapData.getHeight()];
+        for (int y = 0; y < mapData.getHeight(); y++) {
+            for (int x = 0; x < mapData.getWidth(); x++) {
+                TileData tile = mapData.getTile(x, y);
+                int index = getIndex(x, y);
+                owners[index] = tile.getPlayerId();
+                terrains[index] = tile.getTerrainId();
+                add(owners[index], terrains[index], 1);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void onTileChange(int x, int y) {
+        TileData tile = mapData.getTile(x, y);
+        if (tile == null) {
+            return;
+        }
+        int index = getIndex(x, y);
+        if (owners[index] == tile.getPlayerId() && terrains[index] == tile.getTerrainId()) {
+            return;
+        }
+
+        add(owners[index], terrains[index], -1);
+        owners[index] = tile.getPlayerId();
+        terrains[index] = tile.getTerrainId();
+        add(owners[index], terrains[index], 1);
+    }
+
+    private void add(short playerId, short terrainId, int count) {
+        PlayerTiles tiles = players.get(playerId);
+        if (tiles == null) {
+            tiles = new PlayerTiles();
+            players.put(playerId, tiles);
+        }
+        tiles.tileCount += count;
+        tiles.terrainCounts.merge(terrainId, count, Integer::sum);
+        Terrain terrain = kwdFile.getTerrain(terrainId);
+        if (terrain != null) {
+            tiles.manaGain += terrain.getManaGain() * count;
+        }
+    }
+
+    /**
+     * Get the mana the tiles owned by the player generate per second
+     *
+     * @param playerId the player
+     * @return the mana gain
+     */
+    public synchronized int getManaGain(short playerId) {
+        PlayerTiles tiles = players.get(playerId);
+        return (tiles != null ? tiles.manaGain : 0);
+    }
+
+    /**
+     * Get the number of tiles owned by the player
+     *
+     * @param playerId the player
+     * @return the number of tiles
+     */
+    public synchronized int getTileCount(short playerId) {
+        PlayerTiles tiles = players.get(playerId);
+        return (tiles != null ? tiles.tileCount : 0);
+    }
+
+    /**
+     * Get the number of tiles of the given terrain owned by the player
+     *
+     * @param playerId the player
+     * @param terrainId the terrain
+     * @return the number of tiles
+     */
+    public synchronized int getTileCount(short playerId, short terrainId) {
+        PlayerTiles tiles = players.get(playerId);
+        return (tiles != null ? tiles.terrainCounts.getOrDefault(terrainId, 0) : 0);
+    }
+
+    private int getIndex(int x, int y) {
+        return y * mapData.getWidth() + x;
+    }
+
+    /**
+     * The totals of one player
+     */
+    private static class PlayerTiles {
+
+        private int tileCount = 0;
+        private int manaGain = 0;
+        private final Map<Short, Integer> terrainCounts = new HashMap<>();
+    }
+
+}
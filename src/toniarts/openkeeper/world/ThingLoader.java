@@ -28,6 +28,7 @@ import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.annotation.Nullable;
@@ -48,6 +49,7 @@ import toniarts.openkeeper.world.door.DoorControl;
 import toniarts.openkeeper.world.door.DoorLoader;
 import toniarts.openkeeper.world.listener.CreatureListener;
 import toniarts.openkeeper.world.listener.ObjectListener;
+import toniarts.openkeeper.world.listener.ThingListener;
 import toniarts.openkeeper.world.object.GoldObjectControl;
 import toniarts.openkeeper.world.object.ObjectControl;
 import toniarts.openkeeper.world.object.ObjectLoader;
@@ -93,6 +95,7 @@ public class ThingLoader {
     private Map<Short, List<CreatureListener>> creatureListeners;
     private final Map<Integer, Party> creatureParties = new HashMap<>();
     private List<ObjectListener> objectListeners;
+    private final List<ThingListener> thingListeners = new CopyOnWriteArrayList<>();
 
     private static final Logger logger = Logger.getLogger(ThingLoader.class.getName());
 
@@ -146,10 +149,40 @@ public class ThingLoader {
 
         // Create the scene graph
         root = new Node("Things");
-        nodeCreatures = new Node("Creatures");
-        nodeObjects = new Node("Objects");
-        nodeDoors = new Node("Doors");
-        nodeTraps = new Node("Traps");
+        nodeCreatures = createThingsNode("Creatures");
+        nodeObjects = createThingsNode("Objects");
+        nodeDoors = createThingsNode("Doors");
+        nodeTraps = createThingsNode("Traps");
+    }
+
+    /**
+     * Creates a node for a category of things, the node notifies the thing
+     * listeners as the things are attached and detached
+     */
+    private Node createThingsNode(String name) {
+        return new Node(name) {
+
+            @Override
+            public int attachChildAt(Spatial child, int index) {
+                int result = super.attachChildAt(child, index);
+                for (ThingListener listener : thingListeners) {
+                    listener.onAdded(child);
+                }
+                return result;
+            }
+
+            @Override
+            public Spatial detachChildAt(int index) {
+                Spatial child = super.detachChildAt(index);
+                if (child != null) {
+                    for (ThingListener listener : thingListeners) {
+                        listener.onRemoved(child);
+                    }
+                }
+                return child;
+            }
+
+        };
     }
 
     /**
@@ -439,6 +472,28 @@ public class ThingLoader {
         objectListeners.add(listener);
     }
 
+    /**
+     * If you want to get notified about the things entering, leaving and
+     * moving in the world
+     *
+     * @param listener the listener
+     */
+    public void addListener(ThingListener listener) {
+        thingListeners.add(listener);
+    }
+
+    /**
+     * Notify that a thing has moved. The things are not tracked every frame,
+     * so whoever moves a thing should call this.
+     *
+     * @param thing the thing spatial
+     */
+    public void onThingMoved(Spatial thing) {
+        for (ThingListener listener : thingListeners) {
+            listener.onMoved(thing);
+        }
+    }
+
     /**
      * Typically you should add objects through add object so that they are
      * added to the global list, but for rooms etc. you can use the object
@@ -192,7 +192,7 @@ public final class TileData extends Tile {
                 .replaceAll("%67", Integer.toString(gold));
     }
 
-    protected Integer getHealthPercent() {
+    public Integer getHealthPercent() {
         return Math.round((float) health / terrain.getMaxHealth() * 100);
     }
 
@@ -255,6 +255,15 @@ public final class TileData extends Tile {
         creatures.add(creature);
     }
 
+    /**
+     * Remove a creature from the tile creature record
+     *
+     * @param creature the creature to remove
+     */
+    public void removeCreature(CreatureControl creature) {
+        creatures.remove(creature);
+    }
+
     /**
      * Get list of creatures currently wondering at this tile
      *
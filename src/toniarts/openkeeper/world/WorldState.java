@@ -16,7 +16,6 @@
  */
 package toniarts.openkeeper.world;
 
-import com.badlogic.gdx.ai.pfa.DefaultGraphPath;
 import com.badlogic.gdx.ai.pfa.GraphPath;
 import com.badlogic.gdx.ai.steer.utils.paths.LinePath;
 import com.badlogic.gdx.ai.steer.utils.paths.LinePath.Segment;
@@ -74,16 +73,22 @@ import toniarts.openkeeper.world.animation.AnimationLoader;
 import toniarts.openkeeper.world.control.FlashTileControl;
 import toniarts.openkeeper.world.control.IInteractiveControl;
 import toniarts.openkeeper.world.creature.CreatureControl;
+import toniarts.openkeeper.world.creature.CreatureSpatialIndex;
+import toniarts.openkeeper.world.creature.FieldOfViewCache;
 import toniarts.openkeeper.world.effect.EffectManagerState;
 import toniarts.openkeeper.world.listener.CreatureListener;
 import toniarts.openkeeper.world.listener.RoomListener;
 import toniarts.openkeeper.world.listener.TileChangeListener;
 import toniarts.openkeeper.world.object.GoldObjectControl;
 import toniarts.openkeeper.world.object.ObjectControl;
-import toniarts.openkeeper.world.pathfinding.MapDistance;
-import toniarts.openkeeper.world.pathfinding.MapIndexedGraph;
-import toniarts.openkeeper.world.pathfinding.MapPathFinder;
+import toniarts.openkeeper.world.pathfinding.FlowFieldCache;
+import toniarts.openkeeper.world.pathfinding.HierarchicalPathFinder;
+import toniarts.openkeeper.world.pathfinding.MapConnectionTable;
+import toniarts.openkeeper.world.pathfinding.MapConnectivity;
+import toniarts.openkeeper.world.pathfinding.PathCache;
 import toniarts.openkeeper.world.pathfinding.PathFindable;
+import toniarts.openkeeper.world.pathfinding.PathFindingRequest;
+import toniarts.openkeeper.world.pathfinding.PathFindingService;
 import toniarts.openkeeper.world.room.GenericRoom;
 import toniarts.openkeeper.world.room.RoomInstance;
 import toniarts.openkeeper.world.room.control.RoomGoldControl;
@@ -102,9 +107,11 @@ public abstract class WorldState extends AbstractAppState {
     private final KwdFile kwdFile;
     private AssetManager assetManager;
     private Node worldNode;
-    private final MapIndexedGraph pathFindingMap;
-    private final MapPathFinder pathFinder;
-    private final MapDistance heuristic;
+    private final MapConnectionTable connectionTable;
+    private final PathFindingService pathFindingService;
+    private final CreatureSpatialIndex creatureIndex;
+    private final FieldOfViewCache fieldOfView;
+    private final PlayerTileIndex playerTiles;
     private final Node thingsNode;
     private final BulletAppState bulletAppState;
     private final EffectManagerState effectManager;
@@ -143,15 +150,28 @@ public abstract class WorldState extends AbstractAppState {
         };
         worldNode.attachChild(mapLoader.load(assetManager, kwdFile));
 
-        // For path finding
-        pathFindingMap = new MapIndexedGraph(this);
-        pathFinder = new MapPathFinder(pathFindingMap, false);
-        heuristic = new MapDistance();
-
         // Things
         thingsNode = thingLoader.loadAll(gameState.getCreatureTriggerState(), gameState.getObjectTriggerState(), gameState.getDoorTriggerState(), gameState.getPartyTriggerState());
         worldNode.attachChild(thingsNode);
 
+        // For path finding, after the things since we need the doors
+        connectionTable = new MapConnectionTable(this);
+        addListener(connectionTable);
+        MapConnectivity connectivity = new MapConnectivity(connectionTable);
+        addListener(connectivity);
+        FlowFieldCache flowFields = new FlowFieldCache(connectionTable);
+        addListener(flowFields);
+        PathCache pathCache = new PathCache(connectionTable);
+        addListener(pathCache);
+        HierarchicalPathFinder hierarchicalPathFinder = new HierarchicalPathFinder(connectionTable, MapLoader.PAGE_SQUARE_SIZE);
+        addListener(hierarchicalPathFinder);
+        creatureIndex = new CreatureSpatialIndex(getMapData());
+        fieldOfView = new FieldOfViewCache(getMapData());
+        addListener(fieldOfView);
+        playerTiles = new PlayerTileIndex(getMapData(), kwdFile);
+        addListener(playerTiles);
+        pathFindingService = new PathFindingService(this, connectionTable, connectivity, flowFields, pathCache, hierarchicalPathFinder);
+
         flashTileControl = new FlashTileControl(this, (Main) gameState.getApplication());
 
         // Player money
@@ -276,6 +296,9 @@ public abstract class WorldState extends AbstractAppState {
         // Effects
         this.stateManager.detach(effectManager);
 
+        // Path finding workers
+        pathFindingService.shutdown();
+
         super.cleanup();
     }
 
@@ -380,7 +403,7 @@ public abstract class WorldState extends AbstractAppState {
             }
         }
         Point[] tiles = updatableTiles.toArray(new Point[updatableTiles.size()]);
-        mapLoader.updateTiles(tiles);
+        mapLoader.updateTileStates(tiles);
 
         // Notify
         notifyTileChange(tiles);
@@ -525,6 +548,9 @@ public abstract class WorldState extends AbstractAppState {
 
         // update one
         updateTiles(enqueue, mapLoader.getSurroundingTiles(pos, true));
+
+        // Notify
+        notifyTileChange(pos);
     }
 
     /**
@@ -578,6 +604,9 @@ public abstract class WorldState extends AbstractAppState {
         // See if room walls are allowed and does this touch any rooms
         updateRoomWalls(tile);
         mapLoader.updateTiles(mapLoader.getSurroundingTiles(tile.getLocation(), true));
+
+        // Notify
+        notifyTileChange(tile.getLocation());
     }
 
     private void updateRoomWalls(TileData tile) {
@@ -636,6 +665,9 @@ public abstract class WorldState extends AbstractAppState {
         updateRoomWalls(tile);
 
         mapLoader.updateTiles(mapLoader.getSurroundingTiles(tile.getLocation(), true));
+
+        // Notify
+        notifyTileChange(tile.getLocation());
     }
 
     /**
@@ -731,6 +763,9 @@ public abstract class WorldState extends AbstractAppState {
 
         // New room, calculate gold capacity
         RoomInstance instance = mapLoader.getRoomCoordinates().get(instancePlots.get(0));
+
+        // Notify, the whole room since the accessibility depends on the room shape
+        notifyTileChange(instance.getCoordinates().toArray(new Point[instance.getCoordinates().size()]));
         if (adjacentInstances.isEmpty()) {
             addGoldCapacityToPlayer(instance);
             notifyOnBuild(instance.getOwnerId(), mapLoader.getRoomActuals().get(instance));
@@ -839,6 +874,9 @@ public abstract class WorldState extends AbstractAppState {
 
         mapLoader.updateTiles(updatableTiles.toArray(new Point[updatableTiles.size()]));
 
+        // Notify
+        notifyTileChange(roomCoordinates.toArray(new Point[roomCoordinates.size()]));
+
         // See if any of the rooms survived
         Set<RoomInstance> newInstances = new HashSet<>();
         for (Point p : roomCoordinates) {
@@ -891,7 +929,7 @@ public abstract class WorldState extends AbstractAppState {
                 }
 
                 TileData tile = getMapData().getTile(x, y);
-                if (tile != null && isAccessible(tile, creature)) {
+                if (tile != null && isAccessible(tile, creature) && isReachable(start, tile.getLocation(), creature)) {
                     tiles.add(new Point(x, y));
                 }
             }
@@ -905,7 +943,7 @@ public abstract class WorldState extends AbstractAppState {
     }
 
     /**
-     * FIXME: This can NOT be. Just for quick easy testing.
+     * Find path between two points. Thread safe.
      *
      * @param start start point
      * @param end end point
@@ -913,14 +951,38 @@ public abstract class WorldState extends AbstractAppState {
      * @return output path, null if path not found
      */
     public GraphPath<TileData> findPath(Point start, Point end, PathFindable pathFindable) {
-        pathFindingMap.setPathFindable(pathFindable);
-        GraphPath<TileData> outPath = new DefaultGraphPath<>();
-        TileData startTile = getMapData().getTile(start.x, start.y);
-        TileData endTile = getMapData().getTile(end.x, end.y);
-        if (startTile != null && endTile != null && pathFinder.searchNodePath(startTile, endTile, heuristic, outPath)) {
-            return outPath;
+        return pathFindingService.findPath(start, end, pathFindable);
+    }
+
+    /**
+     * Quick check whether the end point can be reached at all, no path
+     * finding is done. Thread safe.
+     *
+     * @param start start point
+     * @param end end point
+     * @param pathFindable the entity to test with
+     * @return false if the end point is certainly not reachable, true doesn't
+     * guarantee that a path exists
+     */
+    public boolean isReachable(Point start, Point end, PathFindable pathFindable) {
+        TileData startTile = getMapData().getTile(start);
+        TileData endTile = getMapData().getTile(end);
+        if (startTile == null || endTile == null) {
+            return false;
         }
-        return null;
+        return pathFindingService.isReachable(startTile, endTile, pathFindable);
+    }
+
+    /**
+     * Find paths for several requests at once, the searches are run in
+     * parallel. Thread safe.
+     *
+     * @param requests the path finding requests
+     * @return the paths in the same order as the requests, a path is
+     * {@code null} if it was not found
+     */
+    public List<GraphPath<TileData>> findPaths(List<PathFindingRequest> requests) {
+        return pathFindingService.findPaths(requests);
     }
 
     /**
@@ -931,8 +993,7 @@ public abstract class WorldState extends AbstractAppState {
      * @return is accessible
      */
     public boolean isAccessible(TileData tile, PathFindable pathFindable) {
-        Float cost = pathFindable.getCost(null, tile, this);
-        return cost != null;
+        return connectionTable.isAccessible(tile, pathFindable);
     }
 
     /**
@@ -957,10 +1018,47 @@ public abstract class WorldState extends AbstractAppState {
         }
     }
 
+    /**
+     * Get the creature index, it holds the creatures on each tile
+     *
+     * @return the creature index
+     */
+    public CreatureSpatialIndex getCreatureIndex() {
+        return creatureIndex;
+    }
+
+    /**
+     * Get the creature senses, what can be seen and heard from a tile
+     *
+     * @return the field of view cache
+     */
+    public FieldOfViewCache getFieldOfView() {
+        return fieldOfView;
+    }
+
+    /**
+     * Get the running totals of the tiles owned by the players
+     *
+     * @return the player tile index
+     */
+    public PlayerTileIndex getPlayerTiles() {
+        return playerTiles;
+    }
+
     public Node getThingsNode() {
         return thingsNode;
     }
 
+    /**
+     * Notify that the passability of a door has changed, i.e. it has been
+     * locked or unlocked
+     *
+     * @param p the door coordinates
+     */
+    public void updateDoor(Point p) {
+        notifyTileChange(p);
+    }
+
     /**
      * Notify the tile change listeners
      *
@@ -1058,7 +1156,7 @@ public abstract class WorldState extends AbstractAppState {
             // Notify
             notifyTileChange(point);
         } else if (terrain.getFlags().contains(Terrain.TerrainFlag.DECAY)) {
-            mapLoader.updateTiles(point);
+            mapLoader.updateTileStates(point);
         }
 
         return returnedGold;
@@ -1119,7 +1217,7 @@ public abstract class WorldState extends AbstractAppState {
             // Notify
             notifyTileChange(point);
         } else if (terrain.getFlags().contains(Terrain.TerrainFlag.DECAY)) {
-            mapLoader.updateTiles(point);
+            mapLoader.updateTileStates(point);
         }
     }
 
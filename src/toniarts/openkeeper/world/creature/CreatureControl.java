@@ -155,6 +155,7 @@ public abstract class CreatureControl extends AbstractCreatureSteeringControl im
      */
     private final Set<CreatureControl> visibilityList = new HashSet<>();
     private boolean visibilityListUpdated = false;
+    private boolean sensesUpdated = false;
     private Integer ourThreat;
     private Integer enemyThreat;
     private Integer fellowFighters;
@@ -237,13 +238,35 @@ public abstract class CreatureControl extends AbstractCreatureSteeringControl im
         }
     }
 
-    @Override
-    public void processTick(float tpf, Application app) {
+    /**
+     * Updates what the creature senses, the visible creatures and the threat
+     * they pose. Only reads the world, so it is safe to run this for all the
+     * creatures in parallel, as long as no one is modifying the world at the
+     * same time. The results are used during the next
+     * {@link #processTick(float, com.jme3.app.Application)}.
+     */
+    public void updateSenses() {
+        resetSenses();
+        getEnemyThreat();
+        getOurThreat();
+        getFellowFighters();
+        sensesUpdated = true;
+    }
+
+    private void resetSenses() {
         visibilityList.clear();
         visibilityListUpdated = false;
         ourThreat = null;
         enemyThreat = null;
         fellowFighters = null;
+    }
+
+    @Override
+    public void processTick(float tpf, Application app) {
+        if (!sensesUpdated) {
+            resetSenses();
+        }
+        sensesUpdated = false;
         if (stateMachine.getCurrentState() == null) {
             initState();
         }
@@ -418,6 +441,7 @@ public abstract class CreatureControl extends AbstractCreatureSteeringControl im
         if (stateMachine.getCurrentState() == CreatureState.ENTERING_DUNGEON) {
             Vector3f offset = ConversionUtils.convertVector(creature.getAnimationOffsets(Creature.OffsetType.PORTAL_ENTRANCE));
             spatial.move(offset);
+            onMoved();
             stateMachine.changeState(CreatureState.IDLE);
 
         } else if (stateMachine.getCurrentState() == CreatureState.SLAPPED) {
@@ -1258,13 +1282,15 @@ public abstract class CreatureControl extends AbstractCreatureSteeringControl im
 
             // Get creatures we sense
             Point currentPoint = getCreatureCoordinates();
-            // TODO: Every creature has hearing & vision 4, so I can just cheat this in, but should fix eventually
-            // https://github.com/tonihele/OpenKeeper/issues/261
             if (currentPoint != null) {
                 TileData tile = worldState.getMapData().getTile(currentPoint);
                 if (tile != null) {
-                    visibilityList.addAll(tile.getCreatures());
-                    addVisibleCreatures(currentPoint, (int) creature.getAttributes().getDistanceCanHear());
+                    int[] sensedTiles = worldState.getFieldOfView().getSensedTiles(tile,
+                            (int) creature.getAttributes().getDistanceCanSee(),
+                            (int) creature.getAttributes().getDistanceCanHear());
+                    for (int index : sensedTiles) {
+                        visibilityList.addAll(worldState.getMapData().getTileByIndex(index).getCreatures());
+                    }
                 }
             }
             visibilityList.remove(this);
@@ -1273,21 +1299,6 @@ public abstract class CreatureControl extends AbstractCreatureSteeringControl im
         return visibilityList;
     }
 
-    private void addVisibleCreatures(Point p, int range) {
-        TileData tile = worldState.getMapData().getTile(p);
-        if (tile == null || tile.getTerrain().getFlags().contains(Terrain.TerrainFlag.SOLID)
-                || range-- < 0) {
-            return;
-        }
-
-        visibilityList.addAll(tile.getCreatures());
-
-        addVisibleCreatures(new Point(p.x + 1, p.y), range);
-        addVisibleCreatures(new Point(p.x - 1, p.y), range);
-        addVisibleCreatures(new Point(p.x, p.y + 1), range);
-        addVisibleCreatures(new Point(p.x, p.y - 1), range);
-    }
-
     /**
      * Get creature facing direction in map directions. FIXME: I don't really
      * like this enum to be used here, wrap it
@@ -1841,6 +1852,12 @@ public abstract class CreatureControl extends AbstractCreatureSteeringControl im
     public void updatePosition(Vector3f position) {
         getSpatial().setLocalTranslation(position);
         setPositionFromSpatial();
+        onMoved();
+    }
+
+    @Override
+    protected void onMoved() {
+        worldState.getThingLoader().onThingMoved(getSpatial());
     }
 
     /**
@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) 2014-2018 OpenKeeper
+ *
+ * OpenKeeper is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenKeeper is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenKeeper.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package toniarts.openkeeper.world.creature;
+
+import java.awt.Point;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import toniarts.openkeeper.world.MapData;
+import toniarts.openkeeper.world.TileData;
+
+/**
+ * Keeps the tile creature records up to date. The tiles are the cells of the
+ * index, a creature is only moved when its tile changes, so the cost is
+ * relative to the creature count and not to the map size.<br>
+ * Not thread safe, meant to be synchronized with the creatures at the start of
+ * every game logic tick.
+ *
+ * @see TileData#getCreatures()
+ * @author Toni Helenius <helenius.toni@gmail.com>
+ */
+public class CreatureSpatialIndex {
+
+    private final MapData mapData;
+    private final Map<CreatureControl, TileData> creatureTiles = new IdentityHashMap<>();
+    private final Set<CreatureControl> present = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    public CreatureSpatialIndex(MapData mapData) {
+        this.mapData = mapData;
+    }
+
+    /**
+     * Update the index with the current creatures. Creatures that are not in
+     * the given collection anymore are removed from the index.
+     *
+     * @param creatures all the creatures in the world
+     */
+    public void update(Collection<CreatureControl> creatures) {
+        present.clear();
+        for (CreatureControl creature : creatures) {
+            present.add(creature);
+            update(creature);
+        }
+
+        // Remove the dead
+        Iterator<Map.Entry<CreatureControl, TileData>> iter = creatureTiles.entrySet().iterator();
+        while (iter.hasNext()) {
+            Map.Entry<CreatureControl, TileData> entry = iter.next();
+            if (!present.contains(entry.getKey())) {
+                entry.getValue().removeCreature(entry.getKey());
+                iter.remove();
+            }
+        }
+        present.clear();
+    }
+
+    /**
+     * Update the tile of a single creature
+     *
+     * @param creature the creature
+     */
+    public void update(CreatureControl creature) {
+        Point p = creature.getCreatureCoordinates();
+        TileData tile = (p != null ? mapData.getTile(p) : null);
+        TileData previousTile = (tile != null ? creatureTiles.put(creature, tile) : creatureTiles.remove(creature));
+        if (previousTile != tile) {
+            if (previousTile != null) {
+                previousTile.removeCreature(creature);
+            }
+            if (tile != null) {
+                tile.addCreature(creature);
+            }
+        }
+    }
+
+    /**
+     * Remove a creature from the index
+     *
+     * @param creature the creature
+     */
+    public void remove(CreatureControl creature) {
+        TileData tile = creatureTiles.remove(creature);
+        if (tile != null) {
+            tile.removeCreature(creature);
+        }
+    }
+
+    /**
+     * Get the creatures inside a rectangle
+     *
+     * @param minX minimum x, inclusive
+     * @param minY minimum y, inclusive
+     * @param maxX maximum x, inclusive
+     * @param maxY maximum y, inclusive
+     * @return the creatures in the area
+     */
+    public List<CreatureControl> getCreatures(int minX, int minY, int maxX, int maxY) {
+        List<CreatureControl> creatures = new ArrayList<>();
+        for (int y = Math.max(0, minY); y <= Math.min(mapData.getHeight() - 1, maxY); y++) {
+            for (int x = Math.max(0, minX); x <= Math.min(mapData.getWidth() - 1, maxX); x++) {
+                creatures.addAll(mapData.getTile(x, y).getCreatures());
+            }
+        }
+        return creatures;
+    }
+
+    /**
+     * Get the creatures within a radius
+     *
+     * @param center the center tile
+     * @param radius the radius, in tiles
+     * @return the creatures in the area
+     */
+    public List<CreatureControl> getCreatures(Point center, int radius) {
+        List<CreatureControl> creatures = new ArrayList<>();
+        int radiusSquared = radius * radius;
+        for (int y = Math.max(0, center.y - radius); y <= Math.min(mapData.getHeight() - 1, center.y + radius); y++) {
+            for (int x = Math.max(0, center.x - radius); x <= Math.min(mapData.getWidth() - 1, center.x + radius); x++) {
+                int dx = x - center.x;
+                int dy = y - center.y;
+                if (dx * dx + dy * dy <= radiusSquared) {
+                    creatures.addAll(mapData.getTile(x, y).getCreatures());
+                }
+            }
+        }
+        return creatures;
+    }
+
+    /**
+     * Get the number of creatures in the index
+     *
+     * @return the creature count
+     */
+    public int size() {
+        return creatureTiles.size();
+    }
+
+}
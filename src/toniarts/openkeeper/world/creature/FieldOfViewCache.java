@@ -0,0 +1,251 @@
+/*
+ * Copyright (C) 2014-2018 OpenKeeper
+ *
+ * OpenKeeper is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenKeeper is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenKeeper.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package toniarts.openkeeper.world.creature;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import toniarts.openkeeper.tools.convert.map.Terrain;
+import toniarts.openkeeper.world.MapData;
+import toniarts.openkeeper.world.TileData;
+import toniarts.openkeeper.world.listener.TileChangeListener;
+
+/**
+ * Senses of the creatures, the tiles a creature can see or hear from a tile.
+ * Sight is symmetric shadowcasting over the solid tiles, hearing carries
+ * around the corners. The results are cached per tile and per sense
+ * distances, and invalidated around the changed tiles.<br>
+ * Thread safe without locking, the senses of many creatures are resolved in
+ * parallel. Each thread has its own work buffers.
+ *
+ * @author Toni Helenius <helenius.toni@gmail.com>
+ */
+public class FieldOfViewCache implements TileChangeListener {
+
+    /**
+     * Quadrant transformations, for rows going north, east, south and west
+     */
+    private static final int[][] QUADRANTS = {
+        {1, 0, 0, -1},
+        {0, 1, 1, 0},
+        {1, 0, 0, 1},
+        {0, -1, 1, 0}
+    };
+    private static final int[] HEARING_X = {1, -1, 0, 0};
+    private static final int[] HEARING_Y = {0, 0, 1, -1};
+
+    private final MapData mapData;
+    private final int width;
+    private final int height;
+    private final Map<Integer, AtomicReferenceArray<int[]>> fields = new ConcurrentHashMap<>();
+    private final AtomicInteger version = new AtomicInteger();
+    private final ThreadLocal<Scratch> scratches;
+
+    public FieldOfViewCache(MapData mapData) {
+        this.mapData = mapData;
+        this.width = mapData.getWidth();
+        this.height = mapData.getHeight();
+        this.scratches = ThreadLocal.withInitial(() -> new Scratch(width * height));
+    }
+
+    @Override
+    public void onTileChange(int x, int y) {
+
+        // Bump the version first, the results being calculated right now are then not stored
+        version.incrementAndGet();
+        for (Map.Entry<Integer, AtomicReferenceArray<int[]>> entry : fields.entrySet()) {
+            int range = Math.max(entry.getKey() >> 16, entry.getKey() & 0xFFFF);
+            AtomicReferenceArray<int[]> field = entry.getValue();
+            for (int ny = Math.max(0, y - range); ny <= Math.min(height - 1, y + range); ny++) {
+                for (int nx = Math.max(0, x - range); nx <= Math.min(width - 1, x + range); nx++) {
+                    field.set(ny * width + nx, null);
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the tiles sensed from a tile. The returned array is shared, do not
+     * modify it.
+     *
+     * @param tile the tile the creature is on
+     * @param distanceCanSee the sight distance, in tiles
+     * @param distanceCanHear the hearing distance, in tiles
+     * @return tile indices of the sensed tiles, includes the tile itself
+     */
+    public int[] getSensedTiles(TileData tile, int distanceCanSee, int distanceCanHear) {
+        distanceCanSee = Math.max(0, distanceCanSee);
+        distanceCanHear = Math.max(0, distanceCanHear);
+        int key = (distanceCanSee << 16) | distanceCanHear;
+        AtomicReferenceArray<int[]> field = fields.computeIfAbsent(key, (k) -> new AtomicReferenceArray<>(width * height));
+
+        int[] result = field.get(tile.getIndex());
+        if (result == null) {
+            int fieldVersion = version.get();
+
+            // Sight and hearing overlap, the visit stamps keep the tiles unique
+            Scratch scratch = scratches.get();
+            scratch.visitStamp++;
+            scratch.tileCount = 0;
+            addTile(scratch, tile.getX(), tile.getY());
+            if (!isBlocking(tile.getX(), tile.getY())) {
+                castSight(scratch, tile.getX(), tile.getY(), distanceCanSee);
+                floodHearing(scratch, tile.getX(), tile.getY(), distanceCanHear);
+            }
+            result = new int[scratch.tileCount];
+            System.arraycopy(scratch.tiles, 0, result, 0, scratch.tileCount);
+
+            // If the map changed meanwhile, the result may be stale, it is still fine to return it for this tick
+            field.set(tile.getIndex(), result);
+            if (version.get() != fieldVersion) {
+                field.compareAndSet(tile.getIndex(), result, null);
+            }
+        }
+        return result;
+    }
+
+    private void castSight(Scratch scratch, int originX, int originY, int radius) {
+        for (int[] quadrant : QUADRANTS) {
+            scanRow(scratch, originX, originY, radius, quadrant, 1, -1.0, 1.0);
+        }
+    }
+
+    /**
+     * Scan a row of a quadrant, recursively continues to the next rows
+     */
+    private void scanRow(Scratch scratch, int originX, int originY, int radius, int[] quadrant, int depth, double startSlope, double endSlope) {
+        if (depth > radius) {
+            return;
+        }
+
+        int minCol = (int) Math.floor(depth * startSlope + 0.5);
+        int maxCol = (int) Math.ceil(depth * endSlope - 0.5);
+        Boolean previousBlocking = null;
+        for (int col = minCol; col <= maxCol; col++) {
+            int x = originX + quadrant[0] * col + quadrant[1] * depth;
+            int y = originY + quadrant[2] * col + quadrant[3] * depth;
+            boolean blocking = isBlocking(x, y);
+            boolean symmetric = (col >= depth * startSlope && col <= depth * endSlope);
+            if ((blocking || symmetric) && col * col + depth * depth <= radius * radius) {
+                addTile(scratch, x, y);
+            }
+            if (previousBlocking != null) {
+                if (previousBlocking && !blocking) {
+                    startSlope = (2.0 * col - 1) / (2.0 * depth);
+                } else if (!previousBlocking && blocking) {
+                    scanRow(scratch, originX, originY, radius, quadrant, depth + 1, startSlope, (2.0 * col - 1) / (2.0 * depth));
+                }
+            }
+            previousBlocking = blocking;
+        }
+        if (previousBlocking != null && !previousBlocking) {
+            scanRow(scratch, originX, originY, radius, quadrant, depth + 1, startSlope, endSlope);
+        }
+    }
+
+    /**
+     * Sounds travel along the open tiles
+     */
+    private void floodHearing(Scratch scratch, int originX, int originY, int range) {
+        int[] queue = ensureCapacity(scratch.queue, 2);
+        int[] heard = scratch.heard;
+        int visitStamp = scratch.visitStamp;
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = originY * width + originX;
+        queue[tail++] = 0;
+        heard[originY * width + originX] = visitStamp;
+        while (head < tail) {
+            int index = queue[head++];
+            int distance = queue[head++];
+            if (distance == range) {
+                continue;
+            }
+            int x = index % width;
+            int y = index / width;
+            for (int i = 0; i < 4; i++) {
+                int nx = x + HEARING_X[i];
+                int ny = y + HEARING_Y[i];
+                if (isBlocking(nx, ny) || heard[ny * width + nx] == visitStamp) {
+                    continue;
+                }
+                heard[ny * width + nx] = visitStamp;
+                addTile(scratch, nx, ny);
+                queue = ensureCapacity(queue, tail + 2);
+                queue[tail++] = ny * width + nx;
+                queue[tail++] = distance + 1;
+            }
+        }
+        scratch.queue = queue;
+    }
+
+    private boolean isBlocking(int x, int y) {
+        if (x < 0 || y < 0 || x >= width || y >= height) {
+            return true;
+        }
+        return mapData.getTile(x, y).getTerrain().getFlags().contains(Terrain.TerrainFlag.SOLID);
+    }
+
+    /**
+     * Adds the tile to the result if it is not already there
+     *
+     * @return true if the tile was added
+     */
+    private boolean addTile(Scratch scratch, int x, int y) {
+        if (x < 0 || y < 0 || x >= width || y >= height) {
+            return false;
+        }
+        int index = y * width + x;
+        if (scratch.visited[index] == scratch.visitStamp) {
+            return false;
+        }
+        scratch.visited[index] = scratch.visitStamp;
+        scratch.tiles = ensureCapacity(scratch.tiles, scratch.tileCount + 1);
+        scratch.tiles[scratch.tileCount++] = index;
+        return true;
+    }
+
+    private static int[] ensureCapacity(int[] array, int capacity) {
+        if (array.length >= capacity) {
+            return array;
+        }
+        int[] result = new int[Math.max(capacity, array.length * 2)];
+        System.arraycopy(array, 0, result, 0, array.length);
+        return result;
+    }
+
+    /**
+     * The work buffers of a single thread
+     */
+    private static final class Scratch {
+
+        private final int[] visited;
+        private final int[] heard;
+        private int visitStamp = 0;
+        private int[] tiles = new int[64];
+        private int tileCount;
+        private int[] queue = new int[64];
+
+        public Scratch(int size) {
+            visited = new int[size];
+            heard = new int[size];
+        }
+
+    }
+
+}
@@ -228,6 +228,16 @@ public class Party implements PathFindable {
         return true;
     }
 
+    @Override
+    public boolean hasDefaultCosts() {
+        return !isWorkersAvailable(); // We can tunnel our way through, the doors are taken care of by canSmashDoors()
+    }
+
+    @Override
+    public boolean canSmashDoors() {
+        return true;
+    }
+
     @Override
     public Float getCost(TileData from, TileData to, WorldState worldState) {
         Float cost = PathFindable.super.getCost(from, to, worldState);
@@ -78,9 +78,15 @@ public abstract class AbstractCreatureSteeringControl extends HighlightControl i
             steeringReady = false;
             getSpatial().setLocalTranslation(position.x, MapLoader.FLOOR_HEIGHT, position.y);
             getSpatial().setLocalRotation(getSpatial().getLocalRotation().fromAngles(0, -orientation, 0));
+            onMoved();
         }
     }
 
+    /**
+     * Called when the spatial has been moved
+     */
+    protected abstract void onMoved();
+
     public void processSteeringTick(float tpf, Application app) {
         if (steeringBehavior != null && steeringBehavior.isEnabled()) {
 
@@ -199,6 +199,7 @@ public class DoorControl extends HighlightControl implements IInteractiveControl
             } else {
                 lockDoor();
             }
+            worldState.updateDoor(tile.getLocation());
             return true;
         }
         return false;
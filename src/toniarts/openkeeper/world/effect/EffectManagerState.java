@@ -20,7 +20,9 @@ import com.jme3.app.Application;
 import com.jme3.app.state.AbstractAppState;
 import com.jme3.app.state.AppStateManager;
 import com.jme3.asset.AssetManager;
+import com.jme3.bounding.BoundingVolume;
 import com.jme3.math.Vector3f;
+import com.jme3.renderer.Camera;
 import com.jme3.scene.Node;
 import java.util.ArrayList;
 import java.util.Iterator;
@@ -31,6 +33,9 @@ import toniarts.openkeeper.world.WorldState;
 
 /**
  * An app state to manage ALL the effects in the world. Mainly their lifetime.
+ * The effects are also scheduled by their distance to the camera, distant
+ * effects are updated at a lower rate and off-screen looping effects are
+ * paused.
  *
  * @author ArchDemon
  * @author Toni Helenius <helenius.toni@gmail.com>
@@ -39,21 +44,55 @@ public class EffectManagerState extends AbstractAppState {
     
     public static int ROOM_CLAIM_ID = 2;
 
+    /**
+     * Squared distance from the camera after which the effects are distant
+     */
+    private static final float FAR_DISTANCE_SQUARED = 20 * 20;
+    /**
+     * Update interval of the distant and the off-screen effects
+     */
+    private static final float FAR_UPDATE_INTERVAL = 0.25f;
+
+    /**
+     * Level of detail of an effect, the more detailed effects get the
+     * particle budget first
+     */
+    public enum EffectLod {
+
+        /**
+         * Visible and near the camera, updated every frame
+         */
+        NEAR,
+        /**
+         * Visible but far away, updated at a lower rate
+         */
+        FAR,
+        /**
+         * Off-screen, looping effects are paused and the others are updated
+         * at a lower rate to let them finish
+         */
+        HIDDEN
+    }
+
     private final KwdFile kwdFile;
     private final AssetManager assetManager;
     private final List<VisualEffect> activeEffects = new ArrayList<>();
+    private final EffectPool effectPool;
     private AppStateManager stateManager;
+    private Camera camera;
     private static final Logger logger = Logger.getLogger(EffectManagerState.class.getName());
 
     public EffectManagerState(KwdFile kwdFile, AssetManager assetManager) {
         this.kwdFile = kwdFile;
         this.assetManager = assetManager;
+        this.effectPool = new EffectPool(assetManager);
     }
 
     @Override
     public void initialize(AppStateManager stateManager, Application app) {
         super.initialize(stateManager, app);
         this.stateManager = stateManager;
+        this.camera = app.getCamera();
     }
 
     @Override
@@ -63,12 +102,56 @@ public class EffectManagerState extends AbstractAppState {
         // Maintain the effects (on every frame?)
         while (iterator.hasNext()) {
             VisualEffect visualEffect = iterator.next();
-            if (!visualEffect.update(tpf)) {
+            if (!update(visualEffect, tpf)) {
                 iterator.remove();
             }
         }
     }
 
+    private boolean update(VisualEffect visualEffect, float tpf) {
+        EffectLod lod = getLod(visualEffect);
+        visualEffect.setLod(lod);
+        if (lod == EffectLod.NEAR) {
+            visualEffect.resetPendingTime();
+            return visualEffect.update(tpf);
+        }
+        if (lod == EffectLod.HIDDEN && visualEffect.isInfinite()) {
+            return true;
+        }
+
+        // Distant, drive the emitters ourselves every once in a while
+        float time = visualEffect.addPendingTime(tpf);
+        if (time < FAR_UPDATE_INTERVAL) {
+            return true;
+        }
+        visualEffect.resetPendingTime();
+        visualEffect.updateEmitters(time);
+        return visualEffect.update(time);
+    }
+
+    private EffectLod getLod(VisualEffect visualEffect) {
+        if (camera == null) {
+            return EffectLod.NEAR;
+        }
+        Node node = visualEffect.getEffectNode();
+        BoundingVolume bound = node.getWorldBound();
+        if (bound != null) {
+
+            // The camera remembers the planes the last volume was fully inside of, test against all of them
+            int planeState = camera.getPlaneState();
+            camera.setPlaneState(0);
+            Camera.FrustumIntersect intersect = camera.contains(bound);
+            camera.setPlaneState(planeState);
+            if (intersect == Camera.FrustumIntersect.Outside) {
+                return EffectLod.HIDDEN;
+            }
+        }
+        if (camera.getLocation().distanceSquared(node.getWorldTranslation()) > FAR_DISTANCE_SQUARED) {
+            return EffectLod.FAR;
+        }
+        return EffectLod.NEAR;
+    }
+
     /**
      * Loads up an particle effect
      *
@@ -122,6 +205,16 @@ public class EffectManagerState extends AbstractAppState {
         return assetManager;
     }
 
+    /**
+     * Get the pool of the effect particle emitters, it also has the particle
+     * limits for the effects
+     *
+     * @return the effect pool
+     */
+    public EffectPool getEffectPool() {
+        return effectPool;
+    }
+
     public KwdFile getKwdFile() {
         return kwdFile;
     }
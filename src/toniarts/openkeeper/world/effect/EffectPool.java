@@ -0,0 +1,222 @@
+/*
+ * Copyright (C) 2014-2018 OpenKeeper
+ *
+ * OpenKeeper is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenKeeper is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenKeeper.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package toniarts.openkeeper.world.effect;
+
+import com.jme3.asset.AssetManager;
+import com.jme3.effect.ParticleEmitter;
+import com.jme3.effect.ParticleMesh;
+import com.jme3.material.Material;
+import com.jme3.math.ColorRGBA;
+import com.jme3.math.Vector3f;
+import java.awt.Color;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import toniarts.openkeeper.tools.convert.map.ArtResource;
+import toniarts.openkeeper.tools.convert.map.Effect;
+import toniarts.openkeeper.tools.convert.map.EffectElement;
+import toniarts.openkeeper.utils.AssetUtils;
+
+/**
+ * Pool of the particle emitters of the effect elements. The emitters are
+ * configured by the effect and the element, so they are pooled per effect &
+ * element pair and reused as is after their particles have died.<br>
+ * Also limits the number of live particles per effect and in total, the
+ * effects spawned over the limits don't get their particle elements. The
+ * less detailed effects only get a part of the total budget.
+ *
+ * @author Toni Helenius <helenius.toni@gmail.com>
+ */
+public class EffectPool {
+
+    private static final int DEFAULT_PARTICLE_LIMIT = 2000;
+    private static final int DEFAULT_PARTICLE_BUDGET = 10000;
+    private static final int DEFAULT_MAX_POOLED = 16;
+
+    private final AssetManager assetManager;
+    private final Map<Long, Deque<ParticleEmitter>> emitters = new HashMap<>();
+    private final Map<Integer, Integer> liveParticles = new HashMap<>();
+    private final Map<Integer, Integer> particleLimits = new HashMap<>();
+    private int defaultParticleLimit = DEFAULT_PARTICLE_LIMIT;
+    private int particleBudget = DEFAULT_PARTICLE_BUDGET;
+    private int totalParticles = 0;
+    private int maxPooled = DEFAULT_MAX_POOLED;
+
+    public EffectPool(AssetManager assetManager) {
+        this.assetManager = assetManager;
+    }
+
+    /**
+     * Get a particle emitter for the effect element, reused from the pool if
+     * possible
+     *
+     * @param effect the effect
+     * @param element the effect element
+     * @param lod level of detail of the effect, the near effects get the
+     * whole budget, the far ones half of it and the hidden ones a quarter
+     * @return the emitter, {@code null} if the effect is over its particle
+     * limit or the budget is used
+     */
+    public ParticleEmitter obtainEmitter(Effect effect, EffectElement element, EffectManagerState.EffectLod lod) {
+        int particles = liveParticles.getOrDefault(effect.getEffectId(), 0);
+        if (particles + effect.getElementsPerTurn() > getParticleLimit(effect.getEffectId())
+                || totalParticles + effect.getElementsPerTurn() > (particleBudget >> lod.ordinal())) {
+            return null;
+        }
+
+        Deque<ParticleEmitter> pooled = emitters.get(getKey(effect, element));
+        ParticleEmitter emitter = (pooled != null ? pooled.pollFirst() : null);
+        if (emitter == null) {
+            emitter = createEmitter(effect, element);
+        }
+        liveParticles.put(effect.getEffectId(), particles + emitter.getMaxNumParticles());
+        totalParticles += emitter.getMaxNumParticles();
+        return emitter;
+    }
+
+    /**
+     * Return an emitter to the pool. The emitter is detached from the scene.
+     *
+     * @param effect the effect
+     * @param element the effect element
+     * @param emitter the emitter got from this pool
+     */
+    public void releaseEmitter(Effect effect, EffectElement element, ParticleEmitter emitter) {
+        emitter.removeFromParent();
+        emitter.killAllParticles();
+        emitter.setEnabled(true);
+        totalParticles = Math.max(0, totalParticles - emitter.getMaxNumParticles());
+        liveParticles.computeIfPresent(effect.getEffectId(), (id, particles) -> {
+            int remaining = particles - emitter.getMaxNumParticles();
+            return (remaining > 0 ? remaining : null);
+        });
+
+        Deque<ParticleEmitter> pooled = emitters.get(getKey(effect, element));
+        if (pooled == null) {
+            pooled = new ArrayDeque<>();
+            emitters.put(getKey(effect, element), pooled);
+        }
+        if (pooled.size() < maxPooled) {
+            emitter.setLocalTranslation(Vector3f.ZERO);
+            pooled.addFirst(emitter);
+        }
+    }
+
+    /**
+     * Set the maximum number of live particles for an effect
+     *
+     * @param effectId the effect ID
+     * @param limit the maximum number of live particles
+     */
+    public void setParticleLimit(int effectId, int limit) {
+        particleLimits.put(effectId, limit);
+    }
+
+    /**
+     * Set the maximum number of live particles for the effects that don't
+     * have their own limit
+     *
+     * @param limit the maximum number of live particles
+     */
+    public void setDefaultParticleLimit(int limit) {
+        defaultParticleLimit = limit;
+    }
+
+    /**
+     * Set the maximum number of free emitters kept per effect element
+     *
+     * @param maxPooled the maximum number of pooled emitters
+     */
+    public void setMaxPooled(int maxPooled) {
+        this.maxPooled = maxPooled;
+    }
+
+    /**
+     * Set the maximum number of live particles of all the effects
+     *
+     * @param particleBudget the maximum number of live particles
+     */
+    public void setParticleBudget(int particleBudget) {
+        this.particleBudget = particleBudget;
+    }
+
+    private int getParticleLimit(int effectId) {
+        return particleLimits.getOrDefault(effectId, defaultParticleLimit);
+    }
+
+    /**
+     * Drop all the pooled emitters
+     */
+    public void clear() {
+        emitters.clear();
+        liveParticles.clear();
+        totalParticles = 0;
+    }
+
+    private static long getKey(Effect effect, EffectElement element) {
+        return ((long) effect.getEffectId() << 32) | (element.getEffectElementId() & 0xFFFFFFFFL);
+    }
+
+    private ParticleEmitter createEmitter(Effect effect, EffectElement element) {
+        ArtResource resource = element.getArtResource();
+        ParticleEmitter emitter = new ParticleEmitter(element.getName(),
+                ParticleMesh.Type.Triangle,
+                effect.getElementsPerTurn());
+        emitter.setParticlesPerSec(0);
+        Material material = AssetUtils.createParticleMaterial(resource, assetManager);
+        emitter.setMaterial(material);
+        emitter.setImagesX(Math.max(1, resource.getData("frames")));
+        emitter.setImagesY(1);
+        emitter.setSelectRandomImage(resource.getFlags().contains(ArtResource.ArtResourceFlag.RANDOM_START_FRAME));
+        emitter.setInWorldSpace(false);
+
+        Color color = element.getColor();
+        float alpha = 1f;
+        if (element.getFlags().contains(EffectElement.EffectElementFlag.FADE)) {
+            alpha -= element.getFadePercentage() / 100;
+        }
+
+        emitter.setStartColor(new ColorRGBA(color.getRed() / 255f, color.getGreen() / 255f, color.getBlue() / 255f, 1f));
+        emitter.setEndColor(new ColorRGBA(color.getRed() / 255f, color.getGreen() / 255f, color.getBlue() / 255f, alpha));
+        //
+        Vector3f velocity = EffectControl.calculateVelocity(element);
+        emitter.getParticleInfluencer().setInitialVelocity(velocity);
+        //
+        float scaleRatio = element.getScaleRatio() == 0 ? 1 : element.getScaleRatio();
+        if (element.getFlags().contains(EffectElement.EffectElementFlag.SHRINK)) {
+            emitter.setEndSize(element.getMaxScale() * scaleRatio);
+            emitter.setStartSize(element.getMinScale() * scaleRatio);
+        } else {
+            emitter.setStartSize(element.getMaxScale() * scaleRatio);
+            emitter.setEndSize(element.getMinScale() * scaleRatio);
+        }
+        //
+        emitter.setFacingVelocity(element.getFlags().contains(EffectElement.EffectElementFlag.ROTATE_TO_MOVEMENT_DIRECTION));
+        //
+        emitter.setGravity(0, element.getMass() * element.getAirFriction(), 0);
+        emitter.setLowLife(element.getMinHp() / 10f);
+        emitter.setHighLife(element.getMaxHp() / 10f);
+        //
+        float delta = Math.max((element.getMaxSpeedXy() - element.getMinSpeedXy()) / (element.getMaxSpeedXy() + 1),
+                (element.getMaxSpeedYz() - element.getMinSpeedYz()) / (element.getMaxSpeedYz() + 1));
+        emitter.getParticleInfluencer().setVelocityVariation(delta);
+
+        return emitter;
+    }
+
+}
@@ -19,14 +19,12 @@ package toniarts.openkeeper.world.effect;
 import com.jme3.animation.AnimControl;
 import com.jme3.asset.AssetManager;
 import com.jme3.effect.ParticleEmitter;
-import com.jme3.effect.ParticleMesh;
 import com.jme3.light.PointLight;
 import com.jme3.material.Material;
 import com.jme3.math.ColorRGBA;
 import com.jme3.math.Vector3f;
 import com.jme3.scene.Node;
 import com.jme3.scene.Spatial;
-import java.awt.Color;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -56,7 +54,6 @@ import toniarts.openkeeper.world.WorldState;
  * <ul>
  * <li>We probably need our own particle emitter, the stock wont probably do..
  * Just pass the Effect & EffectElement to our custom one and boom</li>
- * <li>Maybe cache the emitters?</li>
  * </ul>
  *
  * @author Toni Helenius <helenius.toni@gmail.com>
@@ -72,6 +69,8 @@ public class VisualEffect {
     private final EffectManagerState effectManagerState;
     private boolean infinite;
     private PointLight light;
+    private EffectManagerState.EffectLod lod = EffectManagerState.EffectLod.NEAR;
+    private float pendingTime = 0;
     private static final Logger logger = Logger.getLogger(VisualEffect.class.getName());
 
     public VisualEffect(EffectManagerState effectManagerState, Node node, Effect effect) {
@@ -214,6 +213,7 @@ public class VisualEffect {
 
     private void addEffect(Integer id, Vector3f location) {
         VisualEffect visualEffect = new VisualEffect(effectManagerState, effectNode, location, kwdFile.getEffect(id), false);
+        visualEffect.setLod(lod);
         effects.add(visualEffect);
         effectNode.attachChild(visualEffect.effectNode);
     }
@@ -225,10 +225,14 @@ public class VisualEffect {
             if (location != null) {
                 emitter.setLocalTranslation(location);
             }
-            effectElements.put(effectElement, emitter);
+            Spatial previous = effectElements.put(effectElement, emitter);
+            if (previous instanceof ParticleEmitter) {
+                effectManagerState.getEffectPool().releaseEmitter(effect, effectElement, (ParticleEmitter) previous);
+            }
             effectNode.attachChild(emitter);
             if (emitter instanceof ParticleEmitter) {
                 ((ParticleEmitter) emitter).emitAllParticles();
+                ((ParticleEmitter) emitter).setEnabled(lod == EffectManagerState.EffectLod.NEAR);
             }
         }
 
@@ -254,51 +258,8 @@ public class VisualEffect {
         switch (resource.getType()) {
             case ALPHA:
             case ADDITIVE_ALPHA:
-            case SPRITE: {
-                ParticleEmitter emitter = new ParticleEmitter(element.getName(),
-                        ParticleMesh.Type.Triangle,
-                        effect.getElementsPerTurn());
-                emitter.setParticlesPerSec(0);
-                Material material = AssetUtils.createParticleMaterial(resource, assetManager);
-                emitter.setMaterial(material);
-                emitter.setImagesX(Math.max(1, resource.getData("frames")));
-                emitter.setImagesY(1);
-                emitter.setSelectRandomImage(resource.getFlags().contains(ArtResource.ArtResourceFlag.RANDOM_START_FRAME));
-                emitter.setInWorldSpace(false);
-
-                Color color = element.getColor();
-                float alpha = 1f;
-                if (element.getFlags().contains(EffectElement.EffectElementFlag.FADE)) {
-                    alpha -= element.getFadePercentage() / 100;
-                }
-
-                emitter.setStartColor(new ColorRGBA(color.getRed() / 255f, color.getGreen() / 255f, color.getBlue() / 255f, 1f));
-                emitter.setEndColor(new ColorRGBA(color.getRed() / 255f, color.getGreen() / 255f, color.getBlue() / 255f, alpha));
-                //
-                Vector3f velocity = EffectControl.calculateVelocity(element);
-                emitter.getParticleInfluencer().setInitialVelocity(velocity);
-                //
-                float scaleRatio = element.getScaleRatio() == 0 ? 1 : element.getScaleRatio();
-                if (element.getFlags().contains(EffectElement.EffectElementFlag.SHRINK)) {
-                    emitter.setEndSize(element.getMaxScale() * scaleRatio);
-                    emitter.setStartSize(element.getMinScale() * scaleRatio);
-                } else {
-                    emitter.setStartSize(element.getMaxScale() * scaleRatio);
-                    emitter.setEndSize(element.getMinScale() * scaleRatio);
-                }
-                //
-                emitter.setFacingVelocity(element.getFlags().contains(EffectElement.EffectElementFlag.ROTATE_TO_MOVEMENT_DIRECTION));
-                //
-                emitter.setGravity(0, element.getMass() * element.getAirFriction(), 0);
-                emitter.setLowLife(element.getMinHp() / 10f);
-                emitter.setHighLife(element.getMaxHp() / 10f);
-                //
-                float delta = Math.max((element.getMaxSpeedXy() - element.getMinSpeedXy()) / (element.getMaxSpeedXy() + 1),
-                        (element.getMaxSpeedYz() - element.getMinSpeedYz()) / (element.getMaxSpeedYz() + 1));
-                emitter.getParticleInfluencer().setVelocityVariation(delta);
-
-                return emitter;
-            }
+            case SPRITE:
+                return effectManagerState.getEffectPool().obtainEmitter(effect, element, lod);
 
             case MESH:
             case ANIMATING_MESH:
@@ -413,7 +374,7 @@ public class VisualEffect {
                 if (((ParticleEmitter)entry.getValue()).getNumVisibleParticles() == 0) {
 
                     // Kill
-                    entry.getValue().removeFromParent();
+                    effectManagerState.getEffectPool().releaseEmitter(effect, entry.getKey(), (ParticleEmitter) entry.getValue());
                     iter.remove();
 
                     // Attach on death element
@@ -458,7 +419,76 @@ public class VisualEffect {
         return true;
     }
 
+    /**
+     * Set the level of detail of this effect and its child effects. Only the
+     * emitters of the near effects update themselves, the others are driven
+     * by {@link #updateEmitters(float)}.
+     *
+     * @param lod the level of detail
+     */
+    public void setLod(EffectManagerState.EffectLod lod) {
+        if (this.lod == lod) {
+            return;
+        }
+        this.lod = lod;
+        for (Spatial spatial : effectElements.values()) {
+            if (spatial instanceof ParticleEmitter) {
+                ((ParticleEmitter) spatial).setEnabled(lod == EffectManagerState.EffectLod.NEAR);
+            }
+        }
+        for (VisualEffect visualEffect : effects) {
+            visualEffect.setLod(lod);
+        }
+    }
+
+    /**
+     * Update the particle emitters of this effect and its child effects
+     * manually, for the effects that are not near
+     *
+     * @param tpf the time since the last update
+     */
+    public void updateEmitters(float tpf) {
+        for (Spatial spatial : effectElements.values()) {
+            if (spatial instanceof ParticleEmitter) {
+                ParticleEmitter emitter = (ParticleEmitter) spatial;
+                emitter.setEnabled(true);
+                emitter.updateFromControl(tpf);
+                emitter.setEnabled(false);
+            }
+        }
+        for (VisualEffect visualEffect : effects) {
+            visualEffect.updateEmitters(tpf);
+        }
+    }
+
+    float addPendingTime(float tpf) {
+        pendingTime += tpf;
+        return pendingTime;
+    }
+
+    void resetPendingTime() {
+        pendingTime = 0;
+    }
+
+    public boolean isInfinite() {
+        return infinite;
+    }
+
+    public Node getEffectNode() {
+        return effectNode;
+    }
+
     public void removeEffect() {
+
+        // Return the emitters to the pool
+        for (Entry<EffectElement, Spatial> entry : effectElements.entrySet()) {
+            if (entry.getValue() instanceof ParticleEmitter) {
+                effectManagerState.getEffectPool().releaseEmitter(effect, entry.getKey(), (ParticleEmitter) entry.getValue());
+            }
+        }
+        for (VisualEffect visualEffect : effects) {
+            visualEffect.removeEffect();
+        }
         effects.clear();
         effectElements.clear();
         infinite = false;
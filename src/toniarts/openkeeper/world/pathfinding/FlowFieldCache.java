@@ -0,0 +1,355 @@
+/*
+ * Copyright (C) 2014-2018 OpenKeeper
+ *
+ * OpenKeeper is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenKeeper is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenKeeper.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package toniarts.openkeeper.world.pathfinding;
+
+import com.badlogic.gdx.ai.pfa.DefaultGraphPath;
+import com.badlogic.gdx.ai.pfa.GraphPath;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import toniarts.openkeeper.world.MapData;
+import toniarts.openkeeper.world.TileData;
+import toniarts.openkeeper.world.listener.TileChangeListener;
+
+/**
+ * Flow fields for shared goals. When several entities head for the same tile,
+ * like a hero party marching to the dungeon heart, a single Dijkstra pass from
+ * the goal gives the distance to it from every tile. The paths are then just
+ * read from the field, no search needed.<br>
+ * A field is only built once the same goal has been requested a few times.
+ * Tile changes that leave the passability intact are ignored, otherwise only
+ * the fields that reach the changed tile are dropped.
+ *
+ * @author Toni Helenius <helenius.toni@gmail.com>
+ */
+public class FlowFieldCache implements TileChangeListener {
+
+    private static final int MAX_FIELDS = 16;
+    private static final int MAX_TRACKED_GOALS = 64;
+    private static final int REQUESTS_FOR_FIELD = 3;
+
+    /**
+     * A tile change may change the room connections of its neighbours, and
+     * these are reached from their neighbours in turn
+     */
+    private static final int CHANGE_RADIUS = 2;
+    private static final int[] DIAGONAL_REQUIREMENTS = {
+        0, 0, 0, 0,
+        (1 << MapConnectionTable.NORTH) | (1 << MapConnectionTable.EAST), // North-East
+        (1 << MapConnectionTable.NORTH) | (1 << MapConnectionTable.WEST), // North-West
+        (1 << MapConnectionTable.SOUTH) | (1 << MapConnectionTable.EAST), // South-East
+        (1 << MapConnectionTable.SOUTH) | (1 << MapConnectionTable.WEST) // South-West
+    };
+
+    private final MapConnectionTable connectionTable;
+    private final MapData mapData;
+    private final int width;
+    private final int height;
+    private final Map<FieldKey, FlowField> fields = new LinkedHashMap<FieldKey, FlowField>(MAX_FIELDS, 0.75f, true) {
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<FieldKey, FlowField> eldest) {
+            return size() > MAX_FIELDS;
+        }
+    };
+    private final Map<FieldKey, Integer> requests = new LinkedHashMap<FieldKey, Integer>(MAX_TRACKED_GOALS, 0.75f, true) {
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<FieldKey, Integer> eldest) {
+            return size() > MAX_TRACKED_GOALS;
+        }
+    };
+    private final int[] passabilityVersions;
+    private int version = 0;
+
+    public FlowFieldCache(MapConnectionTable connectionTable) {
+        this.connectionTable = connectionTable;
+        this.mapData = connectionTable.getMapData();
+        this.width = connectionTable.getWidth();
+        this.height = connectionTable.getHeight();
+        this.passabilityVersions = new int[width * height];
+        for (int i = 0; i < passabilityVersions.length; i++) {
+            passabilityVersions[i] = connectionTable.getPassabilityVersion(i);
+        }
+    }
+
+    @Override
+    public synchronized void onTileChange(int x, int y) {
+
+        // Selecting, flashing etc. don't change the movement, the connection table is already up to date
+        boolean changed = false;
+        for (int ny = Math.max(0, y - 1); ny <= Math.min(height - 1, y + 1); ny++) {
+            for (int nx = Math.max(0, x - 1); nx <= Math.min(width - 1, x + 1); nx++) {
+                int index = ny * width + nx;
+                int passabilityVersion = connectionTable.getPassabilityVersion(index);
+                if (passabilityVersions[index] != passabilityVersion) {
+                    passabilityVersions[index] = passabilityVersion;
+                    changed = true;
+                }
+            }
+        }
+        if (!changed) {
+            return;
+        }
+
+        // A field that doesn't reach the changed tiles is not affected, new connections can't lead to it either
+        version++;
+        fields.values().removeIf((field) -> field.reachesArea(x, y, CHANGE_RADIUS, width, height));
+    }
+
+    /**
+     * Find path to a shared goal. Only works for path findables with the
+     * default costs.
+     *
+     * @param start start tile
+     * @param end the goal
+     * @param pathFindable the entity to find path for
+     * @return the path, {@code null} if the goal is not popular enough to
+     * have a field or if the goal is not reachable
+     */
+    public GraphPath<TileData> findPath(TileData start, TileData end, PathFindable pathFindable) {
+        FieldKey key = new FieldKey(end.getIndex(), MovementClass.of(pathFindable), pathFindable.canMoveDiagonally(), pathFindable.getOwnerId(), pathFindable.canSmashDoors());
+        FlowField field;
+        int fieldVersion;
+        synchronized (this) {
+            field = fields.get(key);
+            if (field == null) {
+                int count = requests.merge(key, 1, Integer::sum);
+                if (count < REQUESTS_FOR_FIELD) {
+                    return null;
+                }
+                requests.remove(key);
+            }
+            fieldVersion = version;
+        }
+
+        // Integrate outside the lock, the other searches can go on
+        if (field == null) {
+            field = integrate(end, key, pathFindable);
+            synchronized (this) {
+                if (version == fieldVersion) {
+                    fields.put(key, field);
+                }
+            }
+        }
+        return getPath(field, key, start, pathFindable);
+    }
+
+    private FlowField integrate(TileData goal, FieldKey key, PathFindable pathFindable) {
+        float[] distances = new float[width * height];
+        Arrays.fill(distances, Float.POSITIVE_INFINITY);
+        distances[goal.getIndex()] = 0;
+        IndexHeap heap = new IndexHeap(width + height);
+        heap.add(goal.getIndex(), 0);
+
+        // Dijkstra from the goal, against the direction of movement
+        while (!heap.isEmpty()) {
+            float distance = heap.peekKey();
+            int index = heap.pop();
+            if (distance > distances[index]) {
+                continue; // Stale entry
+            }
+
+            int x = index % width;
+            int y = index / width;
+            int directions = (key.diagonal ? MapConnectionTable.DIRECTIONS : MapConnectionTable.WEST + 1);
+            for (int direction = 0; direction < directions; direction++) {
+                int fromX = x - MapConnectionTable.DIRECTION_X[direction];
+                int fromY = y - MapConnectionTable.DIRECTION_Y[direction];
+                if (fromX < 0 || fromY < 0 || fromX >= width || fromY >= height) {
+                    continue;
+                }
+                float cost = getMoveCost(fromX, fromY, direction, key, pathFindable);
+                if (cost == MapConnectionTable.NO_CONNECTION) {
+                    continue;
+                }
+                int fromIndex = fromY * width + fromX;
+                float newDistance = distance + cost;
+                if (newDistance < distances[fromIndex]) {
+                    distances[fromIndex] = newDistance;
+                    heap.add(fromIndex, newDistance);
+                }
+            }
+        }
+
+        return new FlowField(distances);
+    }
+
+    private GraphPath<TileData> getPath(FlowField field, FieldKey key, TileData start, PathFindable pathFindable) {
+        if (Float.isInfinite(field.distances[start.getIndex()])) {
+            return null;
+        }
+
+        // Just descend the field
+        GraphPath<TileData> path = new DefaultGraphPath<>();
+        TileData tile = start;
+        path.add(tile);
+        while (field.distances[tile.getIndex()] > 0 && path.getCount() <= field.distances.length) {
+            int nextIndex = -1;
+            float nextDistance = Float.POSITIVE_INFINITY;
+            int directions = (key.diagonal ? MapConnectionTable.DIRECTIONS : MapConnectionTable.WEST + 1);
+            for (int direction = 0; direction < directions; direction++) {
+                float cost = getMoveCost(tile.getX(), tile.getY(), direction, key, pathFindable);
+                if (cost == MapConnectionTable.NO_CONNECTION) {
+                    continue;
+                }
+                int index = (tile.getY() + MapConnectionTable.DIRECTION_Y[direction]) * width + tile.getX() + MapConnectionTable.DIRECTION_X[direction];
+                if (cost + field.distances[index] < nextDistance) {
+                    nextDistance = cost + field.distances[index];
+                    nextIndex = index;
+                }
+            }
+            if (nextIndex == -1) {
+                return null;
+            }
+            tile = mapData.getTile(nextIndex % width, nextIndex / width);
+            path.add(tile);
+        }
+
+        // The descent was cut short, don't hand out a path that doesn't reach the goal
+        if (field.distances[tile.getIndex()] != 0) {
+            return null;
+        }
+        return path;
+    }
+
+    /**
+     * Get the cost of moving from a tile to the given direction, follows the
+     * rules of the A* graph
+     *
+     * @see MapIndexedGraph#getConnections(TileData)
+     */
+    private float getMoveCost(int x, int y, int direction, FieldKey key, PathFindable pathFindable) {
+        if (direction > MapConnectionTable.WEST) {
+            for (int straight = MapConnectionTable.NORTH; straight <= MapConnectionTable.WEST; straight++) {
+                if ((DIAGONAL_REQUIREMENTS[direction] & (1 << straight)) != 0
+                        && getDirectMoveCost(x, y, straight, key, pathFindable) == MapConnectionTable.NO_CONNECTION) {
+                    return MapConnectionTable.NO_CONNECTION;
+                }
+            }
+        }
+        return getDirectMoveCost(x, y, direction, key, pathFindable);
+    }
+
+    private float getDirectMoveCost(int x, int y, int direction, FieldKey key, PathFindable pathFindable) {
+        float cost = connectionTable.getCost(x, y, direction, key.movementClass);
+        if (cost == MapConnectionTable.NO_CONNECTION) {
+            return cost;
+        }
+        int toX = x + MapConnectionTable.DIRECTION_X[direction];
+        int toY = y + MapConnectionTable.DIRECTION_Y[direction];
+        if (connectionTable.isDoor(toY * width + toX) && !connectionTable.isDoorPassable(mapData.getTile(toX, toY), pathFindable)) {
+            return MapConnectionTable.NO_CONNECTION;
+        }
+        return cost;
+    }
+
+    /**
+     * Distances to the goal from every tile
+     */
+    private static final class FlowField {
+
+        private final float[] distances;
+
+        public FlowField(float[] distances) {
+            this.distances = distances;
+        }
+
+        /**
+         * Does the field reach any tile in the area
+         *
+         * @param x area center x
+         * @param y area center y
+         * @param radius the area radius
+         * @param width map width
+         * @param height map height
+         * @return true if any of the area tiles has a path to the goal
+         */
+        private boolean reachesArea(int x, int y, int radius, int width, int height) {
+            for (int ny = Math.max(0, y - radius); ny <= Math.min(height - 1, y + radius); ny++) {
+                for (int nx = Math.max(0, x - radius); nx <= Math.min(width - 1, x + radius); nx++) {
+                    if (!Float.isInfinite(distances[ny * width + nx])) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+    }
+
+    /**
+     * Identifies a field, the doors are owner specific
+     */
+    private static final class FieldKey {
+
+        private final int goal;
+        private final MovementClass movementClass;
+        private final boolean diagonal;
+        private final short ownerId;
+        private final boolean smashDoors;
+
+        public FieldKey(int goal, MovementClass movementClass, boolean diagonal, short ownerId, boolean smashDoors) {
+            this.goal = goal;
+            this.movementClass = movementClass;
+            this.diagonal = diagonal;
+            this.ownerId = ownerId;
+            this.smashDoors = smashDoors;
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = 7;
+            hash = 29 * hash + this.goal;
+            hash = 29 * hash + Objects.hashCode(this.movementClass);
+            hash = 29 * hash + (this.diagonal ? 1 : 0);
+            hash = 29 * hash + this.ownerId;
+            hash = 29 * hash + (this.smashDoors ? 1 : 0);
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (obj == null) {
+                return false;
+            }
+            if (getClass() != obj.getClass()) {
+                return false;
+            }
+            final FieldKey other = (FieldKey) obj;
+            if (this.goal != other.goal) {
+                return false;
+            }
+            if (this.diagonal != other.diagonal) {
+                return false;
+            }
+            if (this.ownerId != other.ownerId) {
+                return false;
+            }
+            if (this.smashDoors != other.smashDoors) {
+                return false;
+            }
+            return this.movementClass == other.movementClass;
+        }
+
+    }
+
+}
@@ -0,0 +1,510 @@
+/*
+ * Copyright (C) 2014-2018 OpenKeeper
+ *
+ * OpenKeeper is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenKeeper is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenKeeper.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package toniarts.openkeeper.world.pathfinding;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import toniarts.openkeeper.world.MapData;
+import toniarts.openkeeper.world.TileData;
+import toniarts.openkeeper.world.listener.TileChangeListener;
+
+/**
+ * Hierarchical path finding (HPA*). The map is divided to square clusters (the
+ * same pages the map loader uses). Portals are placed on the passable
+ * stretches of the cluster borders and the costs between the portals of a
+ * cluster are calculated lazily. A long search is then a small search on the
+ * portal graph, the caller refines the resulting waypoints with short local
+ * searches.<br>
+ * The abstract graph ignores doors and uses only the straight directions, so
+ * the waypoints are a good guess, not a guarantee.
+ *
+ * @author Toni Helenius <helenius.toni@gmail.com>
+ */
+public class HierarchicalPathFinder implements TileChangeListener {
+
+    private static final int STRAIGHT_DIRECTIONS = 4;
+    private static final int[] OPPOSITE_DIRECTIONS = {MapConnectionTable.SOUTH, MapConnectionTable.WEST, MapConnectionTable.NORTH, MapConnectionTable.EAST};
+    /**
+     * Stretches of passable border longer than this get portals at both ends
+     */
+    private static final int MAX_SINGLE_PORTAL_LENGTH = 5;
+
+    private final MapConnectionTable connectionTable;
+    private final MapData mapData;
+    private final int clusterSize;
+    private final int clustersX;
+    private final int clustersY;
+    private final Map<MovementClass, AbstractGraph> graphs = new EnumMap<>(MovementClass.class);
+
+    public HierarchicalPathFinder(MapConnectionTable connectionTable, int clusterSize) {
+        this.connectionTable = connectionTable;
+        this.mapData = connectionTable.getMapData();
+        this.clusterSize = clusterSize;
+        this.clustersX = (int) Math.ceil(connectionTable.getWidth() / (float) clusterSize);
+        this.clustersY = (int) Math.ceil(connectionTable.getHeight() / (float) clusterSize);
+    }
+
+    @Override
+    public synchronized void onTileChange(int x, int y) {
+        for (AbstractGraph graph : graphs.values()) {
+            graph.invalidate(x, y);
+        }
+    }
+
+    /**
+     * Is the hierarchical search beneficial between the two tiles. It is not
+     * if the tiles are in the same or adjacent clusters.
+     *
+     * @param start the start tile
+     * @param end the end tile
+     * @return true if hierarchical search should be used
+     */
+    public boolean isHierarchicalSearchUseful(TileData start, TileData end) {
+        return Math.abs(start.getX() / clusterSize - end.getX() / clusterSize) > 1
+                || Math.abs(start.getY() / clusterSize - end.getY() / clusterSize) > 1;
+    }
+
+    /**
+     * Find the waypoints from start to end on the portal graph
+     *
+     * @param start the start tile
+     * @param end the end tile
+     * @param movementClass the movement class to search for
+     * @return the waypoints including the start and the end tiles, or
+     * {@code null} if no route found
+     */
+    public synchronized List<TileData> findWaypoints(TileData start, TileData end, MovementClass movementClass) {
+        AbstractGraph graph = graphs.get(movementClass);
+        if (graph == null) {
+            graph = new AbstractGraph(movementClass);
+            graphs.put(movementClass, graph);
+        }
+        return graph.findWaypoints(start, end);
+    }
+
+    /**
+     * Get the search bounds for refining a path between two waypoints. The
+     * bounds are the cluster(s) of the waypoints.
+     *
+     * @param from the from waypoint
+     * @param to the to waypoint
+     * @return the bounds as {minX, minY, maxX, maxY}
+     */
+    public int[] getRefinementBounds(TileData from, TileData to) {
+        int minClusterX = Math.min(from.getX(), to.getX()) / clusterSize;
+        int minClusterY = Math.min(from.getY(), to.getY()) / clusterSize;
+        int maxClusterX = Math.max(from.getX(), to.getX()) / clusterSize;
+        int maxClusterY = Math.max(from.getY(), to.getY()) / clusterSize;
+        return new int[]{minClusterX * clusterSize, minClusterY * clusterSize,
+            Math.min(connectionTable.getWidth(), (maxClusterX + 1) * clusterSize) - 1,
+            Math.min(connectionTable.getHeight(), (maxClusterY + 1) * clusterSize) - 1};
+    }
+
+    private int getClusterIndex(int x, int y) {
+        return (y / clusterSize) * clustersX + x / clusterSize;
+    }
+
+    /**
+     * The portal graph of a single movement class
+     */
+    private final class AbstractGraph {
+
+        private final MovementClass movementClass;
+        private final Cluster[] clusters;
+        private final List<Portal>[] eastBorders;
+        private final List<Portal>[] southBorders;
+        private final boolean[] eastBorderDirty;
+        private final boolean[] southBorderDirty;
+
+        // Scratch for the cluster searches
+        private final float[] distances = new float[clusterSize * clusterSize];
+        private final IndexHeap heap = new IndexHeap(clusterSize * clusterSize * STRAIGHT_DIRECTIONS);
+
+        @SuppressWarnings("unchecked")
+        public AbstractGraph(MovementClass movementClass) {
+            this.movementClass = movementClass;
+            clusters = new Cluster[clustersX * clustersY];
+            for (int y = 0; y < clustersY; y++) {
+                for (int x = 0; x < clustersX; x++) {
+                    clusters[y * clustersX + x] = new Cluster(x, y);
+                }
+            }
+            eastBorders = new List[clusters.length];
+            southBorders = new List[clusters.length];
+            eastBorderDirty = new boolean[clusters.length];
+            southBorderDirty = new boolean[clusters.length];
+            Arrays.fill(eastBorderDirty, true);
+            Arrays.fill(southBorderDirty, true);
+        }
+
+        private void invalidate(int x, int y) {
+            Cluster cluster = clusters[getClusterIndex(x, y)];
+            cluster.dirty = true;
+
+            // Borders, the tile affects the connections to its neighbours as well
+            if (x == cluster.minX && cluster.x > 0) {
+                invalidateEastBorder(cluster.index - 1);
+            }
+            if (x == cluster.maxX && cluster.x < clustersX - 1) {
+                invalidateEastBorder(cluster.index);
+            }
+            if (y == cluster.minY && cluster.y > 0) {
+                invalidateSouthBorder(cluster.index - clustersX);
+            }
+            if (y == cluster.maxY && cluster.y < clustersY - 1) {
+                invalidateSouthBorder(cluster.index);
+            }
+        }
+
+        private void invalidateEastBorder(int clusterIndex) {
+            eastBorderDirty[clusterIndex] = true;
+            clusters[clusterIndex].dirty = true;
+            clusters[clusterIndex + 1].dirty = true;
+        }
+
+        private void invalidateSouthBorder(int clusterIndex) {
+            southBorderDirty[clusterIndex] = true;
+            clusters[clusterIndex].dirty = true;
+            clusters[clusterIndex + clustersX].dirty = true;
+        }
+
+        /**
+         * Makes sure the cluster portals and the costs between them are up to
+         * date
+         */
+        private void ensureCluster(Cluster cluster) {
+            if (!cluster.dirty) {
+                return;
+            }
+
+            // Rebuild the dirty borders, this may dirty the neighbours as well but that is fine
+            List<Portal> portals = new ArrayList<>();
+            if (cluster.x > 0) {
+                portals.addAll(getEastBorder(cluster.index - 1, false));
+            }
+            if (cluster.x < clustersX - 1) {
+                portals.addAll(getEastBorder(cluster.index, true));
+            }
+            if (cluster.y > 0) {
+                portals.addAll(getSouthBorder(cluster.index - clustersX, false));
+            }
+            if (cluster.y < clustersY - 1) {
+                portals.addAll(getSouthBorder(cluster.index, true));
+            }
+
+            // Index & costs
+            cluster.portals = portals;
+            for (int i = 0; i < portals.size(); i++) {
+                portals.get(i).index = i;
+            }
+            for (Portal portal : portals) {
+                search(cluster, portal.tile);
+                portal.costs = new float[portals.size()];
+                for (Portal other : portals) {
+                    portal.costs[other.index] = distances[cluster.getLocalIndex(other.tile)];
+                }
+            }
+            cluster.dirty = false;
+        }
+
+        /**
+         * Get the portals on the east border of a cluster
+         *
+         * @param clusterIndex the cluster on the west side of the border
+         * @param westSide {@code true} to get the west side portals,
+         * {@code false} for the east side
+         */
+        private List<Portal> getEastBorder(int clusterIndex, boolean westSide) {
+            if (eastBorderDirty[clusterIndex]) {
+                Cluster west = clusters[clusterIndex];
+                Cluster east = clusters[clusterIndex + 1];
+                eastBorders[clusterIndex] = buildBorder(west, east, west.maxX, west.minY, 0, 1, MapConnectionTable.EAST, west.maxY - west.minY + 1);
+                eastBorderDirty[clusterIndex] = false;
+                west.dirty = true;
+                east.dirty = true;
+            }
+            return getSide(eastBorders[clusterIndex], clusters[clusterIndex], westSide);
+        }
+
+        private List<Portal> getSouthBorder(int clusterIndex, boolean northSide) {
+            if (southBorderDirty[clusterIndex]) {
+                Cluster north = clusters[clusterIndex];
+                Cluster south = clusters[clusterIndex + clustersX];
+                southBorders[clusterIndex] = buildBorder(north, south, north.minX, north.maxY, 1, 0, MapConnectionTable.SOUTH, north.maxX - north.minX + 1);
+                southBorderDirty[clusterIndex] = false;
+                north.dirty = true;
+                south.dirty = true;
+            }
+            return getSide(southBorders[clusterIndex], clusters[clusterIndex], northSide);
+        }
+
+        private List<Portal> getSide(List<Portal> border, Cluster firstCluster, boolean first) {
+            List<Portal> side = new ArrayList<>(border.size() / 2);
+            for (Portal portal : border) {
+                if ((portal.cluster == firstCluster) == first) {
+                    side.add(portal);
+                }
+            }
+            return side;
+        }
+
+        /**
+         * Scans a border for the passable stretches and places the portal
+         * pairs on them
+         */
+        private List<Portal> buildBorder(Cluster first, Cluster second, int startX, int startY, int stepX, int stepY, int direction, int length) {
+            List<Portal> portals = new ArrayList<>();
+            int stretchStart = -1;
+            for (int i = 0; i <= length; i++) {
+                boolean passable = (i < length && isCrossable(startX + i * stepX, startY + i * stepY, direction));
+                if (passable && stretchStart < 0) {
+                    stretchStart = i;
+                } else if (!passable && stretchStart >= 0) {
+                    int stretchEnd = i - 1;
+                    if (stretchEnd - stretchStart + 1 > MAX_SINGLE_PORTAL_LENGTH) {
+                        addPortals(portals, first, second, startX + stretchStart * stepX, startY + stretchStart * stepY, direction);
+                        addPortals(portals, first, second, startX + stretchEnd * stepX, startY + stretchEnd * stepY, direction);
+                    } else {
+                        int middle = (stretchStart + stretchEnd) / 2;
+                        addPortals(portals, first, second, startX + middle * stepX, startY + middle * stepY, direction);
+                    }
+                    stretchStart = -1;
+                }
+            }
+            return portals;
+        }
+
+        private boolean isCrossable(int x, int y, int direction) {
+            return connectionTable.getCost(x, y, direction, movementClass) != MapConnectionTable.NO_CONNECTION
+                    && connectionTable.getCost(x + MapConnectionTable.DIRECTION_X[direction], y + MapConnectionTable.DIRECTION_Y[direction], OPPOSITE_DIRECTIONS[direction], movementClass) != MapConnectionTable.NO_CONNECTION;
+        }
+
+        private void addPortals(List<Portal> portals, Cluster first, Cluster second, int x, int y, int direction) {
+            int x2 = x + MapConnectionTable.DIRECTION_X[direction];
+            int y2 = y + MapConnectionTable.DIRECTION_Y[direction];
+            Portal firstPortal = new Portal(mapData.getTile(x, y), first);
+            Portal secondPortal = new Portal(mapData.getTile(x2, y2), second);
+            firstPortal.twin = secondPortal;
+            firstPortal.twinCost = connectionTable.getCost(x, y, direction, movementClass);
+            secondPortal.twin = firstPortal;
+            secondPortal.twinCost = connectionTable.getCost(x2, y2, OPPOSITE_DIRECTIONS[direction], movementClass);
+            portals.add(firstPortal);
+            portals.add(secondPortal);
+        }
+
+        /**
+         * Dijkstra inside a cluster, the results are in the distances array
+         */
+        private void search(Cluster cluster, TileData start) {
+            Arrays.fill(distances, Float.POSITIVE_INFINITY);
+            heap.clear();
+            int startIndex = cluster.getLocalIndex(start);
+            distances[startIndex] = 0;
+            heap.add(startIndex, 0);
+            while (!heap.isEmpty()) {
+                float distance = heap.peekKey();
+                int local = heap.pop();
+                if (distance > distances[local]) {
+                    continue; // Stale
+                }
+                int x = cluster.minX + local % clusterSize;
+                int y = cluster.minY + local / clusterSize;
+                for (int direction = 0; direction < STRAIGHT_DIRECTIONS; direction++) {
+                    int nx = x + MapConnectionTable.DIRECTION_X[direction];
+                    int ny = y + MapConnectionTable.DIRECTION_Y[direction];
+                    if (nx < cluster.minX || ny < cluster.minY || nx > cluster.maxX || ny > cluster.maxY) {
+                        continue;
+                    }
+                    float cost = connectionTable.getCost(x, y, direction, movementClass);
+                    if (cost == MapConnectionTable.NO_CONNECTION) {
+                        continue;
+                    }
+                    int neighbour = (ny - cluster.minY) * clusterSize + nx - cluster.minX;
+                    if (distance + cost < distances[neighbour]) {
+                        distances[neighbour] = distance + cost;
+                        heap.add(neighbour, distance + cost);
+                    }
+                }
+            }
+        }
+
+        private List<TileData> findWaypoints(TileData start, TileData end) {
+            Cluster startCluster = clusters[getClusterIndex(start.getX(), start.getY())];
+            Cluster endCluster = clusters[getClusterIndex(end.getX(), end.getY())];
+            while (startCluster.dirty || endCluster.dirty) {
+
+                // Rebuilding shared borders may dirty the other
+                ensureCluster(startCluster);
+                ensureCluster(endCluster);
+            }
+
+            // Costs from the start to its cluster portals and from the end cluster portals to the end
+            Map<Portal, Float> endCosts = new HashMap<>();
+            search(endCluster, end);
+            for (Portal portal : endCluster.portals) {
+                float cost = distances[endCluster.getLocalIndex(portal.tile)];
+                if (cost != Float.POSITIVE_INFINITY) {
+                    endCosts.put(portal, cost);
+                }
+            }
+            if (endCosts.isEmpty()) {
+                return null;
+            }
+
+            Map<Portal, Float> costsSoFar = new HashMap<>();
+            Map<Portal, Portal> cameFrom = new HashMap<>();
+            PriorityQueue<PortalRecord> openList = new PriorityQueue<>();
+            search(startCluster, start);
+            for (Portal portal : startCluster.portals) {
+                float cost = distances[startCluster.getLocalIndex(portal.tile)];
+                if (cost != Float.POSITIVE_INFINITY) {
+                    costsSoFar.put(portal, cost);
+                    openList.add(new PortalRecord(portal, cost, cost + estimate(portal.tile, end)));
+                }
+            }
+
+            // A* on the portals, the end is a virtual node with the record portal null
+            Portal lastPortal = null;
+            while (!openList.isEmpty()) {
+                PortalRecord record = openList.poll();
+                if (record.portal == null) {
+                    lastPortal = record.from;
+                    break;
+                }
+                if (record.costSoFar > costsSoFar.get(record.portal)) {
+                    continue; // Stale
+                }
+
+                Portal portal = record.portal;
+                ensureCluster(portal.cluster);
+                Float endCost = endCosts.get(portal);
+                if (endCost != null) {
+                    openList.add(new PortalRecord(null, portal, record.costSoFar + endCost, record.costSoFar + endCost));
+                }
+
+                // Cross the border
+                visit(portal, portal.twin, record.costSoFar + portal.twinCost, end, costsSoFar, cameFrom, openList);
+
+                // Travel inside the cluster
+                for (Portal other : portal.cluster.portals) {
+                    float cost = portal.costs[other.index];
+                    if (other != portal && cost != Float.POSITIVE_INFINITY) {
+                        visit(portal, other, record.costSoFar + cost, end, costsSoFar, cameFrom, openList);
+                    }
+                }
+            }
+            if (lastPortal == null) {
+                return null;
+            }
+
+            // Collect
+            LinkedList<TileData> waypoints = new LinkedList<>();
+            waypoints.addFirst(end);
+            for (Portal portal = lastPortal; portal != null; portal = cameFrom.get(portal)) {
+                waypoints.addFirst(portal.tile);
+            }
+            waypoints.addFirst(start);
+            return waypoints;
+        }
+
+        private void visit(Portal from, Portal to, float costSoFar, TileData end, Map<Portal, Float> costsSoFar, Map<Portal, Portal> cameFrom, PriorityQueue<PortalRecord> openList) {
+            Float oldCost = costsSoFar.get(to);
+            if (oldCost == null || costSoFar < oldCost) {
+                costsSoFar.put(to, costSoFar);
+                cameFrom.put(to, from);
+                openList.add(new PortalRecord(to, costSoFar, costSoFar + estimate(to.tile, end)));
+            }
+        }
+
+        private float estimate(TileData node, TileData endNode) {
+            return Math.abs(endNode.getX() - node.getX()) + Math.abs(endNode.getY() - node.getY());
+        }
+    }
+
+    private final class Cluster {
+
+        private final int x;
+        private final int y;
+        private final int index;
+        private final int minX;
+        private final int minY;
+        private final int maxX;
+        private final int maxY;
+        private List<Portal> portals;
+        private boolean dirty = true;
+
+        public Cluster(int x, int y) {
+            this.x = x;
+            this.y = y;
+            this.index = y * clustersX + x;
+            this.minX = x * clusterSize;
+            this.minY = y * clusterSize;
+            this.maxX = Math.min(connectionTable.getWidth(), minX + clusterSize) - 1;
+            this.maxY = Math.min(connectionTable.getHeight(), minY + clusterSize) - 1;
+        }
+
+        private int getLocalIndex(TileData tile) {
+            return (tile.getY() - minY) * clusterSize + tile.getX() - minX;
+        }
+    }
+
+    private static final class Portal {
+
+        private final TileData tile;
+        private final Cluster cluster;
+        private Portal twin;
+        private float twinCost;
+        private int index;
+        private float[] costs;
+
+        public Portal(TileData tile, Cluster cluster) {
+            this.tile = tile;
+            this.cluster = cluster;
+        }
+    }
+
+    private static final class PortalRecord implements Comparable<PortalRecord> {
+
+        private final Portal portal;
+        private final Portal from;
+        private final float costSoFar;
+        private final float estimatedTotalCost;
+
+        public PortalRecord(Portal portal, float costSoFar, float estimatedTotalCost) {
+            this(portal, null, costSoFar, estimatedTotalCost);
+        }
+
+        public PortalRecord(Portal portal, Portal from, float costSoFar, float estimatedTotalCost) {
+            this.portal = portal;
+            this.from = from;
+            this.costSoFar = costSoFar;
+            this.estimatedTotalCost = estimatedTotalCost;
+        }
+
+        @Override
+        public int compareTo(PortalRecord o) {
+            return Float.compare(estimatedTotalCost, o.estimatedTotalCost);
+        }
+    }
+
+}
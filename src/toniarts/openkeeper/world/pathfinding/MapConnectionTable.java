@@ -0,0 +1,315 @@
+/*
+ * Copyright (C) 2014-2018 OpenKeeper
+ *
+ * OpenKeeper is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenKeeper is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenKeeper.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package toniarts.openkeeper.world.pathfinding;
+
+import java.awt.Point;
+import toniarts.openkeeper.tools.convert.map.Terrain;
+import toniarts.openkeeper.world.MapData;
+import toniarts.openkeeper.world.TileData;
+import toniarts.openkeeper.world.WorldState;
+import toniarts.openkeeper.world.door.DoorControl;
+import toniarts.openkeeper.world.listener.TileChangeListener;
+import toniarts.openkeeper.world.room.GenericRoom;
+import toniarts.openkeeper.world.room.RoomInstance;
+
+/**
+ * Precalculated traversal costs of the map, per movement class. The costs
+ * follow the rules of {@link PathFindable#getCost(TileData, TileData, WorldState)}.
+ * Only the changed tiles and their neighbours are recalculated.<br>
+ * Doors are only flagged here, their passability depends on the owner and the
+ * lock state so it is checked during the search. The lock state and the owner
+ * of the door still count as passability changes of the tile.
+ *
+ * @author Toni Helenius <helenius.toni@gmail.com>
+ */
+public class MapConnectionTable implements TileChangeListener {
+
+    /**
+     * The directions, the first four are the straight ones
+     */
+    static final int NORTH = 0;
+    static final int EAST = 1;
+    static final int SOUTH = 2;
+    static final int WEST = 3;
+    static final int NORTH_EAST = 4;
+    static final int NORTH_WEST = 5;
+    static final int SOUTH_EAST = 6;
+    static final int SOUTH_WEST = 7;
+    static final int DIRECTIONS = 8;
+    static final int[] DIRECTION_X = {0, 1, 0, -1, 1, -1, 1, -1};
+    static final int[] DIRECTION_Y = {-1, 0, 1, 0, -1, -1, 1, 1};
+
+    /**
+     * Cost value for no connection
+     */
+    static final float NO_CONNECTION = 0f;
+
+    private static final byte FLAG_ROOM = 0x01;
+    private static final byte FLAG_ROOM_ACCESSIBLE = 0x02;
+    private static final byte FLAG_DOOR = 0x04;
+    private static final byte FLAG_DOOR_LOCKED = 0x08;
+    private static final byte FLAG_DOOR_OPEN = 0x10;
+
+    private final WorldState worldState;
+    private final int width;
+    private final int height;
+    private final byte[] flags;
+    private final byte[] roomConnections;
+    private final short[] doorOwners;
+    private final float[][] costs;
+    private final int[] passabilityVersions;
+
+    public MapConnectionTable(WorldState worldState) {
+        this.worldState = worldState;
+        this.width = worldState.getMapData().getWidth();
+        this.height = worldState.getMapData().getHeight();
+        this.flags = new byte[width * height];
+        this.roomConnections = new byte[width * height];
+        this.doorOwners = new short[width * height];
+        this.costs = new float[MovementClass.values().length][width * height];
+        this.passabilityVersions = new int[width * height];
+
+        // Tile data first, the room connections depend on the neighbours
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                updateTile(x, y);
+            }
+        }
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                updateRoomConnections(x, y);
+            }
+        }
+    }
+
+    @Override
+    public void onTileChange(int x, int y) {
+        updateTile(x, y);
+
+        // The connections from the neighbours to this tile might have changed
+        for (int ny = y - 1; ny <= y + 1; ny++) {
+            for (int nx = x - 1; nx <= x + 1; nx++) {
+                updateRoomConnections(nx, ny);
+            }
+        }
+    }
+
+    private void updateTile(int x, int y) {
+        TileData tile = worldState.getMapData().getTile(x, y);
+        if (tile == null) {
+            return;
+        }
+
+        int index = tile.getIndex();
+        Terrain terrain = tile.getTerrain();
+        byte tileFlags = 0;
+        short doorOwner = 0;
+        DoorControl doorControl = worldState.getThingLoader().getDoor(tile.getLocation());
+        if (doorControl != null) {
+            tileFlags |= FLAG_DOOR;
+            doorOwner = doorControl.getOwnerId();
+            if (doorControl.getState() == DoorControl.DoorState.BLUEPRINT || doorControl.getState() == DoorControl.DoorState.DESTROYED) {
+                tileFlags |= FLAG_DOOR_OPEN;
+            } else if (!doorControl.isPassable(doorOwner)) {
+                tileFlags |= FLAG_DOOR_LOCKED;
+            }
+        }
+        if (!terrain.getFlags().contains(Terrain.TerrainFlag.SOLID) && terrain.getFlags().contains(Terrain.TerrainFlag.ROOM)) {
+            GenericRoom room = getRoom(tile.getLocation());
+            if (room != null) {
+                tileFlags |= FLAG_ROOM;
+                if (room.isTileAccessible(null, tile.getLocation())) {
+                    tileFlags |= FLAG_ROOM_ACCESSIBLE;
+                }
+            }
+        }
+        boolean changed = (flags[index] != tileFlags || doorOwners[index] != doorOwner);
+        flags[index] = tileFlags;
+        doorOwners[index] = doorOwner;
+
+        for (MovementClass movementClass : MovementClass.values()) {
+            Float cost = movementClass.getCost(terrain);
+            float newCost = (cost != null ? cost : NO_CONNECTION);
+            changed |= (costs[movementClass.ordinal()][index] != newCost);
+            costs[movementClass.ordinal()][index] = newCost;
+        }
+        if (changed) {
+            passabilityVersions[index]++;
+        }
+    }
+
+    private void updateRoomConnections(int x, int y) {
+        if (x < 0 || y < 0 || x >= width || y >= height) {
+            return;
+        }
+
+        int mask = 0;
+        for (int direction = 0; direction < DIRECTIONS; direction++) {
+            int nx = x + DIRECTION_X[direction];
+            int ny = y + DIRECTION_Y[direction];
+            if (nx < 0 || ny < 0 || nx >= width || ny >= height || (flags[ny * width + nx] & FLAG_ROOM) == 0) {
+                continue;
+            }
+
+            Point to = new Point(nx, ny);
+            GenericRoom room = getRoom(to);
+            if (room != null && room.isTileAccessible(new Point(x, y), to)) {
+                mask |= 1 << direction;
+            }
+        }
+        if (roomConnections[y * width + x] != (byte) mask) {
+            roomConnections[y * width + x] = (byte) mask;
+            passabilityVersions[y * width + x]++;
+        }
+    }
+
+    private GenericRoom getRoom(Point p) {
+        RoomInstance roomInstance = worldState.getMapLoader().getRoomCoordinates().get(p);
+        if (roomInstance == null) {
+            return null;
+        }
+        return worldState.getMapLoader().getRoomActuals().get(roomInstance);
+    }
+
+    /**
+     * Get the cost of moving from a tile to the given direction. Doors are not
+     * taken into account.
+     *
+     * @param x from tile x
+     * @param y from tile y
+     * @param direction the direction
+     * @param movementClass the movement class
+     * @return the cost, {@link #NO_CONNECTION} if no connection
+     * @see #isDoor(int)
+     */
+    float getCost(int x, int y, int direction, MovementClass movementClass) {
+        int nx = x + DIRECTION_X[direction];
+        int ny = y + DIRECTION_Y[direction];
+        if (nx < 0 || ny < 0 || nx >= width || ny >= height) {
+            return NO_CONNECTION;
+        }
+
+        int to = ny * width + nx;
+        if ((flags[to] & FLAG_ROOM) != 0) {
+            return (roomConnections[y * width + x] & (1 << direction)) != 0 ? PathFindable.DEFAULT_COST : NO_CONNECTION;
+        }
+        return costs[movementClass.ordinal()][to];
+    }
+
+    /**
+     * Get the passability version of the tile. It changes whenever the
+     * costs, the door, its lock state or owner, or the room connections of
+     * the tile change, so tile changes that don't affect the movement can be
+     * told apart.
+     *
+     * @param index the tile index
+     * @return the passability version
+     */
+    int getPassabilityVersion(int index) {
+        return passabilityVersions[index];
+    }
+
+    /**
+     * Is there a door or a barricade on the tile
+     *
+     * @param index the tile index
+     * @return true if there is a door
+     */
+    boolean isDoor(int index) {
+        return (flags[index] & FLAG_DOOR) != 0;
+    }
+
+    /**
+     * Can the path findable pass through the door on the tile
+     *
+     * @param tile the tile with a door
+     * @param pathFindable the path findable
+     * @return true if the door is passable
+     */
+    boolean isDoorPassable(TileData tile, PathFindable pathFindable) {
+        DoorControl doorControl = worldState.getThingLoader().getDoor(tile.getLocation());
+        return doorControl == null || doorControl.isPassable(pathFindable.getOwnerId())
+                || (pathFindable.canSmashDoors() && doorControl.getOwnerId() != pathFindable.getOwnerId());
+    }
+
+    /**
+     * Is there a door on the tile that no one can pass, a locked door or a
+     * barricade
+     *
+     * @param index the tile index
+     * @return true if the door blocks everybody
+     */
+    boolean isDoorBlocking(int index) {
+        if (!isDoor(index)) {
+            return false;
+        }
+        DoorControl doorControl = worldState.getThingLoader().getDoor(new Point(index % width, index / width));
+        return doorControl != null && !doorControl.isPassable(doorControl.getOwnerId());
+    }
+
+    /**
+     * Can the tile be entered by the movement class from at least some
+     * direction. Doors are not taken into account.
+     *
+     * @param index the tile index
+     * @param movementClass the movement class
+     * @return true if the tile can be entered
+     */
+    boolean isEnterable(int index, MovementClass movementClass) {
+        if ((flags[index] & FLAG_ROOM) != 0) {
+            return (flags[index] & FLAG_ROOM_ACCESSIBLE) != 0;
+        }
+        return costs[movementClass.ordinal()][index] != NO_CONNECTION;
+    }
+
+    /**
+     * Check if given tile is accessible by the given entity
+     *
+     * @param tile the tile
+     * @param pathFindable the entity to test with
+     * @return is accessible
+     */
+    public boolean isAccessible(TileData tile, PathFindable pathFindable) {
+        if (!pathFindable.hasDefaultCosts()) {
+            return pathFindable.getCost(null, tile, worldState) != null;
+        }
+
+        int index = tile.getIndex();
+        if (isDoor(index) && !isDoorPassable(tile, pathFindable)) {
+            return false;
+        }
+        return isEnterable(index, MovementClass.of(pathFindable));
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Convenience for getting the map data
+     *
+     * @return the map data
+     */
+    MapData getMapData() {
+        return worldState.getMapData();
+    }
+
+}
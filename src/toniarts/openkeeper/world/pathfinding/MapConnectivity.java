@@ -0,0 +1,250 @@
+/*
+ * Copyright (C) 2014-2018 OpenKeeper
+ *
+ * OpenKeeper is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenKeeper is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenKeeper.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package toniarts.openkeeper.world.pathfinding;
+
+import toniarts.openkeeper.world.TileData;
+import toniarts.openkeeper.world.listener.TileChangeListener;
+
+/**
+ * Connected regions of the map, per movement class. Answers whether a tile
+ * can be reached at all without running the search. The regions are kept in
+ * a union-find structure, new connections (digging, unlocking doors) are just
+ * merged. Removed connections (locking doors, building rooms) can split a
+ * region so the movement class is relabeled when it is next queried.<br>
+ * The answer is optimistic, a door is only considered blocking if it blocks
+ * everybody. So a positive answer still needs the real search.
+ *
+ * @author Toni Helenius <helenius.toni@gmail.com>
+ */
+public class MapConnectivity implements TileChangeListener {
+
+    private static final int[] OPPOSITE_DIRECTION = {
+        MapConnectionTable.SOUTH, MapConnectionTable.WEST, MapConnectionTable.NORTH, MapConnectionTable.EAST,
+        MapConnectionTable.SOUTH_WEST, MapConnectionTable.SOUTH_EAST, MapConnectionTable.NORTH_WEST, MapConnectionTable.NORTH_EAST
+    };
+    private static final int NO_REGION = -1;
+
+    private final MapConnectionTable connectionTable;
+    private final int width;
+    private final int height;
+    private final int[][] parents;
+    private final byte[][] links;
+    private final boolean[] dirty;
+
+    public MapConnectivity(MapConnectionTable connectionTable) {
+        this.connectionTable = connectionTable;
+        this.width = connectionTable.getWidth();
+        this.height = connectionTable.getHeight();
+        int movementClasses = MovementClass.values().length;
+        this.parents = new int[movementClasses][width * height];
+        this.links = new byte[movementClasses][width * height];
+        this.dirty = new boolean[movementClasses];
+        for (MovementClass movementClass : MovementClass.values()) {
+            relabel(movementClass);
+        }
+    }
+
+    @Override
+    public synchronized void onTileChange(int x, int y) {
+
+        // The connection table updates the room connections of the neighbours as well
+        for (MovementClass movementClass : MovementClass.values()) {
+            int c = movementClass.ordinal();
+            for (int ny = y - 1; ny <= y + 1; ny++) {
+                for (int nx = x - 1; nx <= x + 1; nx++) {
+                    if (nx < 0 || ny < 0 || nx >= width || ny >= height) {
+                        continue;
+                    }
+                    for (int direction = 0; direction < MapConnectionTable.DIRECTIONS; direction++) {
+                        updateLink(nx, ny, direction, movementClass);
+                    }
+                }
+            }
+
+            // Without links the tile is a region of its own, or no region at all if it was closed
+            int index = y * width + x;
+            if (!dirty[c] && links[c][index] == 0) {
+                parents[c][index] = isOpen(index, movementClass) ? index : NO_REGION;
+            }
+        }
+    }
+
+    private void updateLink(int x, int y, int direction, MovementClass movementClass) {
+        int nx = x + MapConnectionTable.DIRECTION_X[direction];
+        int ny = y + MapConnectionTable.DIRECTION_Y[direction];
+        if (nx < 0 || ny < 0 || nx >= width || ny >= height) {
+            return;
+        }
+
+        int c = movementClass.ordinal();
+        int index = y * width + x;
+        int neighbourIndex = ny * width + nx;
+        boolean wasLinked = (links[c][index] & (1 << direction)) != 0;
+        boolean linked = isLinked(x, y, direction, movementClass);
+        if (wasLinked == linked) {
+            return;
+        }
+
+        // The links are symmetric
+        if (linked) {
+            links[c][index] |= 1 << direction;
+            links[c][neighbourIndex] |= 1 << OPPOSITE_DIRECTION[direction];
+            if (!dirty[c]) {
+                if (parents[c][index] == NO_REGION) {
+                    parents[c][index] = index;
+                }
+                if (parents[c][neighbourIndex] == NO_REGION) {
+                    parents[c][neighbourIndex] = neighbourIndex;
+                }
+                union(parents[c], index, neighbourIndex);
+            }
+        } else {
+            links[c][index] &= ~(1 << direction);
+            links[c][neighbourIndex] &= ~(1 << OPPOSITE_DIRECTION[direction]);
+
+            // Might split the region, can't be undone in union-find
+            dirty[c] = true;
+        }
+    }
+
+    /**
+     * Is there a connection between the tile and its neighbour, to either
+     * direction
+     */
+    private boolean isLinked(int x, int y, int direction, MovementClass movementClass) {
+        int nx = x + MapConnectionTable.DIRECTION_X[direction];
+        int ny = y + MapConnectionTable.DIRECTION_Y[direction];
+        if (!isOpen(y * width + x, movementClass) || !isOpen(ny * width + nx, movementClass)) {
+            return false;
+        }
+        return connectionTable.getCost(x, y, direction, movementClass) != MapConnectionTable.NO_CONNECTION
+                || connectionTable.getCost(nx, ny, OPPOSITE_DIRECTION[direction], movementClass) != MapConnectionTable.NO_CONNECTION;
+    }
+
+    private boolean isOpen(int index, MovementClass movementClass) {
+        return connectionTable.isEnterable(index, movementClass) && !connectionTable.isDoorBlocking(index);
+    }
+
+    private void relabel(MovementClass movementClass) {
+        int c = movementClass.ordinal();
+        int[] regions = parents[c];
+        byte[] tileLinks = links[c];
+        for (int index = 0; index < regions.length; index++) {
+            regions[index] = isOpen(index, movementClass) ? index : NO_REGION;
+            tileLinks[index] = 0;
+        }
+
+        // Links are symmetric, so half of the directions is enough to find them
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int index = y * width + x;
+                if (regions[index] == NO_REGION) {
+                    continue;
+                }
+                for (int direction = 0; direction < MapConnectionTable.DIRECTIONS; direction++) {
+                    int nx = x + MapConnectionTable.DIRECTION_X[direction];
+                    int ny = y + MapConnectionTable.DIRECTION_Y[direction];
+                    if (nx < 0 || ny < 0 || nx >= width || ny >= height) {
+                        continue;
+                    }
+                    int neighbourIndex = ny * width + nx;
+                    if (neighbourIndex < index || !isLinked(x, y, direction, movementClass)) {
+                        continue;
+                    }
+                    tileLinks[index] |= 1 << direction;
+                    tileLinks[neighbourIndex] |= 1 << OPPOSITE_DIRECTION[direction];
+                    union(regions, index, neighbourIndex);
+                }
+            }
+        }
+        dirty[c] = false;
+    }
+
+    private static int find(int[] regions, int index) {
+        int root = index;
+        while (regions[root] != root) {
+            root = regions[root];
+        }
+
+        // Path compression
+        while (regions[index] != root) {
+            int next = regions[index];
+            regions[index] = root;
+            index = next;
+        }
+        return root;
+    }
+
+    private static void union(int[] regions, int a, int b) {
+        int rootA = find(regions, a);
+        int rootB = find(regions, b);
+        if (rootA != rootB) {
+            if (rootA < rootB) {
+                regions[rootB] = rootA;
+            } else {
+                regions[rootA] = rootB;
+            }
+        }
+    }
+
+    /**
+     * Can the end tile possibly be reached from the start tile. If this
+     * returns {@code false} there is no path, but {@code true} doesn't
+     * guarantee one, doors owned by other players are not taken into account
+     *
+     * @param start the start tile
+     * @param end the end tile
+     * @param movementClass the movement class
+     * @return false if the end tile is certainly not reachable
+     */
+    public synchronized boolean isReachable(TileData start, TileData end, MovementClass movementClass) {
+        if (start == end) {
+            return true;
+        }
+
+        int c = movementClass.ordinal();
+        if (dirty[c]) {
+            relabel(movementClass);
+        }
+
+        int[] regions = parents[c];
+        int endIndex = end.getIndex();
+        if (regions[endIndex] == NO_REGION) {
+            return false;
+        }
+        int endRegion = find(regions, endIndex);
+
+        // We might be standing on a tile we can't enter, like a locked door, so just try to get out of it
+        int startIndex = start.getIndex();
+        if (regions[startIndex] != NO_REGION) {
+            return find(regions, startIndex) == endRegion;
+        }
+        int x = start.getX();
+        int y = start.getY();
+        for (int direction = 0; direction < MapConnectionTable.DIRECTIONS; direction++) {
+            if (connectionTable.getCost(x, y, direction, movementClass) == MapConnectionTable.NO_CONNECTION) {
+                continue;
+            }
+            int neighbourIndex = (y + MapConnectionTable.DIRECTION_Y[direction]) * width + x + MapConnectionTable.DIRECTION_X[direction];
+            if (regions[neighbourIndex] != NO_REGION && find(regions, neighbourIndex) == endRegion) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
@@ -17,26 +17,56 @@
 package toniarts.openkeeper.world.pathfinding;
 
 import com.badlogic.gdx.ai.pfa.Connection;
-import com.badlogic.gdx.ai.pfa.DefaultConnection;
 import com.badlogic.gdx.ai.pfa.indexed.IndexedGraph;
 import com.badlogic.gdx.utils.Array;
+import toniarts.openkeeper.world.MapData;
 import toniarts.openkeeper.world.TileData;
 import toniarts.openkeeper.world.WorldState;
 
 /**
- * Map representation for the path finding
+ * Map representation for the path finding. The connections are read from the
+ * precalculated connection table and the connection instances are recycled,
+ * so node expansion doesn't create any garbage. Not thread safe, every
+ * searching thread needs an instance of its own.
  *
  * @author Toni Helenius <helenius.toni@gmail.com>
  */
 public class MapIndexedGraph implements IndexedGraph<TileData> {
 
+    /**
+     * The straight directions required to be passable for the diagonal
+     * directions
+     */
+    private static final int[] DIAGONAL_REQUIREMENTS = {
+        0, 0, 0, 0,
+        (1 << MapConnectionTable.NORTH) | (1 << MapConnectionTable.EAST), // North-East
+        (1 << MapConnectionTable.NORTH) | (1 << MapConnectionTable.WEST), // North-West
+        (1 << MapConnectionTable.SOUTH) | (1 << MapConnectionTable.EAST), // South-East
+        (1 << MapConnectionTable.SOUTH) | (1 << MapConnectionTable.WEST) // South-West
+    };
+
     private final WorldState worldState;
+    private final MapData mapData;
+    private final MapConnectionTable connectionTable;
     private final int nodeCount;
+    private final Array<Connection<TileData>> connections = new Array<>(MapConnectionTable.DIRECTIONS);
+    private final TileConnection[] connectionPool;
     private PathFindable pathFindable;
-
-    public MapIndexedGraph(WorldState worldState) {
+    private MovementClass movementClass;
+    private boolean defaultCosts;
+    private boolean diagonal;
+    private int minX;
+    private int minY;
+    private int maxX;
+    private int maxY;
+
+    public MapIndexedGraph(WorldState worldState, MapConnectionTable connectionTable) {
         this.worldState = worldState;
-        nodeCount = worldState.getMapData().getHeight() * worldState.getMapData().getWidth();
+        this.mapData = worldState.getMapData();
+        this.connectionTable = connectionTable;
+        nodeCount = mapData.getHeight() * mapData.getWidth();
+        connectionPool = new TileConnection[nodeCount * MapConnectionTable.DIRECTIONS];
+        clearBounds();
     }
 
     @Override
@@ -57,57 +87,144 @@ public class MapIndexedGraph implements IndexedGraph<TileData> {
      */
     public void setPathFindable(PathFindable pathFindable) {
         this.pathFindable = pathFindable;
+        if (pathFindable != null) {
+
+            // Resolve these once per search, they are the same for every node
+            movementClass = MovementClass.of(pathFindable);
+            defaultCosts = pathFindable.hasDefaultCosts();
+            diagonal = pathFindable.canMoveDiagonally();
+        }
+    }
+
+    /**
+     * Limit the search to an area of the map
+     *
+     * @param minX minimum x, inclusive
+     * @param minY minimum y, inclusive
+     * @param maxX maximum x, inclusive
+     * @param maxY maximum y, inclusive
+     */
+    public void setBounds(int minX, int minY, int maxX, int maxY) {
+        this.minX = minX;
+        this.minY = minY;
+        this.maxX = maxX;
+        this.maxY = maxY;
+    }
+
+    /**
+     * Search the whole map
+     */
+    public final void clearBounds() {
+        setBounds(0, 0, mapData.getWidth() - 1, mapData.getHeight() - 1);
     }
 
+    /**
+     * {@inheritDoc}
+     * <br>
+     * The returned array and the connections are reused, they are only valid
+     * until the next call.
+     */
     @Override
     public Array<Connection<TileData>> getConnections(TileData tile) {
 
         // The connections depend on the creature type
-        Array<Connection<TileData>> connections = new Array<>(8);
-        boolean valids[] = new boolean[4];
+        connections.clear();
+        int valids = 0;
+        for (int direction = MapConnectionTable.NORTH; direction <= MapConnectionTable.WEST; direction++) {
+            if (addIfConnected(tile, direction)) {
+                valids |= 1 << direction;
+            }
+        }
+
+        if (diagonal) {
+            for (int direction = MapConnectionTable.NORTH_EAST; direction < MapConnectionTable.DIRECTIONS; direction++) {
+                if ((valids & DIAGONAL_REQUIREMENTS[direction]) == DIAGONAL_REQUIREMENTS[direction]) {
+                    addIfConnected(tile, direction);
+                }
+            }
+        }
+
+        return connections;
+    }
 
-        valids[0] = addIfValidCoordinate(tile, tile.getX(), tile.getY() - 1, connections); // North
-        valids[1] = addIfValidCoordinate(tile, tile.getX() + 1, tile.getY(), connections); // East
-        valids[2] = addIfValidCoordinate(tile, tile.getX(), tile.getY() + 1, connections); // South
-        valids[3] = addIfValidCoordinate(tile, tile.getX() - 1, tile.getY(), connections); // West
+    private boolean addIfConnected(final TileData startTile, final int direction) {
+        int x = startTile.getX() + MapConnectionTable.DIRECTION_X[direction];
+        int y = startTile.getY() + MapConnectionTable.DIRECTION_Y[direction];
+        if (x < minX || y < minY || x > maxX || y > maxY) {
+            return false;
+        }
 
-        if (pathFindable.canMoveDiagonally()) {
-            if (valids[0] && valids[1]) { // North-East
-                addIfValidCoordinate(tile, tile.getX() + 1, tile.getY() - 1, connections);
+        float cost;
+        TileData tile;
+        if (defaultCosts) {
+            cost = connectionTable.getCost(startTile.getX(), startTile.getY(), direction, movementClass);
+            if (cost == MapConnectionTable.NO_CONNECTION) {
+                return false;
             }
-            if (valids[0] && valids[3]) { // North-West
-                addIfValidCoordinate(tile, tile.getX() - 1, tile.getY() - 1, connections);
+            tile = mapData.getTile(x, y);
+            if (connectionTable.isDoor(tile.getIndex()) && !connectionTable.isDoorPassable(tile, pathFindable)) {
+                return false;
             }
-            if (valids[2] && valids[1]) { // South-East
-                addIfValidCoordinate(tile, tile.getX() + 1, tile.getY() + 1, connections);
+        } else {
+
+            // Custom costs, need to ask every time
+            tile = mapData.getTile(x, y);
+            if (tile == null) {
+                return false;
             }
-            if (valids[2] && valids[3]) { // South-West
-                addIfValidCoordinate(tile, tile.getX() - 1, tile.getY() + 1, connections);
+            Float customCost = pathFindable.getCost(startTile, tile, worldState);
+            if (customCost == null) {
+                return false;
             }
+            cost = customCost;
         }
 
-        return connections;
+        connections.add(getConnection(startTile, tile, direction, cost));
+        return true;
+    }
+
+    private TileConnection getConnection(TileData startTile, TileData tile, int direction, float cost) {
+        int index = startTile.getIndex() * MapConnectionTable.DIRECTIONS + direction;
+        TileConnection connection = connectionPool[index];
+        if (connection == null) {
+            connection = new TileConnection(startTile, tile);
+            connectionPool[index] = connection;
+        }
+        connection.cost = cost;
+        return connection;
     }
 
-    private boolean addIfValidCoordinate(final TileData startTile, final int x, final int y, final Array<Connection<TileData>> connections) {
+    /**
+     * A connection between two adjacent tiles. The search records hold on to
+     * these only for building the path from the nodes, so the cost can be
+     * changed for each visit.
+     */
+    private static final class TileConnection implements Connection<TileData> {
 
-        // Valid coordinate
-        TileData tile = worldState.getMapData().getTile(x, y);
-        if (tile != null) {
-            Float cost = pathFindable.getCost(startTile, tile, worldState);
-            if (cost != null) {
-                connections.add(new DefaultConnection<TileData>(startTile, tile) {
+        private final TileData fromNode;
+        private final TileData toNode;
+        private float cost;
 
-                    @Override
-                    public float getCost() {
-                        return cost;
-                    }
+        public TileConnection(TileData fromNode, TileData toNode) {
+            this.fromNode = fromNode;
+            this.toNode = toNode;
+        }
 
-                });
-                return true;
-            }
+        @Override
+        public float getCost() {
+            return cost;
         }
-        return false;
+
+        @Override
+        public TileData getFromNode() {
+            return fromNode;
+        }
+
+        @Override
+        public TileData getToNode() {
+            return toNode;
+        }
+
     }
 
 }
@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2014-2018 OpenKeeper
+ *
+ * OpenKeeper is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenKeeper is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenKeeper.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package toniarts.openkeeper.world.pathfinding;
+
+import toniarts.openkeeper.tools.convert.map.Terrain;
+
+/**
+ * Groups the path findables by the terrain they can traverse. Entities of the
+ * same movement class share the same traversal costs, so the costs can be
+ * precalculated per class. Diagonal movement is not a class of its own, it
+ * is just a filter on the same connections.
+ *
+ * @see PathFindable#getCost(toniarts.openkeeper.world.TileData,
+ * toniarts.openkeeper.world.TileData, toniarts.openkeeper.world.WorldState)
+ * @author Toni Helenius <helenius.toni@gmail.com>
+ */
+public enum MovementClass {
+
+    WALKER(false, false, false),
+    LAVA_WALKER(false, true, false),
+    WATER_WALKER(false, false, true),
+    LAVA_AND_WATER_WALKER(false, true, true),
+    FLYER(true, false, false);
+
+    private MovementClass(boolean fly, boolean walkOnLava, boolean walkOnWater) {
+        this.fly = fly;
+        this.walkOnLava = walkOnLava;
+        this.walkOnWater = walkOnWater;
+    }
+
+    /**
+     * Get the movement class of the given path findable
+     *
+     * @param pathFindable the path findable
+     * @return the movement class
+     */
+    public static MovementClass of(PathFindable pathFindable) {
+        if (pathFindable.canFly()) {
+            return FLYER;
+        }
+        if (pathFindable.canWalkOnLava()) {
+            return pathFindable.canWalkOnWater() ? LAVA_AND_WATER_WALKER : LAVA_WALKER;
+        }
+        return pathFindable.canWalkOnWater() ? WATER_WALKER : WALKER;
+    }
+
+    /**
+     * Cost of entering a non-room terrain
+     *
+     * @param terrain the terrain
+     * @return the cost, {@code null} if the terrain is not accessible
+     */
+    public Float getCost(Terrain terrain) {
+        if (terrain.getFlags().contains(Terrain.TerrainFlag.SOLID)) {
+            return null;
+        }
+        if (fly) {
+            return PathFindable.DEFAULT_COST;
+        } else if (terrain.getFlags().contains(Terrain.TerrainFlag.LAVA) && walkOnLava) {
+            return PathFindable.DEFAULT_COST;
+        } else if (terrain.getFlags().contains(Terrain.TerrainFlag.WATER) && walkOnWater) {
+            return PathFindable.WATER_COST;
+        }
+        return PathFindable.DEFAULT_COST;
+    }
+
+    private final boolean fly;
+    private final boolean walkOnLava;
+    private final boolean walkOnWater;
+}
@@ -0,0 +1,311 @@
+/*
+ * Copyright (C) 2014-2018 OpenKeeper
+ *
+ * OpenKeeper is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenKeeper is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenKeeper.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package toniarts.openkeeper.world.pathfinding;
+
+import com.badlogic.gdx.ai.pfa.DefaultGraphPath;
+import com.badlogic.gdx.ai.pfa.GraphPath;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import toniarts.openkeeper.world.TileData;
+import toniarts.openkeeper.world.listener.TileChangeListener;
+
+/**
+ * LRU cache of found paths. Every path remembers the tiles it depends on, a
+ * tile change only evicts the paths going through the tiles whose
+ * passability changed. Cosmetic changes, like selecting, keep the paths.<br>
+ * The paths are copied in and out, {@link DefaultGraphPath} can't be shared
+ * between threads.
+ *
+ * @author Toni Helenius <helenius.toni@gmail.com>
+ */
+public class PathCache implements TileChangeListener {
+
+    private static final int DEFAULT_MAX_PATHS = 512;
+
+    private final MapConnectionTable connectionTable;
+    private final int width;
+    private final int height;
+    private final int maxPaths;
+    private final Map<PathKey, CachedPath> paths;
+    private final List<Set<PathKey>> tilePaths;
+    private final int[] passabilityVersions;
+    private long version = 0;
+    private long hits = 0;
+    private long misses = 0;
+
+    public PathCache(MapConnectionTable connectionTable) {
+        this(connectionTable, DEFAULT_MAX_PATHS);
+    }
+
+    public PathCache(MapConnectionTable connectionTable, int maxPaths) {
+        this.connectionTable = connectionTable;
+        this.width = connectionTable.getWidth();
+        this.height = connectionTable.getHeight();
+        this.maxPaths = maxPaths;
+        this.tilePaths = new ArrayList<>(Collections.nCopies(width * height, null));
+        this.passabilityVersions = new int[width * height];
+        for (int i = 0; i < passabilityVersions.length; i++) {
+            passabilityVersions[i] = connectionTable.getPassabilityVersion(i);
+        }
+        this.paths = new LinkedHashMap<PathKey, CachedPath>(maxPaths, 0.75f, true) {
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<PathKey, CachedPath> eldest) {
+                if (size() > PathCache.this.maxPaths) {
+                    unregister(eldest.getKey(), eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    @Override
+    public synchronized void onTileChange(int x, int y) {
+
+        // The connection table is already up to date, it also updates the room connections of the neighbours
+        for (int ny = Math.max(0, y - 1); ny <= Math.min(height - 1, y + 1); ny++) {
+            for (int nx = Math.max(0, x - 1); nx <= Math.min(width - 1, x + 1); nx++) {
+                int index = ny * width + nx;
+                int passabilityVersion = connectionTable.getPassabilityVersion(index);
+                if (passabilityVersions[index] != passabilityVersion) {
+                    passabilityVersions[index] = passabilityVersion;
+                    version++;
+                    evict(index);
+                }
+            }
+        }
+    }
+
+    private void evict(int index) {
+        Set<PathKey> keys = tilePaths.get(index);
+        if (keys == null) {
+            return;
+        }
+        for (PathKey key : keys.toArray(new PathKey[keys.size()])) {
+            unregister(key, paths.remove(key));
+        }
+    }
+
+    /**
+     * Get a cached path
+     *
+     * @param start start tile
+     * @param end end tile
+     * @param pathFindable the entity to find path for, must have the default
+     * costs
+     * @return copy of the cached path, {@code null} if not cached
+     */
+    public synchronized GraphPath<TileData> get(TileData start, TileData end, PathFindable pathFindable) {
+        CachedPath cachedPath = paths.get(new PathKey(start, end, pathFindable));
+        if (cachedPath == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return copy(cachedPath.path);
+    }
+
+    /**
+     * Get the version of the cache. Obtain this before searching and hand it
+     * to {@link #put(TileData, TileData, PathFindable, GraphPath, long)} to
+     * avoid caching paths found on map that has changed during the search.
+     *
+     * @return the version
+     */
+    public synchronized long getVersion() {
+        return version;
+    }
+
+    /**
+     * Cache a path
+     *
+     * @param start start tile
+     * @param end end tile
+     * @param pathFindable the entity the path was found for, must have the
+     * default costs
+     * @param path the path
+     * @param version the version of the cache from when the search started
+     */
+    public synchronized void put(TileData start, TileData end, PathFindable pathFindable, GraphPath<TileData> path, long version) {
+        if (this.version != version) {
+            return;
+        }
+
+        PathKey key = new PathKey(start, end, pathFindable);
+        CachedPath cachedPath = new CachedPath(copy(path), getDependencies(path));
+        unregister(key, paths.put(key, cachedPath));
+        for (int index : cachedPath.tiles) {
+            Set<PathKey> keys = tilePaths.get(index);
+            if (keys == null) {
+                keys = new HashSet<>();
+                tilePaths.set(index, keys);
+            }
+            keys.add(key);
+        }
+    }
+
+    /**
+     * The tiles the path goes through, and the corners of the diagonal moves
+     */
+    private int[] getDependencies(GraphPath<TileData> path) {
+        int[] tiles = new int[path.getCount() * 3];
+        int count = 0;
+        TileData previous = null;
+        for (int i = 0; i < path.getCount(); i++) {
+            TileData tile = path.get(i);
+            tiles[count++] = tile.getIndex();
+            if (previous != null && previous.getX() != tile.getX() && previous.getY() != tile.getY()) {
+                tiles[count++] = previous.getY() * width + tile.getX();
+                tiles[count++] = tile.getY() * width + previous.getX();
+            }
+            previous = tile;
+        }
+        int[] result = new int[count];
+        System.arraycopy(tiles, 0, result, 0, count);
+        return result;
+    }
+
+    private void unregister(PathKey key, CachedPath cachedPath) {
+        if (cachedPath == null) {
+            return;
+        }
+        for (int index : cachedPath.tiles) {
+            Set<PathKey> keys = tilePaths.get(index);
+            if (keys != null) {
+                keys.remove(key);
+                if (keys.isEmpty()) {
+                    tilePaths.set(index, null);
+                }
+            }
+        }
+    }
+
+    private static GraphPath<TileData> copy(GraphPath<TileData> path) {
+        GraphPath<TileData> result = new DefaultGraphPath<>(path.getCount());
+        for (int i = 0; i < path.getCount(); i++) {
+            result.add(path.get(i));
+        }
+        return result;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized int getSize() {
+        return paths.size();
+    }
+
+    public synchronized void clear() {
+        paths.clear();
+        Collections.fill(tilePaths, null);
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "PathCache{" + "size=" + paths.size() + ", hits=" + hits + ", misses=" + misses + '}';
+    }
+
+    private static final class CachedPath {
+
+        private final GraphPath<TileData> path;
+        private final int[] tiles;
+
+        public CachedPath(GraphPath<TileData> path, int[] tiles) {
+            this.path = path;
+            this.tiles = tiles;
+        }
+
+    }
+
+    /**
+     * Identifies a path, the doors are owner specific
+     */
+    private static final class PathKey {
+
+        private final int start;
+        private final int end;
+        private final MovementClass movementClass;
+        private final boolean diagonal;
+        private final short ownerId;
+        private final boolean smashDoors;
+
+        public PathKey(TileData start, TileData end, PathFindable pathFindable) {
+            this.start = start.getIndex();
+            this.end = end.getIndex();
+            this.movementClass = MovementClass.of(pathFindable);
+            this.diagonal = pathFindable.canMoveDiagonally();
+            this.ownerId = pathFindable.getOwnerId();
+            this.smashDoors = pathFindable.canSmashDoors();
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = 5;
+            hash = 41 * hash + this.start;
+            hash = 41 * hash + this.end;
+            hash = 41 * hash + Objects.hashCode(this.movementClass);
+            hash = 41 * hash + (this.diagonal ? 1 : 0);
+            hash = 41 * hash + this.ownerId;
+            hash = 41 * hash + (this.smashDoors ? 1 : 0);
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (obj == null) {
+                return false;
+            }
+            if (getClass() != obj.getClass()) {
+                return false;
+            }
+            final PathKey other = (PathKey) obj;
+            if (this.start != other.start) {
+                return false;
+            }
+            if (this.end != other.end) {
+                return false;
+            }
+            if (this.diagonal != other.diagonal) {
+                return false;
+            }
+            if (this.ownerId != other.ownerId) {
+                return false;
+            }
+            if (this.smashDoors != other.smashDoors) {
+                return false;
+            }
+            return this.movementClass == other.movementClass;
+        }
+
+    }
+
+}
@@ -79,6 +79,31 @@ public interface PathFindable {
         return null;
     }
 
+    /**
+     * Does the entity use the default traversal costs. If it does, the path
+     * finding can use the precalculated connections instead of calling
+     * {@link #getCost(TileData, TileData, WorldState)} for every node. Return
+     * {@code false} if you override the costs.
+     *
+     * @return true if {@link #getCost(TileData, TileData, WorldState)} is not
+     * overridden
+     * @see MapConnectionTable
+     */
+    default public boolean hasDefaultCosts() {
+        return true;
+    }
+
+    /**
+     * Can the entity smash its way through the doors of the other players.
+     * Such doors are then passable also with the default costs.
+     *
+     * @return true if the doors of the others are no obstacle
+     * @see MapConnectionTable#isDoorPassable(TileData, PathFindable)
+     */
+    default public boolean canSmashDoors() {
+        return false;
+    }
+
     /**
      * The owner of the entity, useful for checking can we pass the doors etc.
      *
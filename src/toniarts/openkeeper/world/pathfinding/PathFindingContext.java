@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2014-2018 OpenKeeper
+ *
+ * OpenKeeper is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenKeeper is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenKeeper.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package toniarts.openkeeper.world.pathfinding;
+
+import com.badlogic.gdx.ai.pfa.DefaultGraphPath;
+import com.badlogic.gdx.ai.pfa.GraphPath;
+import com.badlogic.gdx.ai.pfa.Heuristic;
+import toniarts.openkeeper.world.TileData;
+import toniarts.openkeeper.world.WorldState;
+
+/**
+ * The A* search state. The graph and the path finder both hold state of the
+ * search in progress, so a context must only be used by one thread at a time.
+ *
+ * @author Toni Helenius <helenius.toni@gmail.com>
+ */
+final class PathFindingContext {
+
+    private final MapIndexedGraph graph;
+    private final MapPathFinder pathFinder;
+    private final Heuristic<TileData> heuristic;
+
+    PathFindingContext(WorldState worldState, MapConnectionTable connectionTable, Heuristic<TileData> heuristic) {
+        this.graph = new MapIndexedGraph(worldState, connectionTable);
+        this.pathFinder = new MapPathFinder(graph, false);
+        this.heuristic = heuristic;
+    }
+
+    /**
+     * Find a path between two tiles
+     *
+     * @param startTile the start tile
+     * @param endTile the end tile
+     * @param pathFindable the entity to find path for
+     * @return output path, null if path not found
+     */
+    GraphPath<TileData> findPath(TileData startTile, TileData endTile, PathFindable pathFindable) {
+        return findPath(startTile, endTile, pathFindable, null);
+    }
+
+    /**
+     * Find a path between two tiles, inside the given area
+     *
+     * @param startTile the start tile
+     * @param endTile the end tile
+     * @param pathFindable the entity to find path for
+     * @param bounds the search area as {minX, minY, maxX, maxY}, {@code null}
+     * for the whole map
+     * @return output path, null if path not found
+     */
+    GraphPath<TileData> findPath(TileData startTile, TileData endTile, PathFindable pathFindable, int[] bounds) {
+        graph.setPathFindable(pathFindable);
+        if (bounds != null) {
+            graph.setBounds(bounds[0], bounds[1], bounds[2], bounds[3]);
+        }
+        try {
+            GraphPath<TileData> outPath = new DefaultGraphPath<>();
+            if (pathFinder.searchNodePath(startTile, endTile, heuristic, outPath)) {
+                return outPath;
+            }
+            return null;
+        } finally {
+
+            // Don't hold on to the creatures
+            graph.setPathFindable(null);
+            if (bounds != null) {
+                graph.clearBounds();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright (C) 2014-2018 OpenKeeper
+ *
+ * OpenKeeper is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenKeeper is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenKeeper.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package toniarts.openkeeper.world.pathfinding;
+
+import java.awt.Point;
+
+/**
+ * A single path finding query, used for batching path searches
+ *
+ * @see PathFindingService#findPaths(java.util.List)
+ * @author Toni Helenius <helenius.toni@gmail.com>
+ */
+public final class PathFindingRequest {
+
+    private final Point start;
+    private final Point end;
+    private final PathFindable pathFindable;
+
+    public PathFindingRequest(Point start, Point end, PathFindable pathFindable) {
+        this.start = start;
+        this.end = end;
+        this.pathFindable = pathFindable;
+    }
+
+    public Point getStart() {
+        return start;
+    }
+
+    public Point getEnd() {
+        return end;
+    }
+
+    public PathFindable getPathFindable() {
+        return pathFindable;
+    }
+
+    @Override
+    public String toString() {
+        return "PathFindingRequest{" + "start=" + start + ", end=" + end + ", pathFindable=" + pathFindable + '}';
+    }
+
+}
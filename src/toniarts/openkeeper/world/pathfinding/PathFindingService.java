@@ -0,0 +1,286 @@
+/*
+ * Copyright (C) 2014-2018 OpenKeeper
+ *
+ * OpenKeeper is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenKeeper is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenKeeper.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package toniarts.openkeeper.world.pathfinding;
+
+import com.badlogic.gdx.ai.pfa.DefaultGraphPath;
+import com.badlogic.gdx.ai.pfa.GraphPath;
+import java.awt.Point;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import toniarts.openkeeper.world.TileData;
+import toniarts.openkeeper.world.WorldState;
+
+/**
+ * Path finding service. Thread safe, every search borrows its own A* context
+ * from a pool so the logic, movement and task threads can all search at the
+ * same time. Batches of searches can be spread on the worker threads.<br>
+ * Long distance searches are first done on the hierarchical portal graph and
+ * then refined locally. Targets in a different region are rejected without
+ * searching at all. Popular goals are served from flow fields and found paths
+ * are cached.
+ *
+ * @author Toni Helenius <helenius.toni@gmail.com>
+ */
+public class PathFindingService {
+
+    private final WorldState worldState;
+    private final MapConnectionTable connectionTable;
+    private final MapConnectivity connectivity;
+    private final FlowFieldCache flowFields;
+    private final PathCache pathCache;
+    private final HierarchicalPathFinder hierarchicalPathFinder;
+    private final MapDistance heuristic;
+    private final Queue<PathFindingContext> contexts = new ConcurrentLinkedQueue<>();
+    private final int threads;
+    private final ExecutorService executor;
+
+    private static final Logger logger = Logger.getLogger(PathFindingService.class.getName());
+
+    /**
+     * Creates a path finding service with a worker thread per available
+     * processor
+     *
+     * @param worldState the world state
+     * @param connectionTable the map connections
+     * @param connectivity the map regions for rejecting unreachable targets,
+     * can be {@code null}
+     * @param flowFields the flow fields for shared goals, can be {@code null}
+     * @param pathCache the cache for found paths, can be {@code null}
+     * @param hierarchicalPathFinder the hierarchical path finder for long
+     * searches, can be {@code null}
+     */
+    public PathFindingService(WorldState worldState, MapConnectionTable connectionTable, MapConnectivity connectivity, FlowFieldCache flowFields, PathCache pathCache, HierarchicalPathFinder hierarchicalPathFinder) {
+        this(worldState, connectionTable, connectivity, flowFields, pathCache, hierarchicalPathFinder, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a path finding service
+     *
+     * @param worldState the world state
+     * @param connectionTable the map connections
+     * @param connectivity the map regions for rejecting unreachable targets,
+     * can be {@code null}
+     * @param flowFields the flow fields for shared goals, can be {@code null}
+     * @param pathCache the cache for found paths, can be {@code null}
+     * @param hierarchicalPathFinder the hierarchical path finder for long
+     * searches, can be {@code null}
+     * @param threads amount of worker threads used for batch searches
+     */
+    public PathFindingService(WorldState worldState, MapConnectionTable connectionTable, MapConnectivity connectivity, FlowFieldCache flowFields, PathCache pathCache, HierarchicalPathFinder hierarchicalPathFinder, int threads) {
+        this.worldState = worldState;
+        this.connectionTable = connectionTable;
+        this.connectivity = connectivity;
+        this.flowFields = flowFields;
+        this.pathCache = pathCache;
+        this.hierarchicalPathFinder = hierarchicalPathFinder;
+        this.heuristic = new MapDistance();
+        this.threads = Math.max(1, threads);
+        this.executor = Executors.newFixedThreadPool(this.threads, new ThreadFactory() {
+
+            private final AtomicInteger threadIndex = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "PathFindingThread-" + threadIndex.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Find path between two points. Executed in the calling thread.
+     *
+     * @param start start point
+     * @param end end point
+     * @param pathFindable the entity to find path for
+     * @return output path, null if path not found
+     */
+    public GraphPath<TileData> findPath(Point start, Point end, PathFindable pathFindable) {
+        TileData startTile = worldState.getMapData().getTile(start);
+        TileData endTile = worldState.getMapData().getTile(end);
+        if (startTile == null || endTile == null) {
+            return null;
+        }
+        if (!isReachable(startTile, endTile, pathFindable)) {
+            return null; // A failing search would explore the whole region
+        }
+        if (pathCache == null || !pathFindable.hasDefaultCosts()) {
+            return searchPath(startTile, endTile, pathFindable);
+        }
+
+        GraphPath<TileData> path = pathCache.get(startTile, endTile, pathFindable);
+        if (path == null) {
+            long version = pathCache.getVersion();
+            path = searchPath(startTile, endTile, pathFindable);
+            if (path != null) {
+                pathCache.put(startTile, endTile, pathFindable, path, version);
+            }
+        }
+        return path;
+    }
+
+    private GraphPath<TileData> searchPath(TileData startTile, TileData endTile, PathFindable pathFindable) {
+        if (flowFields != null && pathFindable.hasDefaultCosts()) {
+            GraphPath<TileData> path = flowFields.findPath(startTile, endTile, pathFindable);
+            if (path != null) {
+                return path;
+            }
+        }
+
+        PathFindingContext context = obtainContext();
+        try {
+            if (hierarchicalPathFinder != null && pathFindable.hasDefaultCosts()
+                    && hierarchicalPathFinder.isHierarchicalSearchUseful(startTile, endTile)) {
+                GraphPath<TileData> path = findHierarchicalPath(context, startTile, endTile, pathFindable);
+                if (path != null) {
+                    return path;
+                }
+
+                // The portal graph is just an approximation, doors etc. may fail the refinement
+            }
+            return context.findPath(startTile, endTile, pathFindable);
+        } finally {
+            contexts.offer(context);
+        }
+    }
+
+    /**
+     * Quick check whether the end tile can be reached at all. If this returns
+     * {@code false} there is no path, but {@code true} doesn't guarantee one.
+     *
+     * @param startTile start tile
+     * @param endTile end tile
+     * @param pathFindable the entity to find path for
+     * @return false if the end tile is certainly not reachable
+     */
+    public boolean isReachable(TileData startTile, TileData endTile, PathFindable pathFindable) {
+
+        // Custom costs can make anything reachable, and the regions are split by the locked doors
+        if (connectivity == null || !pathFindable.hasDefaultCosts() || pathFindable.canSmashDoors()) {
+            return true;
+        }
+        return connectivity.isReachable(startTile, endTile, MovementClass.of(pathFindable));
+    }
+
+    private GraphPath<TileData> findHierarchicalPath(PathFindingContext context, TileData startTile, TileData endTile, PathFindable pathFindable) {
+        List<TileData> waypoints = hierarchicalPathFinder.findWaypoints(startTile, endTile, MovementClass.of(pathFindable));
+        if (waypoints == null) {
+            return null;
+        }
+
+        // Refine the path between each waypoint
+        GraphPath<TileData> outPath = new DefaultGraphPath<>();
+        outPath.add(startTile);
+        TileData from = startTile;
+        for (TileData waypoint : waypoints) {
+            if (waypoint == from) {
+                continue;
+            }
+            GraphPath<TileData> segment = context.findPath(from, waypoint, pathFindable, hierarchicalPathFinder.getRefinementBounds(from, waypoint));
+            if (segment == null) {
+                return null;
+            }
+            for (int i = 1; i < segment.getCount(); i++) {
+                outPath.add(segment.get(i));
+            }
+            from = waypoint;
+        }
+        return outPath;
+    }
+
+    /**
+     * Find paths for several requests at once. The requests are divided
+     * evenly for the worker threads, the calling thread waits for all of them
+     * to finish.
+     *
+     * @param requests the path finding requests
+     * @return the paths in the same order as the requests, a path is
+     * {@code null} if it was not found
+     */
+    public List<GraphPath<TileData>> findPaths(List<PathFindingRequest> requests) {
+        if (requests.isEmpty()) {
+            return Collections.emptyList();
+        }
+        if (requests.size() == 1) {
+            PathFindingRequest request = requests.get(0);
+            return Collections.singletonList(findPath(request.getStart(), request.getEnd(), request.getPathFindable()));
+        }
+
+        // Partition the work, one partition per worker, each worker only sets its own paths
+        final int partitions = Math.min(threads, requests.size());
+        final List<GraphPath<TileData>> paths = new ArrayList<>(Collections.nCopies(requests.size(), null));
+        List<Callable<Void>> tasks = new ArrayList<>(partitions);
+        for (int i = 0; i < partitions; i++) {
+            final int partition = i;
+            tasks.add(() -> {
+                for (int index = partition; index < requests.size(); index += partitions) {
+                    PathFindingRequest request = requests.get(index);
+                    paths.set(index, findPath(request.getStart(), request.getEnd(), request.getPathFindable()));
+                }
+                return null;
+            });
+        }
+
+        try {
+            for (Future<Void> future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.log(Level.WARNING, "Path finding interrupted!", e);
+        } catch (ExecutionException e) {
+            logger.log(Level.SEVERE, "Failed to find paths!", e);
+        }
+
+        return paths;
+    }
+
+    private PathFindingContext obtainContext() {
+        PathFindingContext context = contexts.poll();
+        if (context == null) {
+            context = new PathFindingContext(worldState, connectionTable, heuristic);
+        }
+        return context;
+    }
+
+    /**
+     * Stops the worker threads, the service can't be used for batch searches
+     * after this
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+        contexts.clear();
+        if (pathCache != null) {
+            logger.log(Level.INFO, "Path cache statistics: {0}", pathCache);
+            pathCache.clear();
+        }
+    }
+
+}
@@ -0,0 +1,474 @@
+/*
+ * Copyright (C) 2014-2018 OpenKeeper
+ *
+ * OpenKeeper is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenKeeper is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenKeeper.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package toniarts.openkeeper.world.terrain;
+
+import com.jme3.bounding.BoundingBox;
+import com.jme3.collision.Collidable;
+import com.jme3.collision.CollisionResults;
+import com.jme3.material.Material;
+import com.jme3.math.Transform;
+import com.jme3.math.Vector3f;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.Node;
+import com.jme3.scene.Spatial;
+import com.jme3.scene.VertexBuffer;
+import com.jme3.scene.VertexBuffer.Type;
+import com.jme3.scene.mesh.IndexBuffer;
+import com.jme3.util.BufferUtils;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Batches the static geometries of the terrain tiles of a page. The first
+ * children are the tile nodes, the geometries under them are merged per
+ * material into batch geometries.<br>
+ * Every tile owns a fixed slot in the vertex and index buffers of each batch,
+ * so a changed tile only rewrites its own slots. Unused parts of a slot are
+ * degenerate triangles. A batch is only rebuilt when a tile no longer fits its
+ * slot, the slots then grow to leave room for the next changes.<br>
+ * Spatials with controls, like the torches, are left as they are.
+ *
+ * @author Toni Helenius <helenius.toni@gmail.com>
+ */
+public class TerrainBatchNode extends Node {
+
+    /**
+     * Slot size growth when a tile doesn't fit its slot
+     */
+    private static final float SLOT_GROWTH = 1.5f;
+    private static final Set<Type> NOT_BATCHED = EnumSet.of(Type.Index, Type.BindPosePosition,
+            Type.BindPoseNormal, Type.BindPoseTangent, Type.InterleavedData);
+
+    private final int tileCount;
+    private final List<Map<MaterialKey, List<Geometry>>> tileGeometries;
+    private final Map<MaterialKey, Batch> batches = new HashMap<>();
+    private final BitSet dirtyTiles = new BitSet();
+    private final Vector3f tmpVector = new Vector3f();
+
+    public TerrainBatchNode(String name, int tileCount) {
+        super(name);
+        this.tileCount = tileCount;
+        this.tileGeometries = new ArrayList<>(tileCount);
+        for (int i = 0; i < tileCount; i++) {
+            tileGeometries.add(Collections.emptyMap());
+        }
+    }
+
+    /**
+     * Batch all the tiles from scratch
+     */
+    public void batch() {
+        for (Batch batch : batches.values()) {
+            batch.geometry.removeFromParent();
+        }
+        batches.clear();
+        dirtyTiles.clear();
+
+        Set<MaterialKey> keys = new HashSet<>();
+        for (int i = 0; i < tileCount; i++) {
+            Map<MaterialKey, List<Geometry>> geometries = gatherGeometries(i);
+            tileGeometries.set(i, geometries);
+            keys.addAll(geometries.keySet());
+        }
+        for (MaterialKey key : keys) {
+            rebuild(key, 0, 0);
+        }
+    }
+
+    /**
+     * Empty a tile node, for constructing the tile again. Call
+     * {@link #patch()} when done.
+     *
+     * @param index index of the tile node
+     * @return the tile node
+     */
+    public Node clearTile(int index) {
+        Node tileNode = (Node) getChild(index);
+        tileNode.detachAllChildren();
+        tileNode.setLocalTransform(Transform.IDENTITY);
+        dirtyTiles.set(index);
+        return tileNode;
+    }
+
+    /**
+     * Rewrite the slots of the cleared tiles
+     */
+    public void patch() {
+        for (int i = dirtyTiles.nextSetBit(0); i >= 0; i = dirtyTiles.nextSetBit(i + 1)) {
+            patchTile(i);
+        }
+        dirtyTiles.clear();
+    }
+
+    private void patchTile(int index) {
+        Map<MaterialKey, List<Geometry>> previous = tileGeometries.get(index);
+        Map<MaterialKey, List<Geometry>> current = gatherGeometries(index);
+        tileGeometries.set(index, current);
+
+        // Materials the tile no longer has
+        for (MaterialKey key : previous.keySet()) {
+            if (!current.containsKey(key)) {
+                Batch batch = batches.get(key);
+                if (batch != null) {
+                    batch.clearSlot(index);
+                    if (batch.isEmpty()) {
+                        batch.geometry.removeFromParent();
+                        batches.remove(key);
+                    } else {
+                        batch.update();
+                    }
+                }
+            }
+        }
+
+        // And the current ones
+        for (Map.Entry<MaterialKey, List<Geometry>> entry : current.entrySet()) {
+            Batch batch = batches.get(entry.getKey());
+            if (batch != null && batch.fits(entry.getValue())) {
+                batch.writeSlot(index, entry.getValue());
+                batch.update();
+            } else if (batch != null) {
+                batch.geometry.removeFromParent();
+                rebuild(entry.getKey(), batch.slotVertices, batch.slotIndices);
+            } else {
+                rebuild(entry.getKey(), 0, 0);
+            }
+        }
+    }
+
+    /**
+     * (Re)build a batch of all the tiles
+     *
+     * @param key the material
+     * @param slotVertices current vertex slot size, 0 if new
+     * @param slotIndices current index slot size, 0 if new
+     */
+    private void rebuild(MaterialKey key, int slotVertices, int slotIndices) {
+
+        // Size the slots by the largest tile
+        int maxVertices = 0;
+        int maxIndices = 0;
+        Geometry sample = null;
+        for (int i = 0; i < tileCount; i++) {
+            List<Geometry> geometries = tileGeometries.get(i).get(key);
+            if (geometries != null) {
+                maxVertices = Math.max(maxVertices, getVertexCount(geometries));
+                maxIndices = Math.max(maxIndices, getIndexCount(geometries));
+                sample = geometries.get(0);
+            }
+        }
+        if (sample == null) {
+            batches.remove(key);
+            return;
+        }
+        if (slotVertices > 0) {
+            maxVertices = Math.max(maxVertices, (int) Math.ceil(slotVertices * SLOT_GROWTH));
+            maxIndices = Math.max(maxIndices, (int) Math.ceil(slotIndices * SLOT_GROWTH));
+        }
+
+        Batch batch = new Batch(key.material, sample.getMesh(), maxVertices, maxIndices);
+        for (int i = 0; i < tileCount; i++) {
+            List<Geometry> geometries = tileGeometries.get(i).get(key);
+            if (geometries != null) {
+                batch.writeSlot(i, geometries);
+            } else {
+                batch.clearSlot(i);
+            }
+        }
+        batch.update();
+        batches.put(key, batch);
+        attachChild(batch.geometry);
+    }
+
+    /**
+     * Gather the static geometries of a tile by their material
+     */
+    private Map<MaterialKey, List<Geometry>> gatherGeometries(int index) {
+        Map<MaterialKey, List<Geometry>> result = new HashMap<>();
+        gatherGeometries(getChild(index), result);
+        return result;
+    }
+
+    private void gatherGeometries(Spatial spatial, Map<MaterialKey, List<Geometry>> result) {
+        if (spatial.getNumControls() > 0) {
+            return; // Animated, leave as it is
+        }
+        if (spatial instanceof Geometry) {
+            Geometry geometry = (Geometry) spatial;
+            Mesh mesh = geometry.getMesh();
+            if (geometry.getMaterial() != null && mesh.getMode() == Mesh.Mode.Triangles
+                    && mesh.getBuffer(Type.Position) != null && mesh.getBuffer(Type.Index) != null) {
+                MaterialKey key = new MaterialKey(geometry.getMaterial());
+                List<Geometry> geometries = result.get(key);
+                if (geometries == null) {
+                    geometries = new ArrayList<>();
+                    result.put(key, geometries);
+                }
+                geometries.add(geometry);
+                geometry.setCullHint(CullHint.Always);
+            }
+        } else if (spatial instanceof Node) {
+            for (Spatial child : ((Node) spatial).getChildren()) {
+                gatherGeometries(child, result);
+            }
+        }
+    }
+
+    /**
+     * Get the transform of the geometry relative to this node
+     */
+    private Transform getTransform(Geometry geometry) {
+        Transform transform = geometry.getLocalTransform().clone();
+        for (Node parent = geometry.getParent(); parent != null && parent != this; parent = parent.getParent()) {
+            transform.combineWithParent(parent.getLocalTransform());
+        }
+        return transform;
+    }
+
+    private static int getVertexCount(List<Geometry> geometries) {
+        int count = 0;
+        for (Geometry geometry : geometries) {
+            count += geometry.getMesh().getVertexCount();
+        }
+        return count;
+    }
+
+    private static int getIndexCount(List<Geometry> geometries) {
+        int count = 0;
+        for (Geometry geometry : geometries) {
+            count += geometry.getMesh().getIndexBuffer().size();
+        }
+        return count;
+    }
+
+    @Override
+    public int collideWith(Collidable other, CollisionResults results) {
+
+        // Only the tiles, the batches are just copies of them
+        int count = 0;
+        for (int i = 0; i < tileCount && i < getQuantity(); i++) {
+            count += getChild(i).collideWith(other, results);
+        }
+        return count;
+    }
+
+    /**
+     * Batched geometries of one material
+     */
+    private final class Batch {
+
+        private final Geometry geometry;
+        private final Mesh mesh = new Mesh();
+        private final Type[] types;
+        private final int[] components;
+        private final FloatBuffer[] buffers;
+        private final IntBuffer indices;
+        private final int slotVertices;
+        private final int slotIndices;
+        private final boolean[] used = new boolean[tileCount];
+        private final float[] bounds = new float[tileCount * 6];
+        private int usedCount = 0;
+
+        public Batch(Material material, Mesh sample, int slotVertices, int slotIndices) {
+            this.slotVertices = slotVertices;
+            this.slotIndices = slotIndices;
+
+            // The vertex layout of the sample
+            List<VertexBuffer> layout = new ArrayList<>();
+            for (VertexBuffer vb : sample.getBufferList()) {
+                if (!NOT_BATCHED.contains(vb.getBufferType()) && vb.getFormat() == VertexBuffer.Format.Float) {
+                    layout.add(vb);
+                }
+            }
+            types = new Type[layout.size()];
+            components = new int[layout.size()];
+            buffers = new FloatBuffer[layout.size()];
+            for (int i = 0; i < layout.size(); i++) {
+                types[i] = layout.get(i).getBufferType();
+                components[i] = layout.get(i).getNumComponents();
+                buffers[i] = BufferUtils.createFloatBuffer(tileCount * slotVertices * components[i]);
+                mesh.setBuffer(types[i], components[i], buffers[i]);
+            }
+            indices = BufferUtils.createIntBuffer(tileCount * slotIndices);
+            mesh.setBuffer(Type.Index, 3, indices);
+            mesh.updateCounts();
+
+            geometry = new Geometry(getName() + "-batch", mesh);
+            geometry.setMaterial(material.clone());
+        }
+
+        public boolean fits(List<Geometry> geometries) {
+            return getVertexCount(geometries) <= slotVertices && getIndexCount(geometries) <= slotIndices;
+        }
+
+        public boolean isEmpty() {
+            return usedCount == 0;
+        }
+
+        public void writeSlot(int tile, List<Geometry> geometries) {
+            int vertex = tile * slotVertices;
+            int index = tile * slotIndices;
+            float[] bound = {Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY,
+                Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY};
+
+            for (Geometry g : geometries) {
+                Mesh source = g.getMesh();
+                Transform transform = getTransform(g);
+                int vertexCount = source.getVertexCount();
+                for (int i = 0; i < types.length; i++) {
+                    writeVertices(source.getBuffer(types[i]), i, vertex, vertexCount, transform, bound);
+                }
+                IndexBuffer sourceIndices = source.getIndexBuffer();
+                for (int i = 0; i < sourceIndices.size(); i++) {
+                    indices.put(index++, vertex + sourceIndices.get(i));
+                }
+                vertex += vertexCount;
+            }
+
+            // Degenerate the rest
+            fillDegenerate(tile, index);
+
+            System.arraycopy(bound, 0, bounds, tile * 6, 6);
+            if (!used[tile]) {
+                used[tile] = true;
+                usedCount++;
+            }
+        }
+
+        public void clearSlot(int tile) {
+            fillDegenerate(tile, tile * slotIndices);
+            if (used[tile]) {
+                used[tile] = false;
+                usedCount--;
+            }
+        }
+
+        private void fillDegenerate(int tile, int from) {
+            for (int i = from; i < (tile + 1) * slotIndices; i++) {
+                indices.put(i, tile * slotVertices);
+            }
+        }
+
+        private void writeVertices(VertexBuffer source, int bufferIndex, int vertex, int vertexCount, Transform transform, float[] bound) {
+            FloatBuffer target = buffers[bufferIndex];
+            int c = components[bufferIndex];
+            if (source == null || source.getFormat() != VertexBuffer.Format.Float || source.getNumComponents() != c) {
+                for (int i = vertex * c; i < (vertex + vertexCount) * c; i++) {
+                    target.put(i, 0);
+                }
+                return;
+            }
+
+            FloatBuffer data = (FloatBuffer) source.getData();
+            Type type = types[bufferIndex];
+            for (int v = 0; v < vertexCount; v++) {
+                int from = v * c;
+                int to = (vertex + v) * c;
+                if (c >= 3 && (type == Type.Position || type == Type.Normal || type == Type.Tangent || type == Type.Binormal)) {
+                    tmpVector.set(data.get(from), data.get(from + 1), data.get(from + 2));
+                    if (type == Type.Position) {
+                        transform.transformVector(tmpVector, tmpVector);
+                        bound[0] = Math.min(bound[0], tmpVector.x);
+                        bound[1] = Math.min(bound[1], tmpVector.y);
+                        bound[2] = Math.min(bound[2], tmpVector.z);
+                        bound[3] = Math.max(bound[3], tmpVector.x);
+                        bound[4] = Math.max(bound[4], tmpVector.y);
+                        bound[5] = Math.max(bound[5], tmpVector.z);
+                    } else {
+                        transform.getRotation().mult(tmpVector, tmpVector);
+                    }
+                    target.put(to, tmpVector.x);
+                    target.put(to + 1, tmpVector.y);
+                    target.put(to + 2, tmpVector.z);
+                    for (int i = 3; i < c; i++) {
+                        target.put(to + i, data.get(from + i));
+                    }
+                } else {
+                    for (int i = 0; i < c; i++) {
+                        target.put(to + i, data.get(from + i));
+                    }
+                }
+            }
+        }
+
+        /**
+         * Upload the buffers and update the bounds
+         */
+        public void update() {
+            for (Type type : types) {
+                mesh.getBuffer(type).setUpdateNeeded();
+            }
+            mesh.getBuffer(Type.Index).setUpdateNeeded();
+
+            float[] bound = {Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY,
+                Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY};
+            for (int i = 0; i < tileCount; i++) {
+                if (used[i] && bounds[i * 6] <= bounds[i * 6 + 3]) {
+                    for (int j = 0; j < 3; j++) {
+                        bound[j] = Math.min(bound[j], bounds[i * 6 + j]);
+                        bound[j + 3] = Math.max(bound[j + 3], bounds[i * 6 + j + 3]);
+                    }
+                }
+            }
+            if (bound[0] <= bound[3]) {
+                geometry.setModelBound(new BoundingBox(new Vector3f(bound[0], bound[1], bound[2]), new Vector3f(bound[3], bound[4], bound[5])));
+            }
+        }
+    }
+
+    /**
+     * Groups the materials by their content, the tiles all have their own
+     * material instances
+     */
+    private static final class MaterialKey {
+
+        private final Material material;
+        private final int hash;
+
+        public MaterialKey(Material material) {
+            this.material = material;
+            this.hash = material.contentHashCode();
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (obj == null || getClass() != obj.getClass()) {
+                return false;
+            }
+            return material.contentEquals(((MaterialKey) obj).material);
+        }
+    }
+
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2014-2018 OpenKeeper
+ *
+ * OpenKeeper is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenKeeper is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenKeeper.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package toniarts.openkeeper.world.terrain;
+
+import com.jme3.texture.Image;
+import com.jme3.texture.Texture;
+import com.jme3.texture.Texture2D;
+import com.jme3.texture.image.ColorSpace;
+import com.jme3.util.BufferUtils;
+import java.nio.ByteBuffer;
+import toniarts.openkeeper.tools.convert.map.Terrain;
+import toniarts.openkeeper.world.TileData;
+
+/**
+ * The visual state of the map tiles as a texture, one texel per tile. The
+ * terrain material samples it to draw the flashing, tagging and decay, so
+ * changing these never touches the tile geometries or materials.<br>
+ * The channels are:
+ * <ul>
+ * <li>R: flashed, 255 if flashed</li>
+ * <li>G: tagged, the tagging player ID + 1, 0 if not tagged</li>
+ * <li>B: decay stage, 0 is unharmed</li>
+ * <li>A: unused, always 0. RGBA keeps the rows 4 byte aligned for the
+ * upload</li>
+ * </ul>
+ *
+ * @author Toni Helenius <helenius.toni@gmail.com>
+ */
+public class TileStateTexture {
+
+    private static final int BYTES_PER_TEXEL = 4;
+
+    private final int width;
+    private final int height;
+    private final ByteBuffer data;
+    private final Image image;
+    private final Texture2D texture;
+
+    public TileStateTexture(int width, int height) {
+        this.width = width;
+        this.height = height;
+        data = BufferUtils.createByteBuffer(width * height * BYTES_PER_TEXEL);
+        image = new Image(Image.Format.RGBA8, width, height, data, ColorSpace.Linear);
+        texture = new Texture2D(image);
+        texture.setMagFilter(Texture.MagFilter.Nearest);
+        texture.setMinFilter(Texture.MinFilter.NearestNoMipMaps);
+        texture.setWrap(Texture.WrapMode.EdgeClamp);
+    }
+
+    /**
+     * Write the state of the tile. The texture is uploaded on the next frame
+     * if anything changed, so several tiles can be written at once. jME 3.2
+     * can't update a region of an image, the whole texture is uploaded, some
+     * 30 KB on the largest maps.
+     *
+     * @param tile the tile
+     */
+    public void update(TileData tile) {
+        if (tile.getX() < 0 || tile.getY() < 0 || tile.getX() >= width || tile.getY() >= height) {
+            return;
+        }
+
+        int index = (tile.getY() * width + tile.getX()) * BYTES_PER_TEXEL;
+        byte flashed = (byte) (tile.isFlashed() ? 255 : 0);
+        byte tagged = (byte) (tile.isSelected() ? tile.getSelectedByPlayerId() + 1 : 0);
+        byte decay = (byte) getDecayStage(tile);
+        if (data.get(index) != flashed || data.get(index + 1) != tagged
+                || data.get(index + 2) != decay) {
+            data.put(index, flashed);
+            data.put(index + 1, tagged);
+            data.put(index + 2, decay);
+            image.setUpdateNeeded();
+        }
+    }
+
+    /**
+     * Get the decay stage of the tile, i.e. the index of the decay texture to
+     * show
+     *
+     * @param tile the tile
+     * @return the decay stage, 0 is the unharmed texture
+     */
+    public static int getDecayStage(TileData tile) {
+        Terrain terrain = tile.getTerrain();
+        if (!terrain.getFlags().contains(Terrain.TerrainFlag.DECAY) || terrain.getTextureFrames() < 2) {
+            return 0;
+        }
+        int stage = terrain.getTextureFrames() - (int) Math.ceil(tile.getHealthPercent() / (100f / terrain.getTextureFrames()));
+        return Math.max(0, Math.min(255, stage));
+    }
+
+    public Texture2D getTexture() {
+        return texture;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+}